@@ -0,0 +1,267 @@
+package bguspl.set;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.LockSupport;
+import java.util.logging.ErrorManager;
+import java.util.logging.Formatter;
+import java.util.logging.Handler;
+import java.util.logging.LogRecord;
+
+/**
+ * A logging handler that writes to a file asynchronously.
+ * Game threads only put the records in a bounded ring buffer; a single writer thread drains it, formats the records
+ * in batches and writes them through a buffered FileChannel.
+ */
+public class AsyncFileHandler extends Handler {
+
+    /**
+     * What publish() does when the ring buffer is full.
+     */
+    public enum OverflowPolicy {
+        /** wait until the writer thread makes room (no records are lost). */
+        BLOCK,
+        /** drop the new record and count it. */
+        DROP
+    }
+
+    private static final int MAX_BATCH = 256;
+    private static final int WRITE_BUFFER_SIZE = 64 * 1024;
+
+    private final FileChannel channel;
+    private final Thread writer;
+
+    /**
+     * The ring buffer (a bounded multi-producer single-consumer queue): a producer may fill a cell once its sequence
+     * equals the producer's position, the consumer may read it once its sequence equals the position + 1.
+     */
+    private final int mask;
+    private final AtomicReferenceArray<LogRecord> records;
+    private final AtomicLongArray sequences;
+    private final AtomicLong tail = new AtomicLong();
+
+    /**
+     * The position of the next record to be written (written only by the writer thread).
+     */
+    private volatile long head;
+
+    /**
+     * The position up to which the records are in the file (head moves before a record is written, this after).
+     */
+    private volatile long writtenUpTo;
+
+    private volatile OverflowPolicy overflowPolicy;
+    private volatile boolean writerSleeping;
+    private volatile boolean closed;
+
+    private final AtomicLong dropped = new AtomicLong();
+    private final AtomicLong written = new AtomicLong();
+
+    /**
+     * @param path           - the log file (truncated if it exists).
+     * @param capacity       - the number of records the ring buffer holds (rounded up to a power of 2).
+     * @param overflowPolicy - what to do when the ring buffer is full.
+     * @throws IOException - if the file cannot be opened.
+     */
+    public AsyncFileHandler(Path path, int capacity, OverflowPolicy overflowPolicy) throws IOException {
+        int size = Integer.highestOneBit(Math.max(2, capacity));
+        if (size < capacity) size <<= 1;
+        mask = size - 1;
+        records = new AtomicReferenceArray<>(size);
+        sequences = new AtomicLongArray(size);
+        for (int i = 0; i < size; i++)
+            sequences.set(i, i);
+        this.overflowPolicy = overflowPolicy;
+
+        channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+        writer = new Thread(this::writeLoop, "log-writer");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    public void setOverflowPolicy(OverflowPolicy overflowPolicy) {
+        this.overflowPolicy = overflowPolicy;
+    }
+
+    public OverflowPolicy getOverflowPolicy() {
+        return overflowPolicy;
+    }
+
+    /**
+     * @return - the number of records dropped since the ring buffer was full.
+     */
+    public long dropped() {
+        return dropped.get();
+    }
+
+    /**
+     * @return - the number of records written to the file.
+     */
+    public long written() {
+        return written.get();
+    }
+
+    /**
+     * @return - the number of records waiting for the writer thread.
+     */
+    public int backlog() {
+        return (int) Math.max(0, tail.get() - head);
+    }
+
+    @Override
+    public void publish(LogRecord record) {
+        if (closed || !isLoggable(record)) return;
+        while (!offer(record)) {
+            if (overflowPolicy == OverflowPolicy.DROP || closed) {
+                dropped.incrementAndGet();
+                return;
+            }
+            LockSupport.unpark(writer);
+            Thread.yield();
+        }
+        if (writerSleeping) LockSupport.unpark(writer);
+    }
+
+    private boolean offer(LogRecord record) {
+        long position = tail.get();
+        while (true) {
+            int index = (int) position & mask;
+            long difference = sequences.get(index) - position;
+            if (difference == 0) {
+                if (tail.compareAndSet(position, position + 1)) {
+                    records.lazySet(index, record);
+                    sequences.set(index, position + 1); // volatile: pairs with the writerSleeping check in publish()
+                    return true;
+                }
+                position = tail.get();
+            } else if (difference < 0) {
+                return false; // full
+            } else {
+                position = tail.get(); // another producer took this cell
+            }
+        }
+    }
+
+    /**
+     * Called by the writer thread only.
+     * @return - the next record, or null if there is none.
+     */
+    private LogRecord poll() {
+        long position = head;
+        int index = (int) position & mask;
+        if (sequences.get(index) != position + 1) return null;
+        LogRecord record = records.get(index);
+        records.lazySet(index, null);
+        sequences.lazySet(index, position + mask + 1);
+        head = position + 1;
+        return record;
+    }
+
+    private void writeLoop() {
+        StringBuilder batch = new StringBuilder(WRITE_BUFFER_SIZE);
+        ByteBuffer bytes = ByteBuffer.allocateDirect(WRITE_BUFFER_SIZE);
+        CharsetEncoder encoder = StandardCharsets.UTF_8.newEncoder();
+        long reportedDropped = 0;
+        while (true) {
+            int count = 0;
+            LogRecord record;
+            while (count < MAX_BATCH && (record = poll()) != null) {
+                format(record, batch);
+                count++;
+            }
+            long droppedNow = dropped.get();
+            if (droppedNow != reportedDropped) {
+                batch.append("[log] ").append(droppedNow - reportedDropped).append(" records were dropped").append(System.lineSeparator());
+                reportedDropped = droppedNow;
+            }
+            if (batch.length() > 0) {
+                write(batch, bytes, encoder);
+                written.addAndGet(count);
+                batch.setLength(0);
+            }
+            writtenUpTo = head;
+            if (count > 0) continue;
+            if (closed) return;
+            writerSleeping = true;
+            if (sequences.get((int) head & mask) != head + 1) // nothing was published meanwhile
+                LockSupport.parkNanos(this, 100_000_000L);
+            writerSleeping = false;
+        }
+    }
+
+    private void format(LogRecord record, StringBuilder batch) {
+        Formatter formatter = getFormatter();
+        try {
+            batch.append(formatter != null ? formatter.format(record) : record.getMessage() + System.lineSeparator());
+        } catch (RuntimeException e) {
+            reportError(null, e, ErrorManager.FORMAT_FAILURE);
+        }
+    }
+
+    private void write(CharSequence text, ByteBuffer bytes, CharsetEncoder encoder) {
+        CharBuffer chars = CharBuffer.wrap(text);
+        encoder.reset();
+        try {
+            CoderResult result;
+            do {
+                result = encoder.encode(chars, bytes, true);
+                drain(bytes);
+            } while (result.isOverflow());
+            do {
+                result = encoder.flush(bytes);
+                drain(bytes);
+            } while (result.isOverflow());
+        } catch (IOException e) {
+            reportError(null, e, ErrorManager.WRITE_FAILURE);
+            bytes.clear();
+        }
+    }
+
+    private void drain(ByteBuffer bytes) throws IOException {
+        bytes.flip();
+        while (bytes.hasRemaining()) channel.write(bytes);
+        bytes.clear();
+    }
+
+    /**
+     * Waits until all the records published so far are written to the file.
+     */
+    @Override
+    public void flush() {
+        long target = tail.get();
+        while (writtenUpTo < target && writer.isAlive()) {
+            LockSupport.unpark(writer);
+            LockSupport.parkNanos(100_000L);
+        }
+    }
+
+    /**
+     * Writes all pending records, stops the writer thread and closes the file.
+     */
+    @Override
+    public void close() {
+        flush();
+        closed = true;
+        LockSupport.unpark(writer);
+        try {
+            writer.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        try {
+            channel.close();
+        } catch (IOException e) {
+            reportError(null, e, ErrorManager.CLOSE_FAILURE);
+        }
+    }
+}
@@ -0,0 +1,92 @@
+package bguspl.set;
+
+import java.awt.*;
+import java.awt.geom.Ellipse2D;
+import java.awt.geom.Path2D;
+
+/**
+ * Draws card faces from the features of the cards, for decks that the bundled images do not cover (see CardImages).
+ * The first feature is the number of symbols, the second their color, the third their shape (an oval, then polygons
+ * of 3, 4, 5... sides) and the fourth their shading (from solid to outlined); any further features are written as
+ * digits along the bottom edge.
+ */
+class CardFaces {
+
+    private static final Color BACKGROUND = Color.WHITE;
+    private static final Color BORDER = Color.GRAY;
+
+    private CardFaces() {}
+
+    /**
+     * Draws a card.
+     *
+     * @param g           - where to draw (at 0, 0).
+     * @param features    - the features of the card (see Util::cardToFeatures).
+     * @param featureSize - the number of values of each feature.
+     * @param width       - the width of the card.
+     * @param height      - the height of the card.
+     */
+    static void paint(Graphics2D g, int[] features, int featureSize, int width, int height) {
+        g.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+        int arc = Math.min(width, height) / 8;
+        g.setColor(BACKGROUND);
+        g.fillRoundRect(1, 1, width - 2, height - 2, arc, arc);
+        g.setColor(BORDER);
+        g.drawRoundRect(1, 1, width - 3, height - 3, arc, arc);
+
+        int count = feature(features, 0) + 1;
+        Color color = Color.getHSBColor(feature(features, 1) / (float) featureSize, 0.85f, 0.75f);
+        int sides = feature(features, 2) == 0 ? 0 : feature(features, 2) + 2;
+        float fill = featureSize < 2 ? 1 : 1 - feature(features, 3) / (float) (featureSize - 1);
+
+        // the symbols, in a grid that keeps them about as wide as they are high
+        int columns = Math.min(count, Math.max(1, (int) Math.ceil(Math.sqrt(count * (double) width / height))));
+        int rows = (count + columns - 1) / columns;
+        int extrasHeight = features.length > 4 ? height / 6 : 0;
+        double cellWidth = (width - arc) / (double) columns;
+        double cellHeight = (height - arc - extrasHeight) / (double) rows;
+        double size = Math.min(cellWidth, cellHeight) * 0.8;
+        g.setStroke(new BasicStroke((float) Math.max(1, size / 16)));
+        for (int symbol = 0; symbol < count; symbol++) {
+            int row = symbol / columns;
+            int inRow = row < rows - 1 ? columns : count - row * columns; // the last row is centered
+            double x = arc / 2.0 + (width - arc - inRow * cellWidth) / 2 + (symbol % columns + 0.5) * cellWidth;
+            double y = arc / 2.0 + (row + 0.5) * cellHeight;
+            Shape shape = shape(sides, x, y, size / 2);
+            if (fill > 0) {
+                g.setColor(new Color(color.getRed(), color.getGreen(), color.getBlue(), Math.round(fill * 255)));
+                g.fill(shape);
+            }
+            g.setColor(color);
+            g.draw(shape);
+        }
+
+        if (extrasHeight > 0) {
+            StringBuilder extras = new StringBuilder();
+            for (int i = 4; i < features.length; i++) extras.append(i > 4 ? " " : "").append(features[i]);
+            g.setColor(BORDER);
+            g.setFont(new Font("SansSerif", Font.BOLD, Math.max(8, extrasHeight * 3 / 4)));
+            FontMetrics metrics = g.getFontMetrics();
+            g.drawString(extras.toString(), (width - metrics.stringWidth(extras.toString())) / 2, height - arc / 2 - metrics.getDescent());
+        }
+    }
+
+    private static int feature(int[] features, int index) {
+        return index < features.length ? features[index] : 0;
+    }
+
+    /**
+     * @return - an oval (0 sides) or a regular polygon, centered at x, y.
+     */
+    private static Shape shape(int sides, double x, double y, double radius) {
+        if (sides == 0) return new Ellipse2D.Double(x - radius, y - radius * 0.6, radius * 2, radius * 1.2);
+        Path2D.Double polygon = new Path2D.Double();
+        for (int i = 0; i < sides; i++) {
+            double angle = -Math.PI / 2 + 2 * Math.PI * i / sides;
+            if (i == 0) polygon.moveTo(x + radius * Math.cos(angle), y + radius * Math.sin(angle));
+            else polygon.lineTo(x + radius * Math.cos(angle), y + radius * Math.sin(angle));
+        }
+        polygon.closePath();
+        return polygon;
+    }
+}
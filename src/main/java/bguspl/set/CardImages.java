@@ -0,0 +1,292 @@
+package bguspl.set;
+
+import javax.imageio.ImageIO;
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * The card images, scaled to the cell size, shared by all the user interfaces of the JVM (e.g. the tables of a
+ * GameHost). Images are decoded or drawn on a small pool of daemon threads, never by the caller.
+ * <p>
+ * The bundled PNGs (the 3^4 deck) all start decoding in parallel the first time the deck is requested (the images of
+ * another size, see sized(), decode a card when it is first requested instead). They are read with ImageIO, which decodes them right away (ImageIcon tracks each image through a MediaTracker). Any other deck is
+ * drawn from the features of the cards (see CardFaces) when a card is first requested, and kept in a bounded LRU
+ * cache, so a huge deck costs memory only for the cards that were shown lately.
+ */
+class CardImages {
+
+    /**
+     * The memory the drawn cards of a deck may take (at 4 bytes per pixel).
+     */
+    private static final long RENDERED_CACHE_BYTES = 32L << 20;
+
+    private static final ConcurrentHashMap<String, CardImages> shared = new ConcurrentHashMap<>();
+
+    private static final ExecutorService painters = Executors.newFixedThreadPool(
+            Math.max(2, Runtime.getRuntime().availableProcessors() / 2), new ThreadFactory() {
+                private final AtomicInteger count = new AtomicInteger();
+
+                @Override
+                public Thread newThread(Runnable runnable) {
+                    Thread thread = new Thread(runnable, "card-images-" + count.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+
+    private final Config config;
+    private final Util util;
+    private final int width;
+    private final int height;
+    private final CompletableFuture<Image> emptyCard;
+
+    /**
+     * The bundled images of the cards (null if the deck is drawn). Guarded by itself: an image is null until the card
+     * is first requested, unless all of them were requested up front.
+     */
+    private final List<CompletableFuture<Image>> bundled;
+
+    /**
+     * The drawn images of the cards shown lately (in access order, guarded by itself).
+     */
+    private final LinkedHashMap<Integer, CompletableFuture<Image>> rendered;
+
+    /**
+     * @param config - the game configuration (the deck and the cell size).
+     * @return - the images of the deck, scaled to the cell size.
+     */
+    static CardImages of(Config config) {
+        String key = config.featureSize + "^" + config.featureCount + "@" + config.cellWidth + "x" + config.cellHeight;
+        return shared.computeIfAbsent(key, ignored -> new CardImages(config, config.cellWidth, config.cellHeight, true));
+    }
+
+    /**
+     * @param config - the game configuration (the deck).
+     * @param width  - the width of the images.
+     * @param height - the height of the images.
+     * @return - images of the deck of another size, not shared (e.g. for a zoom level, dropped with it, see cancel()).
+     * Only the cards requested are prepared.
+     */
+    static CardImages sized(Config config, int width, int height) {
+        return new CardImages(config, width, height, false);
+    }
+
+    /**
+     * @param prefetch - true to start decoding all the bundled images now.
+     */
+    private CardImages(Config config, int width, int height, boolean prefetch) {
+        this.config = config;
+        util = new UtilImpl(config);
+        this.width = width;
+        this.height = height;
+        emptyCard = CompletableFuture.supplyAsync(() -> load("cards/empty_card.png"), painters);
+        if (isBundled(config)) {
+            bundled = new ArrayList<>(Collections.nCopies(config.deckSize, null));
+            if (prefetch)
+                for (int card = 0; card < config.deckSize; card++) image(card);
+            rendered = null;
+        } else {
+            bundled = null;
+            // the whole table if it is small, within the memory budget if it is large (then only part of it is in view)
+            int capacity = (int) Math.max(Math.min(2L * config.tableSize, 64), RENDERED_CACHE_BYTES / (4L * width * height));
+            rendered = new LinkedHashMap<Integer, CompletableFuture<Image>>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<Integer, CompletableFuture<Image>> eldest) {
+                    return size() > capacity;
+                }
+            };
+        }
+    }
+
+    /**
+     * @return - true iff there is a bundled image for every card of the deck.
+     */
+    private static boolean isBundled(Config config) {
+        if (config.featureSize >= 10) return false; // the names would conflict
+        String last = UserInterfaceSwing.intInBaseToPaddedString(config.deckSize - 1, config.featureCount, config.featureSize);
+        return CardImages.class.getClassLoader().getResource("cards/" + last + ".png") != null; // then so are the others
+    }
+
+    private String bundledName(int card) {
+        return "cards/" + UserInterfaceSwing.intInBaseToPaddedString(card, config.featureCount, config.featureSize) + ".png";
+    }
+
+    /**
+     * @return - true iff the cards are drawn rather than decoded from the bundled images.
+     */
+    boolean isRendered() {
+        return rendered != null;
+    }
+
+    /**
+     * Returns the image of a card if it is ready, or starts preparing it.
+     *
+     * @param card      - the card.
+     * @param whenReady - called (on a pool thread) once the image is ready, if it is not ready now.
+     * @return - the image, or null if it is not ready yet.
+     * @throws UncheckedIOException - if the image cannot be loaded.
+     */
+    Image card(int card, Runnable whenReady) {
+        CompletableFuture<Image> image = image(card);
+        if (image.isDone()) return join(image);
+        image.thenRun(whenReady);
+        return null;
+    }
+
+    /**
+     * @return - the image of a card if it is ready, or null (without preparing it).
+     */
+    Image ready(int card) {
+        CompletableFuture<Image> image;
+        if (bundled != null) synchronized (bundled) {
+            image = bundled.get(card);
+        }
+        else synchronized (rendered) {
+            image = rendered.get(card);
+        }
+        return image != null && image.isDone() && !image.isCompletedExceptionally() ? image.join() : null;
+    }
+
+    /**
+     * @return - the image of the card (waits until it is ready).
+     * @throws UncheckedIOException - if the image cannot be loaded.
+     */
+    Image card(int card) {
+        return join(image(card));
+    }
+
+    private CompletableFuture<Image> image(int card) {
+        if (bundled != null) synchronized (bundled) {
+            CompletableFuture<Image> image = bundled.get(card);
+            if (image == null) {
+                String name = bundledName(card);
+                image = CompletableFuture.supplyAsync(() -> load(name), painters);
+                bundled.set(card, image);
+            }
+            return image;
+        }
+        synchronized (rendered) {
+            CompletableFuture<Image> image = rendered.get(card);
+            if (image == null) {
+                image = CompletableFuture.supplyAsync(() -> render(card), painters);
+                rendered.put(card, image);
+            }
+            return image;
+        }
+    }
+
+    /**
+     * @return - the image of an empty slot (waits until it is decoded).
+     * @throws UncheckedIOException - if the image cannot be loaded.
+     */
+    Image emptyCard() {
+        return join(emptyCard);
+    }
+
+    /**
+     * Returns the image of an empty slot if it is ready (like card(card, whenReady)).
+     *
+     * @param whenReady - called (on a pool thread) once the image is ready, if it is not ready now (may be null).
+     * @return - the image, or null if it is not ready yet (or cannot be loaded).
+     */
+    Image emptyCard(Runnable whenReady) {
+        if (emptyCard.isDone()) return emptyCard.isCompletedExceptionally() ? null : emptyCard.join();
+        if (whenReady != null) emptyCard.thenRun(whenReady);
+        return null;
+    }
+
+    /**
+     * Stops preparing the images that are not ready yet: those waiting for a pool thread are skipped (for images that
+     * are no longer needed, e.g. of a zoom level that was dropped). Requesting them later fails.
+     */
+    void cancel() {
+        emptyCard.cancel(false);
+        if (bundled != null) synchronized (bundled) {
+            for (CompletableFuture<Image> image : bundled)
+                if (image != null) image.cancel(false);
+        }
+        else synchronized (rendered) {
+            for (CompletableFuture<Image> image : rendered.values()) image.cancel(false);
+        }
+    }
+
+    /**
+     * @return - the number of images that are being prepared or are ready (for tests).
+     */
+    int requested() {
+        if (bundled != null) synchronized (bundled) {
+            int requested = 0;
+            for (CompletableFuture<Image> image : bundled)
+                if (image != null) requested++;
+            return requested;
+        }
+        synchronized (rendered) {
+            return rendered.size();
+        }
+    }
+
+    private static Image join(CompletableFuture<Image> image) {
+        try {
+            return image.join();
+        } catch (CompletionException e) {
+            throw e.getCause() instanceof UncheckedIOException ? (UncheckedIOException) e.getCause() : e;
+        }
+    }
+
+    /**
+     * @return - an image of the cell size, in the format of the screen.
+     */
+    private BufferedImage newImage(int transparency) {
+        return GraphicsEnvironment.isHeadless()
+                ? new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB)
+                : GraphicsEnvironment.getLocalGraphicsEnvironment().getDefaultScreenDevice().getDefaultConfiguration()
+                        .createCompatibleImage(width, height, transparency);
+    }
+
+    /**
+     * Decodes an image resource and scales it to the cell size.
+     */
+    private Image load(String filename) {
+        URL resource = CardImages.class.getClassLoader().getResource(filename);
+        BufferedImage decoded;
+        try {
+            if (resource == null) throw new FileNotFoundException(filename);
+            decoded = ImageIO.read(resource);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        BufferedImage image = newImage(decoded.getTransparency());
+        Graphics2D g = image.createGraphics();
+        g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+        g.drawImage(decoded, 0, 0, width, height, null);
+        g.dispose();
+        return image;
+    }
+
+    /**
+     * Draws a card from its features.
+     */
+    private Image render(int card) {
+        BufferedImage image = newImage(Transparency.TRANSLUCENT);
+        Graphics2D g = image.createGraphics();
+        CardFaces.paint(g, util.cardToFeatures(card), config.featureSize, width, height);
+        g.dispose();
+        return image;
+    }
+}
@@ -7,6 +7,7 @@ import java.nio.file.InvalidPathException;
 import java.nio.file.Paths;
 import java.util.Arrays;
 import java.util.Properties;
+import java.util.SplittableRandom;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -21,6 +22,11 @@ public class Config {
     public final long randomSpinMin;
     public final long randomSpinMax;
 
+    /**
+     * The seed of all the random choices of the game (the same seed deals the same cards for the same plays)
+     */
+    public final long seed;
+
     /**
      * The number of features on the cards (e.g. shape, color etc.)
      */
@@ -86,6 +92,31 @@ public class Config {
      */
     public final long endGamePauseMillies;
 
+    /**
+     * The file to record the binary game event journal in (empty for no journal)
+     */
+    public final String journalFile;
+
+    /**
+     * The file to checkpoint the game to, and to resume it from if it exists (empty for no checkpoints)
+     */
+    public final String checkpointFile;
+
+    /**
+     * The number of milliseconds between the periodic checkpoints of the game
+     */
+    public final long checkpointIntervalMillis;
+
+    /**
+     * Run the game on a virtual clock that skips ahead whenever all the game threads are idle (for computer players)
+     */
+    public final boolean virtualTime;
+
+    /**
+     * The port to broadcast the game to spectators on (-1 for no broadcast, 0 for any free port)
+     */
+    public final int spectatorPort;
+
     /**
      * The names of the players to display on the screen
      * Note: if there are more players than names, the remaining players will be called "Player 3", "Player 4", etc.
@@ -132,15 +163,43 @@ public class Config {
      */
     public final int fontSize;
 
+    /**
+     * Show the performance overlay when the game starts (F3 toggles it anyway)
+     */
+    public final boolean performanceHud;
+
+    /**
+     * Show the table as one scrollable, zoomable grid with a compact scoreboard, for large tables and many players
+     * (by default when there are more than 48 slots or 8 players)
+     */
+    public final boolean largeTable;
+
     /**
      * The scancodes of the keyboard input data for each player
      * Notes:
      * 1. This should correspond to the number of human players and the dimensions of the table card grid (i.e. the
      * first n codes are for the first row, the 2nd n codes are for the 2nd row etc., n being the number of columns).
      * 2. If the number of entries here does not match the number of human players a warning will be issued
+     * 3. A key may be a chord of modifiers and a key code (e.g. Shift+81), encoded as the key code | KEY_SHIFT etc.
+     * 4. 0 stands for no key
      */
     private final int[][] playerKeys;
 
+    /**
+     * The most players the tokens of a slot can be kept for as a bit per player in a long, by the formats that write
+     * them so (the spectator feed and the checkpoints); the user interfaces keep a long per 64 players.
+     */
+    public static final int MAX_TOKEN_MASK_PLAYERS = Long.SIZE;
+
+    /**
+     * The modifiers of a key in playerKeys (the key code is in the low 16 bits)
+     */
+    public static final int KEY_CODE_MASK = 0xFFFF;
+    public static final int KEY_SHIFT = 1 << 16;
+    public static final int KEY_CTRL = 1 << 17;
+    public static final int KEY_ALT = 1 << 18;
+    public static final int KEY_META = 1 << 19;
+
     /**
      * The default scan codes data (this is the same as in the default config.properties file)
      */
@@ -155,7 +214,7 @@ public class Config {
      * @param filename - the name of the configuration file.
      * @return - a properties object with the configuration file contents.
      */
-    private static Properties loadProperties(String filename, Logger logger) {
+    static Properties loadProperties(String filename, Logger logger) {
 
         Properties properties = new Properties();
 
@@ -186,6 +245,7 @@ public class Config {
         Level logLevel = Level.parse(properties.getProperty("LogLevel", "ALL"));
         String logFormat = properties.getProperty("LogFormat", "[%1$tT.%1$tL] [%2$-7s] %3$s%n");
         Main.setLoggerLevelAndFormat(logger, logLevel, logFormat);
+        Main.setLoggerOverflowPolicy(logger, AsyncFileHandler.OverflowPolicy.valueOf(properties.getProperty("LogOverflowPolicy", "Block").trim().toUpperCase()));
 
         // for debugging
         randomSpinMin = Long.parseLong(properties.getProperty("RandomSpinMin", "0"));
@@ -193,6 +253,11 @@ public class Config {
         if (randomSpinMax < randomSpinMin || randomSpinMin < 0)
             logger.severe("invalid random spin cycles: max: " + randomSpinMax + " min: " + randomSpinMin);
 
+        // random seed (a new one each game unless configured)
+        String seedString = properties.getProperty("Seed", "").trim();
+        seed = seedString.isEmpty() ? new SplittableRandom().nextLong() : Long.parseLong(seedString);
+        logger.info("game seed: " + seed);
+
         // cards settings
         featureSize = Integer.parseInt(properties.getProperty("FeatureSize", "3"));
         featureCount = Integer.parseInt(properties.getProperty("FeatureCount", "4"));
@@ -210,6 +275,14 @@ public class Config {
         penaltyFreezeMillis = (long) (Double.parseDouble(properties.getProperty("PenaltyFreezeSeconds", "3")) * 1000.0);
         tableDelayMillis = (long) (Double.parseDouble(properties.getProperty("TableDelaySeconds", "0.1")) * 1000.0);
         endGamePauseMillies = (long) (Double.parseDouble(properties.getProperty("EndGamePauseSeconds", "5")) * 1000.0);
+        journalFile = properties.getProperty("JournalFile", "").trim();
+        checkpointFile = properties.getProperty("CheckpointFile", "").trim();
+        checkpointIntervalMillis = (long) (Double.parseDouble(properties.getProperty("CheckpointSeconds", "5")) * 1000.0);
+        virtualTime = Boolean.parseBoolean(properties.getProperty("VirtualTime", "False").trim());
+        String spectatorPortString = properties.getProperty("SpectatorPort", "").trim();
+        spectatorPort = spectatorPortString.isEmpty() ? -1 : Integer.parseInt(spectatorPortString);
+        if (!checkpointFile.isEmpty()) requireTokenMasks("checkpoints");
+        if (spectatorPort >= 0) requireTokenMasks("the spectator feed");
 
         // ui settings
         String[] names = properties.getProperty("PlayerNames", "Player 1, Player 2").split(",");
@@ -224,6 +297,9 @@ public class Config {
         playerCellWidth = Integer.parseInt(properties.getProperty("PlayerCellWidth", "300"));
         playerCellHeight = Integer.parseInt(properties.getProperty("PlayerCellHeight", "40"));
         fontSize = Integer.parseInt(properties.getProperty("FontSize", "40"));
+        performanceHud = Boolean.parseBoolean(properties.getProperty("PerformanceHud", "False").trim());
+        String largeTableString = properties.getProperty("LargeTable", "").trim();
+        largeTable = largeTableString.isEmpty() ? tableSize > 48 || players > 8 : Boolean.parseBoolean(largeTableString);
 
         // keyboard input data
         playerKeys = new int[players][rows * columns];
@@ -236,11 +312,41 @@ public class Config {
                 if (codes.length != tableSize)
                     logger.severe("warning: player " + (i + 1) + " keys (" + codes.length + ") mismatch table size (" + tableSize + ").");
                 for (int j = 0; j < Math.min(codes.length, tableSize); ++j) // parse the key codes string
-                    playerKeys[i][j] = Integer.parseInt(codes[j]);
+                    playerKeys[i][j] = parseKey(codes[j]);
             }
         }
     }
 
+    /**
+     * @param key - a key code, optionally preceded by modifiers (e.g. "Ctrl+Shift+81").
+     * @return - the key code and its modifiers (see KEY_SHIFT etc.).
+     * @throws IllegalArgumentException - if the key is malformed.
+     */
+    static int parseKey(String key) {
+        String[] parts = key.split("\\+");
+        int parsed = Integer.parseInt(parts[parts.length - 1].trim());
+        if (parsed < 0 || parsed > KEY_CODE_MASK) throw new IllegalArgumentException("invalid key code: " + key);
+        for (int i = 0; i < parts.length - 1; i++) {
+            switch (parts[i].trim().toLowerCase()) {
+                case "shift": parsed |= KEY_SHIFT; break;
+                case "ctrl": parsed |= KEY_CTRL; break;
+                case "alt": parsed |= KEY_ALT; break;
+                case "meta": parsed |= KEY_META; break;
+                default: throw new IllegalArgumentException("invalid key modifier: " + key);
+            }
+        }
+        return parsed;
+    }
+
+    /**
+     * @param feature - what keeps the tokens as a bit per player (for the message).
+     * @throws IllegalArgumentException - if there are more than MAX_TOKEN_MASK_PLAYERS players.
+     */
+    public void requireTokenMasks(String feature) {
+        if (players > MAX_TOKEN_MASK_PLAYERS)
+            throw new IllegalArgumentException(feature + " support up to " + MAX_TOKEN_MASK_PLAYERS + " players, not " + players);
+    }
+
     public int[] playerKeys(int player) {
         return playerKeys[player];
     }
@@ -8,11 +8,23 @@ public class Env {
     public final Config config;
     public final UserInterface ui;
     public final Util util;
+    public final GameEvents events;
+    public final GameClock clock;
 
     public Env(Logger logger, Config config, UserInterface ui, Util util) {
+        this(logger, config, ui, util, GameEvents.NONE);
+    }
+
+    public Env(Logger logger, Config config, UserInterface ui, Util util, GameEvents events) {
+        this(logger, config, ui, util, events, GameClock.SYSTEM);
+    }
+
+    public Env(Logger logger, Config config, UserInterface ui, Util util, GameEvents events, GameClock clock) {
         this.logger = logger;
         this.config = config;
         this.ui = ui;
         this.util = util;
+        this.events = events;
+        this.clock = clock;
     }
 }
@@ -0,0 +1,293 @@
+package bguspl.set;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.FlightRecorder;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+/**
+ * Emits the game events as custom JDK Flight Recorder events (category "Set Game" in JMC).
+ * Only referenced through GameEvents::flightRecorderOrNone, so JDKs without jdk.jfr fail linking it there and
+ * fall back to no events.
+ */
+class FlightRecorderEvents implements GameEvents {
+
+    FlightRecorderEvents() {
+        // fails with NoClassDefFoundError when jdk.jfr is missing
+        FlightRecorder.register(CardDealt.class);
+        FlightRecorder.register(CardRemoved.class);
+        FlightRecorder.register(TokenFlipped.class);
+        FlightRecorder.register(ClaimSubmitted.class);
+        FlightRecorder.register(ClaimVerified.class);
+        FlightRecorder.register(Reshuffle.class);
+        FlightRecorder.register(ScoreChanged.class);
+        FlightRecorder.register(FreezeStarted.class);
+        FlightRecorder.register(FreezeEnded.class);
+        FlightRecorder.register(FindSets.class);
+        FlightRecorder.register(GameResumed.class);
+        FlightRecorder.register(GameEnded.class);
+    }
+
+    @Name("bguspl.set.CardDealt")
+    @Label("Card Dealt")
+    @Category({"Set Game", "Table"})
+    @StackTrace(false)
+    static class CardDealt extends Event {
+        @Label("Card")
+        int card;
+        @Label("Slot")
+        int slot;
+    }
+
+    @Name("bguspl.set.CardRemoved")
+    @Label("Card Removed")
+    @Category({"Set Game", "Table"})
+    @StackTrace(false)
+    static class CardRemoved extends Event {
+        @Label("Card")
+        int card;
+        @Label("Slot")
+        int slot;
+    }
+
+    @Name("bguspl.set.TokenFlipped")
+    @Label("Token Flipped")
+    @Category({"Set Game", "Table"})
+    @StackTrace(false)
+    static class TokenFlipped extends Event {
+        @Label("Player")
+        int player;
+        @Label("Slot")
+        int slot;
+        @Label("Placed")
+        boolean placed;
+    }
+
+    @Name("bguspl.set.ClaimSubmitted")
+    @Label("Claim Submitted")
+    @Category({"Set Game", "Claims"})
+    @StackTrace(false)
+    static class ClaimSubmitted extends Event {
+        @Label("Player")
+        int player;
+    }
+
+    @Name("bguspl.set.ClaimVerified")
+    @Label("Claim Verified")
+    @Category({"Set Game", "Claims"})
+    @StackTrace(false)
+    static class ClaimVerified extends Event {
+        @Label("Player")
+        int player;
+        @Label("Legal Set")
+        boolean legal;
+        @Label("Verification Time")
+        @Timespan(Timespan.NANOSECONDS)
+        long verificationTime;
+    }
+
+    @Name("bguspl.set.Reshuffle")
+    @Label("Reshuffle")
+    @Category({"Set Game", "Dealer"})
+    @StackTrace(false)
+    static class Reshuffle extends Event {
+        @Label("Cards Returned")
+        int cardsReturned;
+    }
+
+    @Name("bguspl.set.ScoreChanged")
+    @Label("Score Changed")
+    @Category({"Set Game", "Players"})
+    @StackTrace(false)
+    static class ScoreChanged extends Event {
+        @Label("Player")
+        int player;
+        @Label("Score")
+        int score;
+    }
+
+    @Name("bguspl.set.FreezeStarted")
+    @Label("Freeze Started")
+    @Category({"Set Game", "Players"})
+    @StackTrace(false)
+    static class FreezeStarted extends Event {
+        @Label("Player")
+        int player;
+        @Label("Freeze Time")
+        @Timespan(Timespan.MILLISECONDS)
+        long freeze;
+    }
+
+    @Name("bguspl.set.FreezeEnded")
+    @Label("Freeze Ended")
+    @Category({"Set Game", "Players"})
+    @StackTrace(false)
+    static class FreezeEnded extends Event {
+        @Label("Player")
+        int player;
+    }
+
+    @Name("bguspl.set.FindSets")
+    @Label("Find Sets")
+    @Description("A search for legal sets in a collection of cards")
+    @Category({"Set Game", "Dealer"})
+    @StackTrace(false)
+    static class FindSets extends Event {
+        @Label("Cards")
+        int cards;
+        @Label("Requested")
+        int requested;
+        @Label("Found")
+        int found;
+        @Label("Search Time")
+        @Timespan(Timespan.NANOSECONDS)
+        long searchTime;
+    }
+
+    @Name("bguspl.set.GameResumed")
+    @Label("Game Resumed")
+    @Category({"Set Game", "Dealer"})
+    @StackTrace(false)
+    static class GameResumed extends Event {
+        @Label("Players")
+        int players;
+        @Label("Cards Discarded")
+        int discarded;
+    }
+
+    @Name("bguspl.set.GameEnded")
+    @Label("Game Ended")
+    @Category({"Set Game", "Dealer"})
+    @StackTrace(false)
+    static class GameEnded extends Event {
+        @Label("Cards On Table")
+        int cardsOnTable;
+        @Label("Cards In Deck")
+        int deckSize;
+    }
+
+    @Override
+    public void cardDealt(int card, int slot) {
+        CardDealt event = new CardDealt();
+        if (event.shouldCommit()) {
+            event.card = card;
+            event.slot = slot;
+            event.commit();
+        }
+    }
+
+    @Override
+    public void cardRemoved(int card, int slot) {
+        CardRemoved event = new CardRemoved();
+        if (event.shouldCommit()) {
+            event.card = card;
+            event.slot = slot;
+            event.commit();
+        }
+    }
+
+    @Override
+    public void tokenFlipped(int player, int slot, boolean placed) {
+        TokenFlipped event = new TokenFlipped();
+        if (event.shouldCommit()) {
+            event.player = player;
+            event.slot = slot;
+            event.placed = placed;
+            event.commit();
+        }
+    }
+
+    @Override
+    public void claimSubmitted(int player) {
+        ClaimSubmitted event = new ClaimSubmitted();
+        if (event.shouldCommit()) {
+            event.player = player;
+            event.commit();
+        }
+    }
+
+    @Override
+    public void claimVerified(int player, boolean legal, long durationNanos) {
+        ClaimVerified event = new ClaimVerified();
+        if (event.shouldCommit()) {
+            event.player = player;
+            event.legal = legal;
+            event.verificationTime = durationNanos;
+            event.commit();
+        }
+    }
+
+    @Override
+    public void reshuffle(int cardsReturned) {
+        Reshuffle event = new Reshuffle();
+        if (event.shouldCommit()) {
+            event.cardsReturned = cardsReturned;
+            event.commit();
+        }
+    }
+
+    @Override
+    public void scoreChanged(int player, int score) {
+        ScoreChanged event = new ScoreChanged();
+        if (event.shouldCommit()) {
+            event.player = player;
+            event.score = score;
+            event.commit();
+        }
+    }
+
+    @Override
+    public void freezeStarted(int player, long millis) {
+        FreezeStarted event = new FreezeStarted();
+        if (event.shouldCommit()) {
+            event.player = player;
+            event.freeze = millis;
+            event.commit();
+        }
+    }
+
+    @Override
+    public void freezeEnded(int player) {
+        FreezeEnded event = new FreezeEnded();
+        if (event.shouldCommit()) {
+            event.player = player;
+            event.commit();
+        }
+    }
+
+    @Override
+    public void findSets(int cards, int requested, int found, long durationNanos) {
+        FindSets event = new FindSets();
+        if (event.shouldCommit()) {
+            event.cards = cards;
+            event.requested = requested;
+            event.found = found;
+            event.searchTime = durationNanos;
+            event.commit();
+        }
+    }
+
+    @Override
+    public void gameResumed(int[] scores, int[] discarded) {
+        GameResumed event = new GameResumed();
+        if (event.shouldCommit()) {
+            event.players = scores.length;
+            event.discarded = discarded.length;
+            event.commit();
+        }
+    }
+
+    @Override
+    public void gameEnded(int cardsOnTable, int[] deck) {
+        GameEnded event = new GameEnded();
+        if (event.shouldCommit()) {
+            event.cardsOnTable = cardsOnTable;
+            event.deckSize = deck.length;
+            event.commit();
+        }
+    }
+}
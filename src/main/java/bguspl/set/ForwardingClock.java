@@ -0,0 +1,48 @@
+package bguspl.set;
+
+/**
+ * A clock that forwards all calls to another clock. Extend it to decorate a clock (e.g. to wrap the game threads).
+ */
+public class ForwardingClock implements GameClock {
+
+    protected final GameClock clock;
+
+    public ForwardingClock(GameClock clock) {
+        this.clock = clock;
+    }
+
+    @Override
+    public long currentTimeMillis() {
+        return clock.currentTimeMillis();
+    }
+
+    @Override
+    public void sleep(long millis) throws InterruptedException {
+        clock.sleep(millis);
+    }
+
+    @Override
+    public void waitOn(Object monitor, long millis) throws InterruptedException {
+        clock.waitOn(monitor, millis);
+    }
+
+    @Override
+    public void notifyAll(Object monitor) {
+        clock.notifyAll(monitor);
+    }
+
+    @Override
+    public void park() {
+        clock.park();
+    }
+
+    @Override
+    public void unpark(Thread thread) {
+        clock.unpark(thread);
+    }
+
+    @Override
+    public Runnable participant(Runnable target) {
+        return clock.participant(target);
+    }
+}
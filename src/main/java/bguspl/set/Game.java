@@ -0,0 +1,111 @@
+package bguspl.set;
+
+import bguspl.set.ex.Dealer;
+import bguspl.set.ex.GameCheckpoint;
+import bguspl.set.ex.Player;
+import bguspl.set.ex.Table;
+
+/**
+ * A single game: the table, the dealer and the players of one environment.
+ * The dealer thread (which starts the player threads) is started through the environment's clock.
+ */
+public class Game {
+
+    private final Env env;
+    private final Table table;
+    private final Dealer dealer;
+    private final Player[] players;
+    private Thread dealerThread;
+
+    /**
+     * Creates the game entities (no thread is started).
+     *
+     * @param env - the environment of the game.
+     */
+    public Game(Env env) {
+        this(env, new Player[env.config.players]);
+    }
+
+    /**
+     * Creates the game entities (no thread is started).
+     *
+     * @param env     - the environment of the game.
+     * @param players - the array to create the players in (e.g. one that the user interface already holds).
+     */
+    public Game(Env env, Player[] players) {
+        this.env = env;
+        this.players = players;
+        table = new Table(env);
+        dealer = new Dealer(env, table, players);
+        for (int i = 0; i < players.length; i++)
+            players[i] = new Player(env, dealer, table, i, i < env.config.humanPlayers);
+    }
+
+    /**
+     * Resumes the game from a checkpoint (before it is started).
+     *
+     * @param checkpoint - a checkpoint that matches the game configuration (see GameCheckpoint::matches).
+     */
+    public void restore(GameCheckpoint checkpoint) {
+        dealer.restore(checkpoint);
+    }
+
+    /**
+     * Starts the dealer thread.
+     *
+     * @param threadName - the name of the dealer thread.
+     * @return - the dealer thread.
+     */
+    public Thread start(String threadName) {
+        dealerThread = env.clock.newThread(dealer, threadName);
+        dealerThread.start();
+        return dealerThread;
+    }
+
+    /**
+     * Waits until the game is over and all its threads terminated.
+     */
+    public void join() throws InterruptedException {
+        dealerThread.join();
+    }
+
+    /**
+     * Waits until the game is over and all its threads terminated, or until the timeout passes.
+     *
+     * @return - true iff the game is over.
+     */
+    public boolean join(long millis) throws InterruptedException {
+        dealerThread.join(millis);
+        return !dealerThread.isAlive();
+    }
+
+    /**
+     * @return - true iff the game was started and is not over yet.
+     */
+    public boolean isRunning() {
+        return dealerThread != null && dealerThread.isAlive();
+    }
+
+    /**
+     * Ends the game before its time.
+     */
+    public void terminate() {
+        dealer.terminate();
+    }
+
+    public Env env() {
+        return env;
+    }
+
+    public Table table() {
+        return table;
+    }
+
+    public Dealer dealer() {
+        return dealer;
+    }
+
+    public Player[] players() {
+        return players;
+    }
+}
@@ -0,0 +1,104 @@
+package bguspl.set;
+
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * The source of time and the blocking primitives of the game threads.
+ * All the game timing (countdowns, freezes, table delays, computer player pace) goes through the clock, so a game can
+ * run on the system clock or on a VirtualClock that skips ahead whenever all the game threads are idle.
+ */
+public interface GameClock {
+
+    /**
+     * @return - the current time in milliseconds (like System.currentTimeMillis()).
+     */
+    long currentTimeMillis();
+
+    /**
+     * Sleeps for the given time (like Thread.sleep()).
+     */
+    void sleep(long millis) throws InterruptedException;
+
+    /**
+     * Waits on a monitor until it is notified through notifyAll() or the time passes (like monitor.wait(millis)).
+     * The caller must hold the monitor.
+     *
+     * @param monitor - the monitor to wait on.
+     * @param millis  - the maximal time to wait, 0 to wait until notified.
+     */
+    void waitOn(Object monitor, long millis) throws InterruptedException;
+
+    /**
+     * Wakes up all the threads waiting on a monitor (like monitor.notifyAll()). The caller must hold the monitor.
+     */
+    void notifyAll(Object monitor);
+
+    /**
+     * Parks the current thread until it is unparked or interrupted (it may also return spuriously).
+     */
+    void park();
+
+    /**
+     * Unparks a thread parked by park() (or makes its next park() return immediately).
+     */
+    void unpark(Thread thread);
+
+    /**
+     * Marks a game thread's task, so the clock knows it exists. Call right before starting the thread.
+     *
+     * @param target - the task of the thread.
+     * @return - the task to run in the new thread.
+     */
+    Runnable participant(Runnable target);
+
+    /**
+     * Creates (but does not start) a game thread.
+     *
+     * @param target - the task of the thread (passed through participant()).
+     * @param name   - the name of the thread.
+     * @return - the new thread.
+     */
+    default Thread newThread(Runnable target, String name) {
+        return new Thread(participant(target), name);
+    }
+
+    /**
+     * The system clock: real time, plain monitors and LockSupport.
+     */
+    GameClock SYSTEM = new GameClock() {
+        @Override
+        public long currentTimeMillis() {
+            return System.currentTimeMillis();
+        }
+
+        @Override
+        public void sleep(long millis) throws InterruptedException {
+            Thread.sleep(millis);
+        }
+
+        @Override
+        public void waitOn(Object monitor, long millis) throws InterruptedException {
+            monitor.wait(millis);
+        }
+
+        @Override
+        public void notifyAll(Object monitor) {
+            monitor.notifyAll();
+        }
+
+        @Override
+        public void park() {
+            LockSupport.park(this);
+        }
+
+        @Override
+        public void unpark(Thread thread) {
+            LockSupport.unpark(thread);
+        }
+
+        @Override
+        public Runnable participant(Runnable target) {
+            return target;
+        }
+    };
+}
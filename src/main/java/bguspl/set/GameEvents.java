@@ -0,0 +1,192 @@
+package bguspl.set;
+
+/**
+ * Receives the game lifecycle and hot path events (for profiling, auditing etc.).
+ * Implementations are called on the dealer and player threads, often while they hold the table lock,
+ * so they must be cheap and must not block.
+ */
+public interface GameEvents {
+
+    /**
+     * A card was placed on the table.
+     */
+    void cardDealt(int card, int slot);
+
+    /**
+     * A card was removed from the table.
+     */
+    void cardRemoved(int card, int slot);
+
+    /**
+     * A player token was placed on or removed from a slot.
+     * @param placed - true iff the slot has the player's token after the flip.
+     */
+    void tokenFlipped(int player, int slot, boolean placed);
+
+    /**
+     * A player placed his last token and claimed a set.
+     */
+    void claimSubmitted(int player);
+
+    /**
+     * The dealer checked a claim.
+     * @param legal         - true iff the claimed cards form a legal set.
+     * @param durationNanos - the time it took the dealer to check the claim.
+     */
+    void claimVerified(int player, boolean legal, long durationNanos);
+
+    /**
+     * The dealer returned all the cards from the table to the deck.
+     * @param cardsReturned - the number of cards returned.
+     */
+    void reshuffle(int cardsReturned);
+
+    /**
+     * A player's score changed.
+     */
+    void scoreChanged(int player, int score);
+
+    /**
+     * A player is frozen after a point or a penalty.
+     */
+    void freezeStarted(int player, long millis);
+
+    /**
+     * A player is no longer frozen.
+     */
+    void freezeEnded(int player);
+
+    /**
+     * Util::findSets was called.
+     * @param cards         - the number of cards searched.
+     * @param requested     - the maximal number of sets requested.
+     * @param found         - the number of sets found.
+     * @param durationNanos - the time the search took.
+     */
+    void findSets(int cards, int requested, int found, long durationNanos);
+
+    /**
+     * The game resumed from a checkpoint (before the restored cards and tokens are dealt and placed again).
+     * @param scores    - the restored score of each player.
+     * @param discarded - the cards of the sets found before the checkpoint (neither in the deck nor on the table).
+     */
+    void gameResumed(int[] scores, int[] discarded);
+
+    /**
+     * The dealer stopped (the game ended or was terminated), once per game.
+     * @param cardsOnTable - the number of cards left on the table.
+     * @param deck         - the cards left in the deck.
+     */
+    void gameEnded(int cardsOnTable, int[] deck);
+
+    /**
+     * Ignores all the events.
+     */
+    GameEvents NONE = new GameEvents() {
+        @Override
+        public void cardDealt(int card, int slot) {}
+        @Override
+        public void cardRemoved(int card, int slot) {}
+        @Override
+        public void tokenFlipped(int player, int slot, boolean placed) {}
+        @Override
+        public void claimSubmitted(int player) {}
+        @Override
+        public void claimVerified(int player, boolean legal, long durationNanos) {}
+        @Override
+        public void reshuffle(int cardsReturned) {}
+        @Override
+        public void scoreChanged(int player, int score) {}
+        @Override
+        public void freezeStarted(int player, long millis) {}
+        @Override
+        public void freezeEnded(int player) {}
+        @Override
+        public void findSets(int cards, int requested, int found, long durationNanos) {}
+        @Override
+        public void gameResumed(int[] scores, int[] discarded) {}
+        @Override
+        public void gameEnded(int cardsOnTable, int[] deck) {}
+    };
+
+    /**
+     * @return - events that are passed to both first and second.
+     */
+    static GameEvents both(GameEvents first, GameEvents second) {
+        if (first == NONE) return second;
+        if (second == NONE) return first;
+        return new GameEvents() {
+            @Override
+            public void cardDealt(int card, int slot) {
+                first.cardDealt(card, slot);
+                second.cardDealt(card, slot);
+            }
+            @Override
+            public void cardRemoved(int card, int slot) {
+                first.cardRemoved(card, slot);
+                second.cardRemoved(card, slot);
+            }
+            @Override
+            public void tokenFlipped(int player, int slot, boolean placed) {
+                first.tokenFlipped(player, slot, placed);
+                second.tokenFlipped(player, slot, placed);
+            }
+            @Override
+            public void claimSubmitted(int player) {
+                first.claimSubmitted(player);
+                second.claimSubmitted(player);
+            }
+            @Override
+            public void claimVerified(int player, boolean legal, long durationNanos) {
+                first.claimVerified(player, legal, durationNanos);
+                second.claimVerified(player, legal, durationNanos);
+            }
+            @Override
+            public void reshuffle(int cardsReturned) {
+                first.reshuffle(cardsReturned);
+                second.reshuffle(cardsReturned);
+            }
+            @Override
+            public void scoreChanged(int player, int score) {
+                first.scoreChanged(player, score);
+                second.scoreChanged(player, score);
+            }
+            @Override
+            public void freezeStarted(int player, long millis) {
+                first.freezeStarted(player, millis);
+                second.freezeStarted(player, millis);
+            }
+            @Override
+            public void freezeEnded(int player) {
+                first.freezeEnded(player);
+                second.freezeEnded(player);
+            }
+            @Override
+            public void findSets(int cards, int requested, int found, long durationNanos) {
+                first.findSets(cards, requested, found, durationNanos);
+                second.findSets(cards, requested, found, durationNanos);
+            }
+            @Override
+            public void gameResumed(int[] scores, int[] discarded) {
+                first.gameResumed(scores, discarded);
+                second.gameResumed(scores, discarded);
+            }
+            @Override
+            public void gameEnded(int cardsOnTable, int[] deck) {
+                first.gameEnded(cardsOnTable, deck);
+                second.gameEnded(cardsOnTable, deck);
+            }
+        };
+    }
+
+    /**
+     * @return - JDK Flight Recorder events if the jdk.jfr module is present, otherwise NONE.
+     */
+    static GameEvents flightRecorderOrNone() {
+        try {
+            return new FlightRecorderEvents();
+        } catch (LinkageError e) { // no jdk.jfr in this JDK
+            return NONE;
+        }
+    }
+}
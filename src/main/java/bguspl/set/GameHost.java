@@ -0,0 +1,247 @@
+package bguspl.set;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.ConsoleHandler;
+import java.util.logging.Logger;
+
+/**
+ * Hosts many independent games in one JVM.
+ * Each game has its own Env (configuration and seed, logger, user interface and clock), so games never share mutable
+ * state; what they share is immutable: the set engine (Util) and the configuration properties. The threads of a game
+ * are created in the game's own thread group with a small stack, so a closed game can be checked to have left no
+ * threads behind. The dealer and player loops block (on the table, the key presses and the freezes), so every game
+ * keeps its own threads rather than sharing a pool: an idle two-player table costs 3 threads and about 0.4 MB.
+ * Usage: GameHost [tables [seconds]] - opens tables games (as configured by config.properties, logging warnings
+ * only), measures them for the given number of seconds and prints the overhead per table. With the default
+ * configuration (human players only) the tables are idle.
+ */
+public class GameHost implements AutoCloseable {
+
+    /**
+     * The stack size of the game threads (they only run the shallow game loops).
+     */
+    public static final long THREAD_STACK_SIZE = 256 * 1024;
+
+    /**
+     * How long close() waits for the threads of a game to end.
+     */
+    private static final long CLOSE_TIMEOUT_MILLIS = 5000;
+
+    private final Properties properties;
+    private final Logger logger;
+    private final Util util;
+    private final long seed;
+    private final AtomicInteger nextId = new AtomicInteger();
+    private final Map<Integer, Hosted> games = new ConcurrentHashMap<>();
+
+    /**
+     * A hosted game and its threads.
+     */
+    private static class Hosted {
+        final Game game;
+        final ThreadGroup threads;
+
+        Hosted(Game game, ThreadGroup threads) {
+            this.game = game;
+            this.threads = threads;
+        }
+    }
+
+    /**
+     * Creates the game threads in the thread group of their game, with a small stack.
+     */
+    private static class HostedClock extends ForwardingClock {
+
+        private final ThreadGroup group;
+
+        HostedClock(GameClock clock, ThreadGroup group) {
+            super(clock);
+            this.group = group;
+        }
+
+        @Override
+        public Thread newThread(Runnable target, String name) {
+            return new Thread(group, participant(target), name, THREAD_STACK_SIZE);
+        }
+    }
+
+    /**
+     * @param properties - the configuration of the games (each game gets its own seed, derived from the configured one).
+     * @param logger     - the parent logger of the games' loggers.
+     */
+    public GameHost(Properties properties, Logger logger) {
+        this.properties = properties;
+        this.logger = logger;
+        Config config = new Config(logger, properties);
+        util = new UtilImpl(config);
+        seed = config.seed;
+    }
+
+    /**
+     * Creates and starts a new game.
+     *
+     * @return - the id of the game.
+     */
+    public int open() {
+        return open(new HeadlessUserInterface());
+    }
+
+    /**
+     * Creates and starts a new game.
+     *
+     * @param ui - the user interface of the game (called by the game threads).
+     * @return - the id of the game.
+     */
+    public int open(UserInterface ui) {
+        reap();
+        int id = nextId.incrementAndGet();
+        Properties gameProperties = new Properties();
+        gameProperties.putAll(properties);
+        gameProperties.setProperty("Seed", Long.toString(RandomStreams.stream(seed, id).nextLong()));
+        gameProperties.setProperty("CheckpointFile", ""); // the games would overwrite each other's checkpoints
+        Logger gameLogger = Logger.getLogger(logger.getName() + ".game-" + id);
+        Config config = new Config(gameLogger, gameProperties);
+
+        ThreadGroup threads = new ThreadGroup("game-" + id);
+        GameClock clock = new HostedClock(GameClock.SYSTEM, threads);
+        Game game = new Game(new Env(gameLogger, config, ui, util, GameEvents.NONE, clock));
+        games.put(id, new Hosted(game, threads));
+        game.start("dealer-" + id);
+        return id;
+    }
+
+    /**
+     * @return - the game, or null if there is no such game (or it was closed).
+     */
+    public Game game(int id) {
+        Hosted hosted = games.get(id);
+        return hosted == null ? null : hosted.game;
+    }
+
+    /**
+     * @return - the number of hosted games.
+     */
+    public int size() {
+        return games.size();
+    }
+
+    /**
+     * Ends a game and waits for its threads.
+     *
+     * @return - true iff all the threads of the game ended.
+     */
+    public boolean close(int id) throws InterruptedException {
+        Hosted hosted = games.remove(id);
+        if (hosted == null) return true;
+        hosted.game.terminate();
+        return awaitTermination(id, hosted);
+    }
+
+    private boolean awaitTermination(int id, Hosted hosted) throws InterruptedException {
+        if (!hosted.game.join(CLOSE_TIMEOUT_MILLIS) || hosted.threads.activeCount() > 0) {
+            logger.warning("game " + id + " left " + hosted.threads.activeCount() + " threads running");
+            hosted.threads.interrupt();
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Forgets the games that are over.
+     */
+    public void reap() {
+        games.entrySet().removeIf(entry -> !entry.getValue().game.isRunning() && entry.getValue().threads.activeCount() == 0);
+    }
+
+    /**
+     * @return - the ids of all the live threads of the hosted games.
+     */
+    private long[] threadIds() {
+        List<Long> ids = new ArrayList<>();
+        for (Hosted hosted : games.values()) {
+            Thread[] threads = new Thread[hosted.threads.activeCount() + 4];
+            int count = hosted.threads.enumerate(threads);
+            for (int i = 0; i < count; i++) ids.add(threads[i].getId());
+        }
+        return ids.stream().mapToLong(Long::longValue).toArray();
+    }
+
+    /**
+     * Ends all the games (in parallel) and waits for their threads. If the caller is interrupted, the remaining games
+     * are terminated without waiting and the interrupt status is kept.
+     */
+    @Override
+    public void close() {
+        List<Map.Entry<Integer, Hosted>> closing = new ArrayList<>(games.entrySet());
+        games.clear();
+        for (Map.Entry<Integer, Hosted> entry : closing) entry.getValue().game.terminate();
+        try {
+            for (Map.Entry<Integer, Hosted> entry : closing) awaitTermination(entry.getKey(), entry.getValue());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        int tables = args.length > 0 ? Integer.parseInt(args[0]) : 100;
+        int seconds = args.length > 1 ? Integer.parseInt(args[1]) : 10;
+
+        Logger logger = Logger.getLogger("SetGameHostLogger");
+        logger.setUseParentHandlers(false);
+        logger.addHandler(new ConsoleHandler());
+        Properties properties = Config.loadProperties("config.properties", logger);
+        properties.setProperty("LogLevel", "WARNING"); // the games' logs would measure the console, not the games
+        properties.setProperty("Hints", "False");
+
+        ThreadMXBean threadBean = ManagementFactory.getThreadMXBean();
+        MemoryMXBean memoryBean = ManagementFactory.getMemoryMXBean();
+        System.gc();
+        long heapBefore = memoryBean.getHeapMemoryUsage().getUsed();
+        int threadsBefore = threadBean.getThreadCount();
+
+        GameHost host = new GameHost(properties, logger);
+        try {
+            long openStart = System.nanoTime();
+            for (int i = 0; i < tables; i++) host.open();
+            long openNanos = System.nanoTime() - openStart;
+            Thread.sleep(1000); // let the games deal their first cards
+
+            long[] ids = host.threadIds();
+            long cpuBefore = cpuTime(threadBean, ids);
+            long measureStart = System.nanoTime();
+            Thread.sleep(seconds * 1000L);
+            double measuredSeconds = (System.nanoTime() - measureStart) / 1e9;
+            long cpuNanos = cpuTime(threadBean, ids) - cpuBefore;
+
+            System.gc();
+            long heap = memoryBean.getHeapMemoryUsage().getUsed() - heapBefore;
+            int threads = threadBean.getThreadCount() - threadsBefore;
+            System.out.printf("%d tables opened in %dms (%d still running after %.0fs)%n", tables, openNanos / 1_000_000,
+                    host.size(), measuredSeconds + 1);
+            System.out.printf("per table: %.1f threads, %.1f KB heap, %.0f us cpu per second (%.3f%% of a core)%n",
+                    (double) threads / tables, heap / 1024.0 / tables, cpuNanos / 1000.0 / measuredSeconds / tables,
+                    cpuNanos / 1e7 / measuredSeconds / tables);
+        } finally {
+            long closeStart = System.nanoTime();
+            host.close();
+            System.out.printf("closed in %dms%n", (System.nanoTime() - closeStart) / 1_000_000);
+        }
+    }
+
+    private static long cpuTime(ThreadMXBean threadBean, long[] ids) {
+        long total = 0;
+        for (long id : ids) {
+            long cpu = threadBean.getThreadCpuTime(id);
+            if (cpu > 0) total += cpu;
+        }
+        return total;
+    }
+}
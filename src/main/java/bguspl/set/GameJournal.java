@@ -0,0 +1,410 @@
+package bguspl.set;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * A compact binary journal of the game events, appended into a memory-mapped file.
+ * Every event is a fixed-width record, so writing one is a lock-free reservation followed by a few absolute puts
+ * into the mapped file, with no allocation. The dealer and all the players may write concurrently.
+ *
+ * File layout: a HEADER_SIZE header (magic, version, seed and the game dimensions, see Reader) followed by
+ * RECORD_SIZE records:
+ * <pre>
+ * offset size
+ *  0     8    nanos  - System.nanoTime() relative to the journal start
+ *  8     4    slot   - the table slot (-1 if not relevant; FIND_SETS: the number of cards searched)
+ *  12    4    card   - the card id (-1 if not relevant; FIND_SETS: the number of sets requested)
+ *  16    8    value  - event dependent (score, duration, freeze time, number of cards...)
+ *  24    4    aux    - event dependent (number of sets found...)
+ *  28    2    player - the player id (-1 if not relevant)
+ *  30    1    flag   - event dependent (legal set, token placed)
+ *  31    1    type   - the event type (0 marks the end of the journal), written last
+ * </pre>
+ * A game resumed from a checkpoint starts with RESUME records: one per player with the restored score (player, value),
+ * then one per card that left the game before the checkpoint (card); the restored table follows as DEAL and TOKEN
+ * records.
+ * The last record of a game that ran to the dealer's end is an END record with the final state: the cards on the table
+ * (slot), the cards in the deck (value) and their deckChecksum (aux).
+ */
+public class GameJournal implements GameEvents, Closeable {
+
+    public static final long MAGIC = 0x5345544a524e4c31L; // "SETJRNL1"
+    public static final int VERSION = 1;
+    public static final int HEADER_SIZE = 64;
+    public static final int RECORD_SIZE = 32;
+
+    /**
+     * The file is mapped in segments of this size (a multiple of RECORD_SIZE and HEADER_SIZE).
+     */
+    static final int SEGMENT_SIZE = RECORD_SIZE * 1024 * 1024;
+
+    /**
+     * Event types.
+     */
+    public static final byte DEAL = 1;
+    public static final byte REMOVE = 2;
+    public static final byte TOKEN = 3;
+    public static final byte CLAIM = 4;
+    public static final byte VERDICT = 5;
+    public static final byte RESHUFFLE = 6;
+    public static final byte SCORE = 7;
+    public static final byte FREEZE_START = 8;
+    public static final byte FREEZE_END = 9;
+    public static final byte FIND_SETS = 10;
+    public static final byte END = 11;
+    public static final byte RESUME = 12;
+
+    private static final int MAX_SEGMENTS = 1024;
+
+    private final FileChannel channel;
+    private final AtomicReferenceArray<MappedByteBuffer> segments = new AtomicReferenceArray<>(MAX_SEGMENTS);
+    private final AtomicLong nextRecord = new AtomicLong();
+    private final AtomicLong lostRecords = new AtomicLong();
+    private final long startNanos;
+    private volatile boolean closed;
+
+    /**
+     * The number of append() calls past the closed check, which close() waits for before it unmaps the file.
+     */
+    private final AtomicInteger appending = new AtomicInteger();
+
+    /**
+     * Creates a new journal (an existing file is overwritten).
+     *
+     * @param path   - the journal file.
+     * @param config - the game configuration (its dimensions are kept in the header).
+     * @param seed   - the random seed of the game (kept in the header).
+     * @throws IOException - if the file cannot be created.
+     */
+    public GameJournal(Path path, Config config, long seed) throws IOException {
+        channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING);
+        startNanos = System.nanoTime();
+        MappedByteBuffer first = segment(0);
+        first.putLong(0, MAGIC);
+        first.putInt(8, VERSION);
+        first.putInt(12, RECORD_SIZE);
+        first.putLong(16, seed);
+        first.putLong(24, System.currentTimeMillis());
+        first.putInt(32, config.featureSize);
+        first.putInt(36, config.featureCount);
+        first.putInt(40, config.rows);
+        first.putInt(44, config.columns);
+        first.putInt(48, config.players);
+        first.putLong(56, -1); // record count, set by close()
+    }
+
+    private MappedByteBuffer segment(int index) throws IOException {
+        MappedByteBuffer segment = segments.get(index);
+        if (segment != null) return segment;
+        synchronized (segments) {
+            segment = segments.get(index);
+            if (segment == null) {
+                segment = channel.map(FileChannel.MapMode.READ_WRITE, (long) index * SEGMENT_SIZE, SEGMENT_SIZE);
+                segments.set(index, segment);
+            }
+            return segment;
+        }
+    }
+
+    /**
+     * @return - the number of records appended so far.
+     */
+    public long records() {
+        return Math.min(nextRecord.get(), maxRecords());
+    }
+
+    /**
+     * @return - the number of records that did not fit in the journal.
+     */
+    public long lostRecords() {
+        return lostRecords.get();
+    }
+
+    private static long maxRecords() {
+        return ((long) MAX_SEGMENTS * SEGMENT_SIZE - HEADER_SIZE) / RECORD_SIZE;
+    }
+
+    /**
+     * Appends a record. Safe to call from any thread.
+     */
+    public void append(byte type, int player, int slot, int card, long value, int aux, boolean flag) {
+        appending.incrementAndGet(); // before the check: close() sets closed, then waits for the count to drop
+        try {
+            if (closed) {
+                lostRecords.incrementAndGet();
+                return;
+            }
+            write(type, player, slot, card, value, aux, flag);
+        } finally {
+            appending.decrementAndGet();
+        }
+    }
+
+    private void write(byte type, int player, int slot, int card, long value, int aux, boolean flag) {
+        long record = nextRecord.getAndIncrement();
+        if (record >= maxRecords()) {
+            lostRecords.incrementAndGet();
+            return;
+        }
+        long offset = HEADER_SIZE + record * RECORD_SIZE;
+        ByteBuffer buffer;
+        try {
+            buffer = segment((int) (offset / SEGMENT_SIZE));
+        } catch (IOException e) {
+            lostRecords.incrementAndGet();
+            return;
+        }
+        int at = (int) (offset % SEGMENT_SIZE);
+        buffer.putLong(at, System.nanoTime() - startNanos);
+        buffer.putInt(at + 8, slot);
+        buffer.putInt(at + 12, card);
+        buffer.putLong(at + 16, value);
+        buffer.putInt(at + 24, aux);
+        buffer.putShort(at + 28, (short) player);
+        buffer.put(at + 30, (byte) (flag ? 1 : 0));
+        buffer.put(at + 31, type);
+    }
+
+    @Override
+    public void cardDealt(int card, int slot) {
+        append(DEAL, -1, slot, card, 0, 0, false);
+    }
+
+    @Override
+    public void cardRemoved(int card, int slot) {
+        append(REMOVE, -1, slot, card, 0, 0, false);
+    }
+
+    @Override
+    public void tokenFlipped(int player, int slot, boolean placed) {
+        append(TOKEN, player, slot, -1, 0, 0, placed);
+    }
+
+    @Override
+    public void claimSubmitted(int player) {
+        append(CLAIM, player, -1, -1, 0, 0, false);
+    }
+
+    @Override
+    public void claimVerified(int player, boolean legal, long durationNanos) {
+        append(VERDICT, player, -1, -1, durationNanos, 0, legal);
+    }
+
+    @Override
+    public void reshuffle(int cardsReturned) {
+        append(RESHUFFLE, -1, -1, -1, cardsReturned, 0, false);
+    }
+
+    @Override
+    public void scoreChanged(int player, int score) {
+        append(SCORE, player, -1, -1, score, 0, false);
+    }
+
+    @Override
+    public void freezeStarted(int player, long millis) {
+        append(FREEZE_START, player, -1, -1, millis, 0, false);
+    }
+
+    @Override
+    public void freezeEnded(int player) {
+        append(FREEZE_END, player, -1, -1, 0, 0, false);
+    }
+
+    @Override
+    public void findSets(int cards, int requested, int found, long durationNanos) {
+        append(FIND_SETS, -1, cards, requested, durationNanos, found, false);
+    }
+
+    @Override
+    public void gameResumed(int[] scores, int[] discarded) {
+        for (int player = 0; player < scores.length; player++)
+            append(RESUME, player, -1, -1, scores[player], 0, false);
+        for (int card : discarded)
+            append(RESUME, -1, -1, card, 0, 0, false);
+    }
+
+    @Override
+    public void gameEnded(int cardsOnTable, int[] deck) {
+        append(END, -1, cardsOnTable, -1, deck.length, deckChecksum(deck), false);
+    }
+
+    /**
+     * @return - a checksum of a set of cards that does not depend on their order.
+     */
+    public static int deckChecksum(int[] deck) {
+        int checksum = 0;
+        for (int card : deck) {
+            int h = (card + 1) * 0x9E3779B9;
+            checksum += h ^ h >>> 16;
+        }
+        return checksum;
+    }
+
+    /**
+     * Opens a journal for reading.
+     * @param path - the journal file.
+     * @return - a reader positioned before the first record.
+     * @throws IOException - if the file cannot be read or is not a journal.
+     */
+    public static Reader open(Path path) throws IOException {
+        return new Reader(path);
+    }
+
+    /**
+     * Reads a journal sequentially. The reader is a flyweight cursor over the mapped file: next() moves to the next
+     * record and the getters return its fields, so iterating over millions of records does not allocate.
+     */
+    public static class Reader implements Closeable {
+
+        private final FileChannel channel;
+        private final long fileSize;
+        private final long recordCount;
+        private MappedByteBuffer segment;
+        private int segmentIndex = -1;
+        private long nextRecord;
+        private int at;
+
+        public final long seed;
+        public final long startEpochMillis;
+        public final int featureSize;
+        public final int featureCount;
+        public final int rows;
+        public final int columns;
+        public final int players;
+
+        private Reader(Path path) throws IOException {
+            channel = FileChannel.open(path, StandardOpenOption.READ);
+            fileSize = channel.size();
+            if (fileSize < HEADER_SIZE) throw new IOException(path + " is not a game journal (too short)");
+            ByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0, HEADER_SIZE);
+            if (header.getLong(0) != MAGIC || header.getInt(8) != VERSION || header.getInt(12) != RECORD_SIZE)
+                throw new IOException(path + " is not a version " + VERSION + " game journal");
+            seed = header.getLong(16);
+            startEpochMillis = header.getLong(24);
+            featureSize = header.getInt(32);
+            featureCount = header.getInt(36);
+            rows = header.getInt(40);
+            columns = header.getInt(44);
+            players = header.getInt(48);
+            recordCount = header.getLong(56); // -1 if the journal was not closed
+        }
+
+        /**
+         * Moves to the next record.
+         * @return - false iff there are no more records.
+         */
+        public boolean next() throws IOException {
+            if (recordCount >= 0 && nextRecord >= recordCount) return false;
+            long offset = HEADER_SIZE + nextRecord * RECORD_SIZE;
+            if (offset + RECORD_SIZE > fileSize) return false;
+            int index = (int) (offset / SEGMENT_SIZE);
+            if (index != segmentIndex) {
+                long start = (long) index * SEGMENT_SIZE;
+                segment = channel.map(FileChannel.MapMode.READ_ONLY, start, Math.min(SEGMENT_SIZE, fileSize - start));
+                segmentIndex = index;
+            }
+            at = (int) (offset % SEGMENT_SIZE);
+            if (segment.get(at + 31) == 0) return false; // end of an unclosed journal
+            nextRecord++;
+            return true;
+        }
+
+        public long nanos() {
+            return segment.getLong(at);
+        }
+
+        public int slot() {
+            return segment.getInt(at + 8);
+        }
+
+        public int card() {
+            return segment.getInt(at + 12);
+        }
+
+        public long value() {
+            return segment.getLong(at + 16);
+        }
+
+        public int aux() {
+            return segment.getInt(at + 24);
+        }
+
+        public int player() {
+            return segment.getShort(at + 28);
+        }
+
+        public boolean flag() {
+            return segment.get(at + 30) != 0;
+        }
+
+        public byte type() {
+            return segment.get(at + 31);
+        }
+
+        @Override
+        public void close() throws IOException {
+            channel.close();
+        }
+    }
+
+    /**
+     * Writes the record count to the header, flushes the mapped file to the disk, unmaps it and truncates the file to
+     * its records (the last segment is mapped whole). Waits for the appends in progress; events appended after close()
+     * are lost.
+     */
+    @Override
+    public void close() throws IOException {
+        if (closed) return;
+        closed = true;
+        while (appending.get() != 0) Thread.yield(); // an append takes a few puts
+        long count = records();
+        MappedByteBuffer first = segment(0);
+        first.putLong(56, count);
+        for (int i = 0; i < MAX_SEGMENTS; i++) {
+            MappedByteBuffer segment = segments.getAndSet(i, null);
+            if (segment != null) {
+                segment.force();
+                unmap(segment);
+            }
+        }
+        try {
+            channel.truncate(HEADER_SIZE + count * RECORD_SIZE);
+        } finally {
+            channel.close();
+        }
+    }
+
+    /**
+     * Releases a mapping now rather than when it is garbage collected, so the file can be truncated (on Windows a
+     * mapped file cannot be). If the JVM does not allow it, the mapping is left to the garbage collector.
+     */
+    private static void unmap(MappedByteBuffer buffer) {
+        try {
+            Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+            Field unsafe = unsafeClass.getDeclaredField("theUnsafe");
+            unsafe.setAccessible(true);
+            unsafeClass.getMethod("invokeCleaner", ByteBuffer.class).invoke(unsafe.get(null), buffer); // Java 9 and later
+        } catch (NoSuchMethodException e) { // Java 8
+            try {
+                Method cleanerMethod = buffer.getClass().getMethod("cleaner");
+                cleanerMethod.setAccessible(true);
+                Object cleaner = cleanerMethod.invoke(buffer);
+                if (cleaner != null) cleaner.getClass().getMethod("clean").invoke(cleaner);
+            } catch (ReflectiveOperationException | RuntimeException ignored) {
+            }
+        } catch (ReflectiveOperationException | RuntimeException ignored) {
+        }
+    }
+}
@@ -0,0 +1,234 @@
+package bguspl.set;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A user interface that shows nothing, for benchmarks, servers and tests. It counts the calls of every method and,
+ * when created with a configuration, keeps the state a screen would show in primitive arrays. It never logs, builds
+ * strings or waits, so a headless game measures the engine alone.
+ * <p>
+ * The state is written by the game threads as they call it (the table calls are already serialized by the table
+ * lock), and is meant to be read once those threads are joined, or by tests that accept a racy snapshot.
+ */
+public class HeadlessUserInterface implements UserInterface {
+
+    /**
+     * The methods of the user interface, as counted by calls(Method).
+     */
+    public enum Method {
+        PLACE_CARD, REMOVE_CARD, PLACE_TOKEN, REMOVE_ALL_TOKENS, REMOVE_TOKENS, REMOVE_TOKEN,
+        SET_COUNTDOWN, SET_ELAPSED, SET_FREEZE, SET_SCORE, ANNOUNCE_WINNER, DISPOSE
+    }
+
+    private final LongAdder[] calls = new LongAdder[Method.values().length];
+
+    // the state (null if not kept)
+    private final int[] cards;   // -1 if the slot is empty
+    private final long[] tokens; // bit per player, words longs per slot
+    private final int words;
+    private final int[] scores;
+    private final long[] freezes;
+    private volatile long timer = -1;
+    private volatile boolean warn;
+    private volatile boolean elapsed;
+    private volatile int[] winners;
+
+    /**
+     * A user interface that only counts the calls.
+     */
+    public HeadlessUserInterface() {
+        this(null);
+    }
+
+    /**
+     * @param config - the game configuration, to keep the state of its slots and players (null to only count calls).
+     */
+    public HeadlessUserInterface(Config config) {
+        for (int i = 0; i < calls.length; i++)
+            calls[i] = new LongAdder();
+        if (config == null) {
+            cards = null;
+            tokens = null;
+            words = 0;
+            scores = null;
+            freezes = null;
+        } else {
+            cards = new int[config.tableSize];
+            Arrays.fill(cards, -1);
+            words = TokenLabels.words(config.players);
+            tokens = new long[config.tableSize * words];
+            scores = new int[config.players];
+            freezes = new long[config.players];
+        }
+    }
+
+    /**
+     * @return - the number of calls of the method so far.
+     */
+    public long calls(Method method) {
+        return calls[method.ordinal()].sum();
+    }
+
+    /**
+     * @return - the number of calls of all the methods so far.
+     */
+    public long calls() {
+        long sum = 0;
+        for (LongAdder count : calls) sum += count.sum();
+        return sum;
+    }
+
+    /**
+     * @return - true iff the state of the slots and players is kept.
+     */
+    public boolean keepsState() {
+        return cards != null;
+    }
+
+    /**
+     * @return - the card shown in the slot, or -1 if it is empty.
+     * @throws IllegalStateException - if the state is not kept.
+     */
+    public int card(int slot) {
+        return state(cards)[slot];
+    }
+
+    /**
+     * @return - the players with a token shown on the slot (bit per player, a long per 64 players).
+     * @throws IllegalStateException - if the state is not kept.
+     */
+    public long[] tokens(int slot) {
+        return Arrays.copyOfRange(state(tokens), slot * words, (slot + 1) * words);
+    }
+
+    /**
+     * @return - the score shown for the player.
+     * @throws IllegalStateException - if the state is not kept.
+     */
+    public int score(int player) {
+        return state(scores)[player];
+    }
+
+    /**
+     * @return - the freeze time shown for the player (0 or less if not frozen).
+     * @throws IllegalStateException - if the state is not kept.
+     */
+    public long freeze(int player) {
+        return state(freezes)[player];
+    }
+
+    /**
+     * @return - the milliseconds shown by the timer (-1 if never set).
+     */
+    public long timer() {
+        return timer;
+    }
+
+    /**
+     * @return - true iff the timer shows a countdown in warning mode.
+     */
+    public boolean warn() {
+        return warn;
+    }
+
+    /**
+     * @return - true iff the timer shows the elapsed time rather than a countdown.
+     */
+    public boolean elapsed() {
+        return elapsed;
+    }
+
+    /**
+     * @return - the winners announced, or null if the game did not end.
+     */
+    public int[] winners() {
+        return winners;
+    }
+
+    private static <T> T state(T array) {
+        if (array == null) throw new IllegalStateException("the state is not kept");
+        return array;
+    }
+
+    private void count(Method method) {
+        calls[method.ordinal()].increment();
+    }
+
+    @Override
+    public void placeCard(int card, int slot) {
+        count(Method.PLACE_CARD);
+        if (cards != null) cards[slot] = card;
+    }
+
+    @Override
+    public void removeCard(int slot) {
+        count(Method.REMOVE_CARD);
+        if (cards != null) cards[slot] = -1;
+    }
+
+    @Override
+    public void placeToken(int player, int slot) {
+        count(Method.PLACE_TOKEN);
+        if (tokens != null) tokens[slot * words + (player >>> 6)] |= 1L << (player & 63);
+    }
+
+    @Override
+    public void removeTokens() {
+        count(Method.REMOVE_ALL_TOKENS);
+        if (tokens != null) Arrays.fill(tokens, 0);
+    }
+
+    @Override
+    public void removeTokens(int slot) {
+        count(Method.REMOVE_TOKENS);
+        if (tokens != null) Arrays.fill(tokens, slot * words, (slot + 1) * words, 0);
+    }
+
+    @Override
+    public void removeToken(int player, int slot) {
+        count(Method.REMOVE_TOKEN);
+        if (tokens != null) tokens[slot * words + (player >>> 6)] &= ~(1L << (player & 63));
+    }
+
+    @Override
+    public void setCountdown(long millies, boolean warn) {
+        count(Method.SET_COUNTDOWN);
+        if (cards == null) return;
+        this.warn = warn;
+        elapsed = false;
+        timer = millies;
+    }
+
+    @Override
+    public void setElapsed(long millies) {
+        count(Method.SET_ELAPSED);
+        if (cards == null) return;
+        warn = false;
+        elapsed = true;
+        timer = millies;
+    }
+
+    @Override
+    public void setFreeze(int player, long millies) {
+        count(Method.SET_FREEZE);
+        if (freezes != null) freezes[player] = millies;
+    }
+
+    @Override
+    public void setScore(int player, int score) {
+        count(Method.SET_SCORE);
+        if (scores != null) scores[player] = score;
+    }
+
+    @Override
+    public void announceWinner(int[] players) {
+        count(Method.ANNOUNCE_WINNER);
+        if (cards != null) winners = players.clone();
+    }
+
+    @Override
+    public void dispose() {
+        count(Method.DISPOSE);
+    }
+}
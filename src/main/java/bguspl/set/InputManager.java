@@ -2,49 +2,96 @@ package bguspl.set;
 
 import bguspl.set.ex.Player;
 
+import java.awt.event.InputEvent;
 import java.awt.event.KeyAdapter;
 import java.awt.event.KeyEvent;
-import java.util.Arrays;
 import java.util.logging.Logger;
 
 /**
  * This class handles the input from the keyboard, translates it to table grid slots and dispatches accordingly.
+ * <p>
+ * It runs on the event dispatch thread, so a key press costs a lookup in the KeyMap and a non-blocking push to the
+ * player's ring of presses (see Player::keyPressed), and nothing else: no logging, locking or allocation. The time each
+ * press takes is recorded, with the presses that were dropped (the player's ring was full) or not bound to any slot.
  */
 class InputManager extends KeyAdapter {
 
-    private static final int MAX_KEY_CODE = 255;
     private final Player[] players;
-    int[] keyMap = new int[MAX_KEY_CODE + 1];
-    int[] keyToSlot = new int[MAX_KEY_CODE + 1];
-    private final Logger logger;
+    private final KeyMap keys;
 
-    public InputManager(Logger logger, Config config, Player[] players) {
-        this.players = players;
-        this.logger = logger;
+    /**
+     * The time from the press event to its delivery, in nanoseconds.
+     */
+    private final LatencyHistogram dispatchNanos = new LatencyHistogram();
 
-        // initialize the keys
-        for (int player = 0; player < config.players; ++player)
-            for (int i = 0; i < config.playerKeys(player).length; i++) {
-                int keyCode = config.playerKeys(player)[i];
-                if (keyCode >= keyMap.length) reallocArrays(keyCode); // enlarge the array for higher key codes
-                keyMap[keyCode] = player + 1; // 1 for first player and 2 for second player
-                keyToSlot[keyCode] = i;
-            }
-    }
+    // written by the event dispatch thread only
+    private volatile long dispatched;
+    private volatile long dropped;
+    private volatile long unbound;
 
-    private void reallocArrays(int keyCode) {
-        keyMap = Arrays.copyOf(keyMap, keyCode + 1);
-        keyToSlot = Arrays.copyOf(keyToSlot, keyCode + 1);
+    public InputManager(Logger logger, Config config, Player[] players) {
+        this.players = players;
+        keys = new KeyMap(logger, config);
     }
 
     @Override
     public void keyPressed(KeyEvent e) {
-        // dispatch the key event to the player according to the key map
-        int keyCode = e.getKeyCode();
-        int player = keyMap[keyCode] - 1;
-        if (player >= 0){
-            logger.severe("key " + keyCode + " was pressed by player " + (player + 1));
-            players[player].keyPressed(keyToSlot[keyCode]);
+        dispatch(e.getKeyCode(), modifiers(e.getModifiersEx()), System.nanoTime());
+    }
+
+    /**
+     * Delivers a key press to the player it belongs to.
+     *
+     * @param keyCode    - the key code.
+     * @param modifiers  - the modifiers held, as Config.KEY_SHIFT etc.
+     * @param pressNanos - System.nanoTime() at the moment the key was pressed.
+     */
+    void dispatch(int keyCode, int modifiers, long pressNanos) {
+        int entry = keys.lookup(keyCode, modifiers);
+        Player player = entry == KeyMap.NONE ? null : players[KeyMap.player(entry)];
+        if (player == null) { // not a slot key, or the game did not create the player yet
+            unbound++;
+            return;
         }
+        if (!player.keyPressed(KeyMap.slot(entry), pressNanos)) dropped++;
+        dispatched++;
+        dispatchNanos.record(System.nanoTime() - pressNanos);
+    }
+
+    private static int modifiers(int modifiersEx) {
+        int modifiers = 0;
+        if ((modifiersEx & InputEvent.SHIFT_DOWN_MASK) != 0) modifiers |= Config.KEY_SHIFT;
+        if ((modifiersEx & InputEvent.CTRL_DOWN_MASK) != 0) modifiers |= Config.KEY_CTRL;
+        if ((modifiersEx & InputEvent.ALT_DOWN_MASK) != 0) modifiers |= Config.KEY_ALT;
+        if ((modifiersEx & InputEvent.META_DOWN_MASK) != 0) modifiers |= Config.KEY_META;
+        return modifiers;
+    }
+
+    /**
+     * @return - the time the event dispatch thread spent per key press delivered, in nanoseconds.
+     */
+    LatencyHistogram dispatchNanos() {
+        return dispatchNanos;
+    }
+
+    /**
+     * @return - the number of presses delivered to the players (including those dropped).
+     */
+    long dispatched() {
+        return dispatched;
+    }
+
+    /**
+     * @return - the number of presses dropped since the player's ring was full.
+     */
+    long dropped() {
+        return dropped;
+    }
+
+    /**
+     * @return - the number of presses of keys that are not bound to a slot.
+     */
+    long unbound() {
+        return unbound;
     }
 }
@@ -0,0 +1,85 @@
+package bguspl.set;
+
+import java.util.Arrays;
+import java.util.logging.Logger;
+
+/**
+ * The keys of the human players, as one dense table from a key code and its modifiers to the player and the slot the
+ * key stands for, built once from the configuration. A lookup is a shift, an or and an array read, whatever the number
+ * of players, slots and modifiers.
+ * <p>
+ * A key bound without modifiers also answers for the modifier combinations that are not bound to anything else (so
+ * Shift+Q still picks Q's slot, unless Shift+Q is a key of its own).
+ */
+class KeyMap {
+
+    /**
+     * Returned by lookup() for a key that is not bound.
+     */
+    static final int NONE = -1;
+
+    private static final int MODIFIER_BITS = 4; // shift, ctrl, alt, meta (see Config.KEY_SHIFT etc.)
+    private static final int MODIFIER_COMBINATIONS = 1 << MODIFIER_BITS;
+
+    /**
+     * By key code << MODIFIER_BITS | modifiers: the player << 16 | slot, or NONE.
+     */
+    private final int[] entries;
+
+    /**
+     * @param logger - to warn about keys bound twice.
+     * @param config - the keys of the players (only those of the human players are bound: the keys of a computer
+     *               player would race its own thread).
+     */
+    KeyMap(Logger logger, Config config) {
+        int maxKeyCode = 0;
+        for (int player = 0; player < config.humanPlayers; player++)
+            for (int key : config.playerKeys(player))
+                maxKeyCode = Math.max(maxKeyCode, key & Config.KEY_CODE_MASK);
+        entries = new int[(maxKeyCode + 1) << MODIFIER_BITS];
+        Arrays.fill(entries, NONE);
+
+        for (int player = 0; player < config.humanPlayers; player++) {
+            int[] keys = config.playerKeys(player);
+            for (int slot = 0; slot < keys.length; slot++) {
+                if ((keys[slot] & Config.KEY_CODE_MASK) == 0) continue; // no key for this slot
+                int index = index(keys[slot]);
+                if (entries[index] != NONE)
+                    logger.warning("key " + keys[slot] + " of player " + (player + 1) + " is already the key of player "
+                            + (player(entries[index]) + 1) + " for slot " + slot(entries[index]) + ": ignored");
+                else entries[index] = player << 16 | slot;
+            }
+        }
+
+        // the plain keys answer for the unbound modifier combinations
+        for (int base = 0; base < entries.length; base += MODIFIER_COMBINATIONS)
+            if (entries[base] != NONE)
+                for (int modifiers = 1; modifiers < MODIFIER_COMBINATIONS; modifiers++)
+                    if (entries[base + modifiers] == NONE) entries[base + modifiers] = entries[base];
+    }
+
+    /**
+     * @param key - a key code and its modifiers, as in Config::playerKeys.
+     */
+    private static int index(int key) {
+        return (key & Config.KEY_CODE_MASK) << MODIFIER_BITS | (key >>> 16) & (MODIFIER_COMBINATIONS - 1);
+    }
+
+    /**
+     * @param keyCode   - the key code (KeyEvent::getKeyCode).
+     * @param modifiers - the modifiers held, as Config.KEY_SHIFT etc.
+     * @return - the player << 16 | slot of the key, or NONE.
+     */
+    int lookup(int keyCode, int modifiers) {
+        int index = index(keyCode | modifiers);
+        return keyCode > 0 && keyCode <= Config.KEY_CODE_MASK && index < entries.length ? entries[index] : NONE;
+    }
+
+    static int player(int entry) {
+        return entry >>> 16;
+    }
+
+    static int slot(int entry) {
+        return entry & 0xFFFF;
+    }
+}
@@ -0,0 +1,253 @@
+package bguspl.set;
+
+import javax.swing.*;
+import java.awt.*;
+import java.awt.event.InputEvent;
+import java.awt.event.MouseWheelEvent;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * The grid of a large table (see Config::largeTable): one component that paints the cells itself, meant to be shown in
+ * a JScrollPane. Only the cells inside the clip are painted, so the cost of a frame depends on the cells in view and
+ * on the cells that changed, not on the size of the table. Ctrl + mouse wheel zooms around the mouse.
+ * Used by the event dispatch thread only.
+ */
+class LargeGridView extends JComponent implements Scrollable {
+
+    static final double MIN_SCALE = 0.1;
+    static final double MAX_SCALE = 2;
+    private static final double ZOOM_STEP = 1.25;
+
+    /**
+     * The number of zoom levels whose images are kept (zooming back and forth does not prepare them again).
+     */
+    static final int LEVELS_KEPT = 3;
+
+    /**
+     * The largest viewport the grid asks for (the window may be resized beyond it).
+     */
+    private static final Dimension MAX_VIEWPORT = new Dimension(1200, 800);
+
+    private final Config config;
+    private final TokenLabels tokenLabels;
+
+    /**
+     * The images of the cards at the zoom level of the images (scale rounded up to a power of ZOOM_STEP), and those of
+     * the previous level, drawn while the new ones are prepared. Level 1 is the shared CardImages of the cell size.
+     */
+    private double imageScale;
+    private CardImages images;
+    private CardImages previousImages;
+
+    /**
+     * The images of the levels used lately, by level (in access order). The images of a level that is dropped stop
+     * being prepared.
+     */
+    private final Map<Double, CardImages> levels = new LinkedHashMap<Double, CardImages>(LEVELS_KEPT + 1, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Double, CardImages> eldest) {
+            if (size() <= LEVELS_KEPT) return false;
+            if (eldest.getKey() != 1) eldest.getValue().cancel(); // not the shared images
+            return true;
+        }
+    };
+
+    private final int[] slotCards; // -1 if the slot is empty
+    private final long[][] slotTokens; // bit per player (see TokenLabels::words)
+
+    private double scale;
+    private int cellWidth;
+    private int cellHeight;
+    private Font tokenFont;
+
+    /**
+     * The number of cells drawn by the last paint (for tests).
+     */
+    private int paintedCells;
+
+    /**
+     * @param config - the game configuration.
+     */
+    LargeGridView(Config config) {
+        this.config = config;
+        tokenLabels = new TokenLabels(config.playerNames);
+        slotCards = new int[config.tableSize];
+        Arrays.fill(slotCards, -1);
+        slotTokens = new long[config.tableSize][TokenLabels.words(config.players)];
+        setOpaque(true);
+        setBackground(Color.WHITE);
+
+        // start with the whole table in view, unless it gets too small to read
+        setScale(Math.min(1, Math.min(MAX_VIEWPORT.width / (double) (config.columns * config.cellWidth),
+                MAX_VIEWPORT.height / (double) (config.rows * config.cellHeight))));
+
+        addMouseWheelListener(this::mouseWheelMoved);
+    }
+
+    double scale() {
+        return scale;
+    }
+
+    int paintedCells() {
+        return paintedCells;
+    }
+
+    /**
+     * Sets the zoom (clamped to MIN_SCALE..MAX_SCALE): 1 draws the cells at the configured cell size.
+     */
+    void setScale(double scale) {
+        this.scale = Math.max(MIN_SCALE, Math.min(MAX_SCALE, scale));
+        cellWidth = Math.max(1, (int) Math.round(config.cellWidth * this.scale));
+        cellHeight = Math.max(1, (int) Math.round(config.cellHeight * this.scale));
+        tokenFont = new Font("Serif", Font.BOLD, Math.max(8, cellHeight / 6));
+        updateImages();
+        setPreferredSize(new Dimension(config.columns * cellWidth, config.rows * cellHeight));
+        revalidate();
+        repaint();
+    }
+
+    /**
+     * Switches to the images of the zoom level of the scale, if it changed.
+     */
+    private void updateImages() {
+        double level = Math.pow(ZOOM_STEP, Math.ceil(Math.log(scale) / Math.log(ZOOM_STEP) - 1e-9));
+        if (images != null && level == imageScale) return;
+        imageScale = level;
+        previousImages = images;
+        images = levels.computeIfAbsent(level, ignored -> level == 1 ? CardImages.of(config) : CardImages.sized(config,
+                Math.max(1, (int) Math.round(config.cellWidth * level)), Math.max(1, (int) Math.round(config.cellHeight * level))));
+        CardImages images = this.images;
+        images.emptyCard(() -> EventQueue.invokeLater(() -> {
+            if (this.images == images) repaint();
+        }));
+    }
+
+    /**
+     * @return - the number of zoom levels whose images are kept (for tests).
+     */
+    int imageLevels() {
+        return levels.size();
+    }
+
+    /**
+     * Zooms in (rotation < 0) or out, keeping the point under the mouse in place.
+     */
+    private void mouseWheelMoved(MouseWheelEvent e) {
+        if ((e.getModifiersEx() & InputEvent.CTRL_DOWN_MASK) == 0) { // a scroll: the scroll pane's
+            Container scrollPane = SwingUtilities.getAncestorOfClass(JScrollPane.class, this);
+            if (scrollPane != null) scrollPane.dispatchEvent(SwingUtilities.convertMouseEvent(this, e, scrollPane));
+            return;
+        }
+        double before = scale;
+        setScale(scale * Math.pow(ZOOM_STEP, -e.getPreciseWheelRotation()));
+        double ratio = scale / before;
+        Container parent = getParent();
+        if (parent instanceof JViewport) {
+            JViewport viewport = (JViewport) parent;
+            Point view = viewport.getViewPosition();
+            Point mouse = e.getPoint(); // in the grid, before the zoom
+            int x = (int) Math.round(mouse.x * ratio - (mouse.x - view.x));
+            int y = (int) Math.round(mouse.y * ratio - (mouse.y - view.y));
+            viewport.validate(); // the new preferred size
+            viewport.setViewPosition(new Point(Math.max(0, x), Math.max(0, y)));
+        }
+    }
+
+    /**
+     * Shows a slot, repainting its cell if it changed.
+     */
+    void setSlot(int slot, int card, long[] tokens) {
+        if (slotCards[slot] == card && Arrays.equals(slotTokens[slot], tokens)) return;
+        slotCards[slot] = card;
+        System.arraycopy(tokens, 0, slotTokens[slot], 0, tokens.length);
+        repaintSlot(slot);
+    }
+
+    private void repaintSlot(int slot) {
+        repaint(slot % config.columns * cellWidth, slot / config.columns * cellHeight, cellWidth, cellHeight);
+    }
+
+    /**
+     * @return - the image of an empty slot, or null if none is ready (then the cell is left blank).
+     */
+    private Image emptyCard() {
+        Image emptyCard = images.emptyCard(null);
+        return emptyCard == null && previousImages != null ? previousImages.emptyCard(null) : emptyCard;
+    }
+
+    private Image slotImage(int slot) {
+        int card = slotCards[slot];
+        if (card < 0) return emptyCard();
+        CardImages images = this.images;
+        Image image = images.card(card, () -> EventQueue.invokeLater(() -> {
+            if (slotCards[slot] == card && this.images == images) repaintSlot(slot);
+        }));
+        if (image == null && previousImages != null) image = previousImages.ready(card);
+        return image != null ? image : emptyCard();
+    }
+
+    @Override
+    protected void paintComponent(Graphics graphics) {
+        Graphics2D g = (Graphics2D) graphics;
+        Rectangle clip = g.getClipBounds();
+        if (clip == null) clip = new Rectangle(0, 0, getWidth(), getHeight());
+        g.setColor(getBackground());
+        g.fillRect(clip.x, clip.y, clip.width, clip.height);
+
+        int firstColumn = Math.max(0, clip.x / cellWidth);
+        int lastColumn = Math.min(config.columns - 1, (clip.x + clip.width - 1) / cellWidth);
+        int firstRow = Math.max(0, clip.y / cellHeight);
+        int lastRow = Math.min(config.rows - 1, (clip.y + clip.height - 1) / cellHeight);
+        int painted = 0;
+        g.setFont(tokenFont);
+        FontMetrics metrics = g.getFontMetrics();
+        for (int row = firstRow; row <= lastRow; row++) {
+            for (int column = firstColumn; column <= lastColumn; column++) {
+                int slot = row * config.columns + column;
+                int x = column * cellWidth;
+                int y = row * cellHeight;
+                Image image = slotImage(slot);
+                if (image != null) g.drawImage(image, x, y, cellWidth, cellHeight, this);
+                g.setColor(Color.BLACK);
+                g.drawRect(x, y, cellWidth - 1, cellHeight - 1);
+                String text = tokenLabels.text(slotTokens[slot]);
+                if (!text.isEmpty()) {
+                    Shape cell = g.getClip();
+                    g.clipRect(x, y, cellWidth, cellHeight);
+                    g.drawString(text, x + Math.max(2, (cellWidth - metrics.stringWidth(text)) / 2), y + metrics.getAscent());
+                    g.setClip(cell);
+                }
+                painted++;
+            }
+        }
+        paintedCells = painted;
+    }
+
+    @Override
+    public Dimension getPreferredScrollableViewportSize() {
+        Dimension preferred = getPreferredSize();
+        return new Dimension(Math.min(preferred.width, MAX_VIEWPORT.width), Math.min(preferred.height, MAX_VIEWPORT.height));
+    }
+
+    @Override
+    public int getScrollableUnitIncrement(Rectangle visibleRect, int orientation, int direction) {
+        return orientation == SwingConstants.HORIZONTAL ? cellWidth : cellHeight;
+    }
+
+    @Override
+    public int getScrollableBlockIncrement(Rectangle visibleRect, int orientation, int direction) {
+        return orientation == SwingConstants.HORIZONTAL ? visibleRect.width : visibleRect.height;
+    }
+
+    @Override
+    public boolean getScrollableTracksViewportWidth() {
+        return false;
+    }
+
+    @Override
+    public boolean getScrollableTracksViewportHeight() {
+        return false;
+    }
+}
@@ -0,0 +1,122 @@
+package bguspl.set;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A lock-free, fixed size latency histogram with log-linear buckets (in the spirit of HdrHistogram).
+ * Values below 64 are counted exactly; larger values are counted with 5 significant bits (about 3% error).
+ * Recording never allocates, so it may be used on hot paths; queries may run concurrently with recording.
+ */
+public class LatencyHistogram {
+
+    private static final int SUB_BUCKET_BITS = 5;
+    private static final int SUB_BUCKET_COUNT = 1 << SUB_BUCKET_BITS;
+    private static final int BUCKETS = (64 - SUB_BUCKET_BITS) * SUB_BUCKET_COUNT;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+    private final AtomicLong totalCount = new AtomicLong();
+    private final AtomicLong sum = new AtomicLong();
+    private final AtomicLong max = new AtomicLong();
+
+    static int bucketOf(long value) {
+        if (value < 2 * SUB_BUCKET_COUNT) return (int) value;
+        int shift = 63 - Long.numberOfLeadingZeros(value) - SUB_BUCKET_BITS;
+        return shift * SUB_BUCKET_COUNT + (int) (value >>> shift);
+    }
+
+    /**
+     * @return - the highest value that is counted in the bucket.
+     */
+    static long highestValueOf(int bucket) {
+        if (bucket < 2 * SUB_BUCKET_COUNT) return bucket;
+        int shift = bucket / SUB_BUCKET_COUNT - 1;
+        long mantissa = bucket - (long) shift * SUB_BUCKET_COUNT;
+        return ((mantissa + 1) << shift) - 1;
+    }
+
+    /**
+     * Records a single value (negative values are recorded as 0).
+     * @param value - the value to record (usually nanoseconds).
+     */
+    public void record(long value) {
+        if (value < 0) value = 0;
+        counts.incrementAndGet(bucketOf(value));
+        sum.addAndGet(value);
+        totalCount.incrementAndGet();
+        long currentMax = max.get();
+        while (value > currentMax && !max.compareAndSet(currentMax, value))
+            currentMax = max.get();
+    }
+
+    /**
+     * Adds all the values recorded in another histogram to this one.
+     * @param other - the histogram to add.
+     */
+    public void add(LatencyHistogram other) {
+        for (int i = 0; i < BUCKETS; i++) {
+            long count = other.counts.get(i);
+            if (count != 0) counts.addAndGet(i, count);
+        }
+        sum.addAndGet(other.sum.get());
+        totalCount.addAndGet(other.totalCount.get());
+        long otherMax = other.max.get();
+        long currentMax = max.get();
+        while (otherMax > currentMax && !max.compareAndSet(currentMax, otherMax))
+            currentMax = max.get();
+    }
+
+    public void reset() {
+        for (int i = 0; i < BUCKETS; i++) counts.set(i, 0);
+        sum.set(0);
+        totalCount.set(0);
+        max.set(0);
+    }
+
+    public long count() {
+        return totalCount.get();
+    }
+
+    public long max() {
+        return max.get();
+    }
+
+    public double mean() {
+        long count = totalCount.get();
+        return count == 0 ? 0 : (double) sum.get() / count;
+    }
+
+    /**
+     * @param percentile - the percentile to query, between 0 and 100.
+     * @return - the value below which the given percentage of the recorded values are (0 if nothing was recorded).
+     */
+    public long percentile(double percentile) {
+        long count = totalCount.get();
+        if (count == 0) return 0;
+        long rank = Math.max(1, (long) Math.ceil(Math.min(percentile, 100.0) / 100.0 * count));
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += counts.get(i);
+            if (seen >= rank) return Math.min(highestValueOf(i), max.get());
+        }
+        return max.get();
+    }
+
+    /**
+     * @param unitDivisor - the divisor to apply to the recorded values (e.g. 1000 for nanoseconds to microseconds).
+     * @param unit        - the name of the resulting unit.
+     * @return - a one line summary with the count, p50, p99, p99.9 and max values.
+     */
+    public String summary(long unitDivisor, String unit) {
+        return "count=" + count()
+                + " p50=" + percentile(50) / unitDivisor + unit
+                + " p99=" + percentile(99) / unitDivisor + unit
+                + " p999=" + percentile(99.9) / unitDivisor + unit
+                + " max=" + max() / unitDivisor + unit;
+    }
+
+    @Override
+    public String toString() {
+        return summary(1000, "us");
+    }
+}
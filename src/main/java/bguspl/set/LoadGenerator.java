@@ -0,0 +1,194 @@
+package bguspl.set;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.SplittableRandom;
+
+/**
+ * Simulates many remote players of a NetworkServer from a single thread.
+ * Every connection joins a game and presses random slots at a fixed rate; the generator counts the messages it gets
+ * and measures the time from a press until the server reports the token it placed or removed.
+ * Usage: LoadGenerator [host [port [connections [seconds [presses-per-second]]]]]
+ */
+public class LoadGenerator {
+
+    private static final int CONNECT_BATCH = 50;
+
+    /**
+     * A simulated player.
+     */
+    private static class Client {
+        final SocketChannel channel;
+        final ByteBuffer in = ByteBuffer.allocate(64 * 1024);
+        int seat = -1;
+        int slots;
+        int pendingSlot = -1;
+        long pendingNanos;
+        long nextPressNanos;
+
+        Client(SocketChannel channel) {
+            this.channel = channel;
+        }
+    }
+
+    private final InetSocketAddress address;
+    private final int connectionCount;
+    private final long pressIntervalNanos;
+    private final Selector selector;
+    private final List<Client> clients = new ArrayList<>();
+    private final SplittableRandom random = new SplittableRandom();
+
+    private final LatencyHistogram pressLatency = new LatencyHistogram();
+    private long messages;
+    private long bytes;
+    private int joined;
+    private int rejected;
+    private int failed;
+
+    /**
+     * @param address          - the server address.
+     * @param connections      - the number of simulated players.
+     * @param pressesPerSecond - the press rate of each player.
+     */
+    public LoadGenerator(InetSocketAddress address, int connections, double pressesPerSecond) throws IOException {
+        this.address = address;
+        this.connectionCount = connections;
+        this.pressIntervalNanos = (long) (1e9 / pressesPerSecond);
+        selector = Selector.open();
+    }
+
+    /**
+     * Connects all the players and plays for the given time.
+     * @return - the report of the run.
+     */
+    public String run(long millis) throws IOException {
+        long start = System.nanoTime();
+        long end = start + millis * 1_000_000;
+        int connecting = 0;
+        while (System.nanoTime() < end) {
+            for (int i = 0; i < CONNECT_BATCH && connecting < connectionCount; i++, connecting++) connect();
+            selector.select(1);
+            Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+            while (keys.hasNext()) {
+                SelectionKey key = keys.next();
+                keys.remove();
+                Client client = (Client) key.attachment();
+                if (!key.isValid()) continue;
+                if (key.isConnectable()) finishConnect(key, client);
+                else if (key.isReadable()) read(key, client);
+            }
+            pressDue(System.nanoTime());
+        }
+        double seconds = (System.nanoTime() - start) / 1e9;
+        for (Client client : clients) client.channel.close();
+        selector.close();
+        return String.format("%d connections (%d joined, %d rejected, %d failed) in %.1fs: %.0f messages/s, %.2f MB/s%n"
+                        + "press to token: %s",
+                connectionCount, joined, rejected, failed, seconds, messages / seconds, bytes / 1e6 / seconds, pressLatency);
+    }
+
+    private void connect() throws IOException {
+        SocketChannel channel = SocketChannel.open();
+        channel.configureBlocking(false);
+        channel.socket().setTcpNoDelay(true);
+        Client client = new Client(channel);
+        clients.add(client);
+        if (channel.connect(address)) {
+            channel.register(selector, SelectionKey.OP_READ, client);
+            send(client, Protocol.join());
+        } else {
+            channel.register(selector, SelectionKey.OP_CONNECT, client);
+        }
+    }
+
+    private void finishConnect(SelectionKey key, Client client) {
+        try {
+            client.channel.finishConnect();
+            key.interestOps(SelectionKey.OP_READ);
+            send(client, Protocol.join());
+        } catch (IOException e) {
+            failed++;
+            key.cancel();
+        }
+    }
+
+    private void send(Client client, byte[] message) {
+        try {
+            client.channel.write(ByteBuffer.wrap(message)); // a few bytes: never a partial write in practice
+        } catch (IOException e) {
+            failed++;
+        }
+    }
+
+    private void read(SelectionKey key, Client client) {
+        int read;
+        try {
+            read = client.channel.read(client.in);
+        } catch (IOException e) {
+            read = -1;
+        }
+        if (read < 0) {
+            key.cancel();
+            return;
+        }
+        bytes += read;
+        ByteBuffer in = client.in;
+        in.flip();
+        int size;
+        while ((size = Protocol.messageSize(in)) > 0 && in.remaining() >= size) {
+            handle(client, in, in.position());
+            in.position(in.position() + size);
+            messages++;
+        }
+        in.compact();
+    }
+
+    private void handle(Client client, ByteBuffer in, int at) {
+        switch (in.get(at)) {
+            case Protocol.WELCOME:
+                client.seat = in.get(at + 5);
+                client.slots = in.get(at + 7) * in.get(at + 8);
+                client.nextPressNanos = System.nanoTime() + random.nextLong(pressIntervalNanos + 1);
+                joined++;
+                break;
+            case Protocol.FULL:
+                rejected++;
+                break;
+            case Protocol.PLACE_TOKEN:
+            case Protocol.REMOVE_TOKEN:
+                if (in.get(at + 1) == client.seat && in.getShort(at + 2) == client.pendingSlot) {
+                    pressLatency.record(System.nanoTime() - client.pendingNanos);
+                    client.pendingSlot = -1;
+                }
+                break;
+            default:
+        }
+    }
+
+    private void pressDue(long now) {
+        for (Client client : clients) {
+            if (client.seat < 0 || now < client.nextPressNanos) continue;
+            client.pendingSlot = random.nextInt(client.slots);
+            client.pendingNanos = System.nanoTime();
+            send(client, Protocol.press(client.pendingSlot));
+            client.nextPressNanos = now + pressIntervalNanos;
+        }
+    }
+
+    public static void main(String[] args) throws IOException {
+        String host = args.length > 0 ? args[0] : "localhost";
+        int port = args.length > 1 ? Integer.parseInt(args[1]) : 7777;
+        int connections = args.length > 2 ? Integer.parseInt(args[2]) : 200;
+        int seconds = args.length > 3 ? Integer.parseInt(args[3]) : 10;
+        double rate = args.length > 4 ? Double.parseDouble(args[4]) : 5;
+        LoadGenerator generator = new LoadGenerator(new InetSocketAddress(host, port), connections, rate);
+        System.out.println(generator.run(seconds * 1000L));
+    }
+}
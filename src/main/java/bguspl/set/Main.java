@@ -1,11 +1,15 @@
 package bguspl.set;
 
 import bguspl.set.ex.Dealer;
+import bguspl.set.ex.GameCheckpoint;
 import bguspl.set.ex.Player;
-import bguspl.set.ex.Table;
 
 import java.io.File;
 import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.text.SimpleDateFormat;
 import java.util.Arrays;
 import java.util.Calendar;
@@ -23,6 +27,11 @@ public class Main {
     private static boolean xButtonPressed = false;
     private static Logger logger;
 
+    /**
+     * The number of log records that may wait for the log writer thread.
+     */
+    private static final int LOG_QUEUE_CAPACITY = 16 * 1024;
+
     public static void xButtonPressed() throws InterruptedException {
         if (logger != null) logger.severe("exit button pressed");
         xButtonPressed = true;
@@ -46,27 +55,33 @@ public class Main {
         Util util = new UtilImpl(config);
 
         Player[] players = new Player[config.players];
-        UserInterface ui = null;
+        UserInterface ui;
         try {
-            ui = new UserInterfaceSwing(logger, config, players);
+            ui = new UserInterfaceDecorator(logger, util, new UserInterfaceSwing(logger, config, players));
         } catch (UnsupportedOperationException | IllegalArgumentException e) {
             logger.severe("error creating swing user interface: " + e.getMessage());
             logger.severe("will try to run without user interface");
             if (config.humanPlayers > 0)
                 logger.severe("warning: running with human players with no user interface");
+            System.out.println("running without a user interface. Check logs.");
+            ui = new HeadlessUserInterface(config);
         }
-        ui = new UserInterfaceDecorator(logger, util, ui);
+        SpectatorFeed spectators = openSpectatorFeed(config);
+        if (spectators != null) ui = UserInterface.both(ui, spectators);
 
-        Env env = new Env(logger, config, ui, util);
+        GameJournal journal = openJournal(config);
+        GameClock clock = config.virtualTime ? new VirtualClock() : GameClock.SYSTEM;
+        if (config.virtualTime && config.humanPlayers > 0)
+            logger.warning("running on virtual time with human players: the time will skip ahead while they think");
+        Env env = new Env(logger, config, ui, util, GameEvents.both(GameEvents.flightRecorderOrNone(), journal != null ? journal : GameEvents.NONE), clock);
 
         // create the game entities
-        Table table = new Table(env);
-        dealer = new Dealer(env, table, players);
-        for (int i = 0; i < players.length; i++)
-            players[i] = new Player(env, dealer, table, i, i < env.config.humanPlayers);
+        Game game = new Game(env, players);
+        resumeFromCheckpoint(game, config);
+        dealer = game.dealer();
 
         // start the dealer thread
-        ThreadLogger dealerThread = new ThreadLogger(dealer, "dealer", logger);
+        ThreadLogger dealerThread = new ThreadLogger(clock.participant(dealer), "dealer", logger);
         dealerThread.startWithLog();
 
         try {
@@ -79,19 +94,86 @@ public class Main {
             System.out.println("Thanks for playing... it was fun!");
             ThreadLogger.logStop(logger, Thread.currentThread().getName());
             if (!xButtonPressed) env.ui.dispose();
+            closeJournal(journal);
+            closeSpectatorFeed(spectators);
+            if (clock instanceof VirtualClock) {
+                logger.info("virtual time: " + ((VirtualClock) clock).elapsedMillis() + "ms in " + ((VirtualClock) clock).advances() + " advances.");
+                ((VirtualClock) clock).close();
+            }
             for (Handler h : logger.getHandlers()) h.flush();
         }
     }
 
+    private static GameJournal openJournal(Config config) {
+        if (config.journalFile.isEmpty()) return null;
+        try {
+            return new GameJournal(Paths.get(config.journalFile), config, config.seed);
+        } catch (IOException e) {
+            logger.severe("cannot create game journal " + config.journalFile + ": " + e.getMessage());
+            return null;
+        }
+    }
+
+    private static void resumeFromCheckpoint(Game game, Config config) {
+        if (config.checkpointFile.isEmpty()) return;
+        Path file = Paths.get(config.checkpointFile);
+        if (!Files.exists(file)) return;
+        try {
+            GameCheckpoint checkpoint = GameCheckpoint.read(file);
+            if (!checkpoint.matches(config)) {
+                logger.warning("starting a new game: checkpoint " + file + " is of another configuration");
+                return;
+            }
+            game.restore(checkpoint);
+            logger.info("resumed from " + checkpoint);
+        } catch (IOException e) {
+            logger.severe("starting a new game: cannot read checkpoint " + file + ": " + e.getMessage());
+        }
+    }
+
+    private static SpectatorFeed openSpectatorFeed(Config config) {
+        if (config.spectatorPort < 0) return null;
+        try {
+            SpectatorFeed feed = new SpectatorFeed(config, new InetSocketAddress(config.spectatorPort));
+            logger.info("broadcasting to spectators on port " + feed.port());
+            return feed;
+        } catch (IOException e) {
+            logger.severe("cannot broadcast to spectators on port " + config.spectatorPort + ": " + e.getMessage());
+            return null;
+        }
+    }
+
+    private static void closeSpectatorFeed(SpectatorFeed feed) {
+        if (feed == null) return;
+        try {
+            logger.info("spectator feed closed (" + feed.spectators() + " spectators, " + feed.logged() + " bytes, "
+                    + feed.keyframeSkips() + " keyframe skips).");
+            feed.close();
+        } catch (IOException e) {
+            logger.severe("cannot close the spectator feed: " + e.getMessage());
+        }
+    }
+
+    private static void closeJournal(GameJournal journal) {
+        if (journal == null) return;
+        try {
+            journal.close();
+            logger.info("game journal closed with " + journal.records() + " events (" + journal.lostRecords() + " lost).");
+        } catch (IOException e) {
+            logger.severe("cannot close game journal: " + e.getMessage());
+        }
+    }
+
     private static Logger initLogger() {
 
         //just to make our log file nicer :)
         SimpleDateFormat format = new SimpleDateFormat("M-d_HH-mm-ss");
-        FileHandler handler;
+        Handler handler;
         try {
             //noinspection ResultOfMethodCallIgnored
             new File("./logs/").mkdirs();
-            handler = new FileHandler("./logs/" + format.format(Calendar.getInstance().getTime()) + ".log");
+            handler = new AsyncFileHandler(Paths.get("./logs/" + format.format(Calendar.getInstance().getTime()) + ".log"),
+                    LOG_QUEUE_CAPACITY, AsyncFileHandler.OverflowPolicy.BLOCK);
         } catch (IOException e) {
             throw new RuntimeException(e);
         }
@@ -109,7 +191,7 @@ public class Main {
         if (handlers != null) Arrays.stream(handlers).forEach(h -> h.setFormatter(new SimpleFormatter() {
             // default format (with timestamp)  = "[%1$tF %1$tT] [%2$-7s] %3$s%n";
             @Override
-            public synchronized String format(LogRecord lr) {
+            public String format(LogRecord lr) { // called by the log writer thread only
                 return String.format(format, new Date(lr.getMillis()),
                         lr.getLevel().getLocalizedName(), lr.getMessage()
                 );
@@ -117,4 +199,10 @@ public class Main {
         }));
         logger.setLevel(level);
     }
+
+    public static void setLoggerOverflowPolicy(Logger logger, AsyncFileHandler.OverflowPolicy policy) {
+        Handler[] handlers = logger.getHandlers();
+        if (handlers != null) for (Handler handler : handlers)
+            if (handler instanceof AsyncFileHandler) ((AsyncFileHandler) handler).setOverflowPolicy(policy);
+    }
 }
@@ -0,0 +1,463 @@
+package bguspl.set;
+
+import bguspl.set.ex.Player;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Properties;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.ConsoleHandler;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Lets remote players join games over TCP (see Protocol).
+ * A single selector thread accepts the connections, reads the key presses and writes the game updates of all of them.
+ * A connection that sends JOIN gets the next free human seat, in a game hosted by a GameHost (a new game is opened
+ * when the current one is full). The game updates are encoded once per event by the game's user interface and queued
+ * to its connections; the game threads never block on the network. A connection that falls too far behind is closed.
+ * Usage: NetworkServer [port]
+ */
+public class NetworkServer implements Closeable {
+
+    /**
+     * A connection with more bytes than this waiting to be written is closed.
+     */
+    private static final int MAX_QUEUED_BYTES = 256 * 1024;
+
+    /**
+     * The maximal number of messages written by a single (gathering) write.
+     */
+    private static final int WRITE_BATCH = 64;
+
+    private final GameHost host;
+    private final Config config;
+    private final Logger logger;
+    private final Selector selector;
+    private final ServerSocketChannel server;
+    private final Thread selectorThread;
+
+    /**
+     * Joins and leaves lock the game tables and may open or close games, so they run here and not on the selector thread.
+     */
+    private final ExecutorService seating = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "network-seating");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    /**
+     * The connections that have messages to write (added by the game threads).
+     */
+    private final Queue<Connection> flushes = new ConcurrentLinkedQueue<>();
+    private final AtomicBoolean wakeupPending = new AtomicBoolean();
+    private volatile boolean closed;
+
+    /**
+     * The game that new players join (used by the seating thread only).
+     */
+    private Session filling;
+
+    private final AtomicInteger connections = new AtomicInteger();
+
+    /**
+     * Encodes the user interface calls as protocol messages.
+     */
+    private abstract static class Encoder implements UserInterface {
+
+        abstract void send(byte[] message);
+
+        @Override
+        public void placeCard(int card, int slot) {
+            send(Protocol.placeCard(card, slot));
+        }
+
+        @Override
+        public void removeCard(int slot) {
+            send(Protocol.removeCard(slot));
+        }
+
+        @Override
+        public void placeToken(int player, int slot) {
+            send(Protocol.token(true, player, slot));
+        }
+
+        @Override
+        public void removeTokens() {
+            send(Protocol.removeTokens(-1));
+        }
+
+        @Override
+        public void removeTokens(int slot) {
+            send(Protocol.removeTokens(slot));
+        }
+
+        @Override
+        public void removeToken(int player, int slot) {
+            send(Protocol.token(false, player, slot));
+        }
+
+        @Override
+        public void setCountdown(long millies, boolean warn) {
+            send(Protocol.countdown(millies, warn));
+        }
+
+        @Override
+        public void setElapsed(long millies) {
+            send(Protocol.elapsed(millies));
+        }
+
+        @Override
+        public void setFreeze(int player, long millies) {
+            send(Protocol.freeze(player, millies));
+        }
+
+        @Override
+        public void setScore(int player, int score) {
+            send(Protocol.score(player, score));
+        }
+
+        @Override
+        public void announceWinner(int[] players) {
+            send(Protocol.winners(players));
+        }
+
+        @Override
+        public void dispose() {}
+    }
+
+    /**
+     * A hosted game and its remote players. It is the user interface of the game: every update is encoded once and
+     * queued to all the connections.
+     */
+    private class Session extends Encoder {
+        int gameId;
+        Game game;
+        int seatsTaken;
+        final List<Connection> connections = new CopyOnWriteArrayList<>();
+
+        @Override
+        void send(byte[] message) {
+            for (Connection connection : connections) connection.send(message);
+        }
+    }
+
+    /**
+     * A remote player.
+     */
+    private class Connection extends Encoder {
+        final SocketChannel channel;
+        SelectionKey key;
+        final ByteBuffer in = ByteBuffer.allocate(256);
+        final Queue<ByteBuffer> out = new ConcurrentLinkedQueue<>();
+        final ByteBuffer[] batch = new ByteBuffer[WRITE_BATCH];
+        final AtomicInteger queuedBytes = new AtomicInteger();
+        final AtomicBoolean scheduled = new AtomicBoolean();
+        volatile boolean overflow;
+        volatile boolean closed;
+        volatile Session session;
+        volatile int seat = -1;
+        boolean joinRequested;
+
+        Connection(SocketChannel channel) {
+            this.channel = channel;
+        }
+
+        /**
+         * Queues a message. Called by any thread; the message array is shared and must not change.
+         */
+        @Override
+        void send(byte[] message) {
+            if (closed || overflow) return;
+            if (queuedBytes.addAndGet(message.length) > MAX_QUEUED_BYTES) overflow = true;
+            else out.add(ByteBuffer.wrap(message));
+            schedule(this);
+        }
+    }
+
+    /**
+     * @param properties - the configuration of the games (HumanPlayers is the number of remote seats per game).
+     * @param logger     - the logger.
+     * @param address    - the address to listen on (port 0 for any free port).
+     * @throws IOException - if the address cannot be bound.
+     */
+    public NetworkServer(Properties properties, Logger logger, InetSocketAddress address) throws IOException {
+        this.logger = logger;
+        host = new GameHost(properties, logger);
+        config = new Config(logger, properties);
+        selector = Selector.open();
+        server = ServerSocketChannel.open();
+        server.bind(address);
+        server.configureBlocking(false);
+        server.register(selector, SelectionKey.OP_ACCEPT);
+        selectorThread = new Thread(this::selectLoop, "network-selector");
+    }
+
+    public void start() {
+        selectorThread.start();
+    }
+
+    /**
+     * @return - the port the server listens on.
+     */
+    public int port() {
+        return server.socket().getLocalPort();
+    }
+
+    /**
+     * @return - the number of open connections.
+     */
+    public int connections() {
+        return connections.get();
+    }
+
+    /**
+     * @return - the number of hosted games.
+     */
+    public int games() {
+        return host.size();
+    }
+
+    private void schedule(Connection connection) {
+        if (connection.scheduled.compareAndSet(false, true)) {
+            flushes.add(connection);
+            if (wakeupPending.compareAndSet(false, true)) selector.wakeup();
+        }
+    }
+
+    private void selectLoop() {
+        while (!closed) {
+            try {
+                selector.select();
+            } catch (IOException e) {
+                logger.severe("network selector failed: " + e.getMessage());
+                return;
+            }
+            wakeupPending.set(false);
+            Connection scheduled;
+            while ((scheduled = flushes.poll()) != null) {
+                scheduled.scheduled.set(false);
+                write(scheduled);
+            }
+            Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+            while (keys.hasNext()) {
+                SelectionKey key = keys.next();
+                keys.remove();
+                if (!key.isValid()) continue;
+                if (key.isAcceptable()) accept();
+                else {
+                    Connection connection = (Connection) key.attachment();
+                    if (key.isReadable()) read(connection);
+                    if (key.isValid() && key.isWritable()) write(connection);
+                }
+            }
+        }
+    }
+
+    private void accept() {
+        try {
+            SocketChannel channel;
+            while ((channel = server.accept()) != null) {
+                channel.configureBlocking(false);
+                channel.socket().setTcpNoDelay(true);
+                Connection connection = new Connection(channel);
+                connection.key = channel.register(selector, SelectionKey.OP_READ, connection);
+                connections.incrementAndGet();
+            }
+        } catch (IOException e) {
+            logger.warning("cannot accept a connection: " + e.getMessage());
+        }
+    }
+
+    private void read(Connection connection) {
+        int read;
+        try {
+            read = connection.channel.read(connection.in);
+        } catch (IOException e) {
+            read = -1;
+        }
+        if (read < 0) {
+            close(connection);
+            return;
+        }
+        ByteBuffer in = connection.in;
+        in.flip();
+        boolean error = false;
+        while (in.hasRemaining()) {
+            int at = in.position();
+            byte type = in.get(at);
+            // only client messages are accepted, checked on their first byte: a server message may never fit the buffer
+            if (type != Protocol.JOIN && type != Protocol.PRESS) {
+                error = true;
+                break;
+            }
+            int size = Protocol.messageSize(in);
+            if (size == 0 || size > in.capacity()) {
+                error = true;
+                break;
+            }
+            if (size < 0 || in.remaining() < size) break; // the rest did not arrive yet
+            if (type == Protocol.JOIN && !connection.joinRequested) {
+                connection.joinRequested = true;
+                seating.execute(() -> join(connection));
+            } else if (type == Protocol.PRESS) {
+                press(connection, in.getShort(at + 1));
+            }
+            in.position(at + size);
+        }
+        in.compact();
+        if (error) {
+            logger.warning("protocol error, closing connection " + connection.channel);
+            close(connection);
+        }
+    }
+
+    private void press(Connection connection, int slot) {
+        Session session = connection.session;
+        if (session == null || slot < 0 || slot >= config.tableSize) return;
+        Player player = session.game.players()[connection.seat];
+        if (player != null) player.keyPressed(slot);
+    }
+
+    private void write(Connection connection) {
+        if (connection.closed) return;
+        if (connection.overflow) {
+            logger.warning("connection " + connection.channel + " is too slow, closing it");
+            close(connection);
+            return;
+        }
+        try {
+            while (true) {
+                int count = 0;
+                for (ByteBuffer buffer : connection.out) {
+                    connection.batch[count++] = buffer;
+                    if (count == WRITE_BATCH) break;
+                }
+                if (count == 0) break;
+                connection.channel.write(connection.batch, 0, count);
+                int done = 0;
+                while (done < count && !connection.batch[done].hasRemaining()) {
+                    connection.queuedBytes.addAndGet(-connection.batch[done].capacity());
+                    connection.out.poll();
+                    done++;
+                }
+                Arrays.fill(connection.batch, 0, count, null);
+                if (done < count) break; // the socket buffer is full
+            }
+            connection.key.interestOps(connection.out.isEmpty() ? SelectionKey.OP_READ : SelectionKey.OP_READ | SelectionKey.OP_WRITE);
+        } catch (IOException e) {
+            close(connection);
+        }
+    }
+
+    private void close(Connection connection) {
+        if (connection.closed) return;
+        connection.closed = true;
+        connection.key.cancel();
+        try {
+            connection.channel.close();
+        } catch (IOException ignored) {}
+        connections.decrementAndGet();
+        if (!seating.isShutdown()) seating.execute(() -> leave(connection));
+    }
+
+    /**
+     * Seats a connection in the filling game (runs on the seating thread).
+     */
+    private void join(Connection connection) {
+        if (connection.closed) return;
+        if (config.humanPlayers == 0) {
+            connection.send(Protocol.full());
+            return;
+        }
+        if (filling == null || filling.seatsTaken == config.humanPlayers || !filling.game.isRunning()) {
+            Session session = new Session();
+            session.gameId = host.open(session);
+            session.game = host.game(session.gameId);
+            filling = session;
+        }
+        Session session = filling;
+        connection.seat = session.seatsTaken++;
+        connection.session = session;
+        connection.send(Protocol.welcome(session.gameId, connection.seat, config));
+        synchronized (session.game.table()) { // no table update may slip between the table state and the updates
+            session.connections.add(connection);
+            session.game.table().showTo(connection);
+        }
+        for (Player player : session.game.players())
+            connection.send(Protocol.score(player.id, player.score()));
+    }
+
+    /**
+     * Removes a closed connection from its game, and closes the game once all its players left (seating thread).
+     */
+    private void leave(Connection connection) {
+        Session session = connection.session;
+        if (session == null) return;
+        session.connections.remove(connection);
+        if (session.connections.isEmpty() && (session.seatsTaken == config.humanPlayers || !session.game.isRunning())) {
+            if (filling == session) filling = null;
+            try {
+                host.close(session.gameId);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    /**
+     * Stops accepting and serving connections and closes all the games.
+     */
+    @Override
+    public void close() throws IOException {
+        closed = true;
+        selector.wakeup();
+        try {
+            selectorThread.join(5000);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        for (SelectionKey key : selector.keys())
+            key.channel().close();
+        selector.close();
+        seating.shutdown();
+        try {
+            seating.awaitTermination(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        host.close();
+    }
+
+    public static void main(String[] args) throws IOException {
+        int port = args.length > 0 ? Integer.parseInt(args[0]) : 7777;
+        Logger logger = Logger.getLogger("SetGameServerLogger");
+        logger.setUseParentHandlers(false);
+        logger.addHandler(new ConsoleHandler());
+        Properties properties = Config.loadProperties("config.properties", logger);
+        properties.setProperty("LogLevel", Level.WARNING.getName());
+        properties.setProperty("Hints", "False");
+        properties.setProperty("JournalFile", "");
+        properties.setProperty("CheckpointFile", "");
+
+        NetworkServer server = new NetworkServer(properties, logger, new InetSocketAddress(port));
+        server.start();
+        System.out.println("listening on port " + server.port() + " (" + server.config.humanPlayers + " players per game)");
+    }
+}
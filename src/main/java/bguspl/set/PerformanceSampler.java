@@ -0,0 +1,215 @@
+package bguspl.set;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadInfo;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static java.lang.String.format;
+
+/**
+ * Samples the health of the engine for the performance overlay of UserInterfaceSwing: the frame rate, the lag and
+ * backlog of the event dispatch thread, the time it takes per key press, the claims (from the dealer's MBean, see
+ * DealerMonitor), the CPU time of the busiest threads and the allocation rate. Everything is read from counters the JVM
+ * and the game keep anyway, once per sample, so the overlay costs a few reads per frame and a little work per sample.
+ * Not thread safe: called by the event dispatch thread only.
+ */
+class PerformanceSampler {
+
+    /**
+     * The number of threads listed by CPU time.
+     */
+    private static final int TOP_THREADS = 5;
+
+    private final RenderQueue renderQueue;
+    private final InputManager inputManager;
+    private final long intervalNanos;
+    private final MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+    private final ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+    private final ObjectName dealers;
+
+    // counted between two samples
+    private int frames;
+    private int framesWithUpdates;
+
+    // the previous sample
+    private long lastNanos;
+    private long lastClaims = -1;
+    private final Map<Long, Long> lastCpu = new HashMap<>();
+    private final Map<Long, Long> lastAllocated = new HashMap<>();
+
+    /**
+     * @param renderQueue    - the queue the frames drain.
+     * @param inputManager   - the keyboard input of the window (null if none).
+     * @param intervalMillis - the time between two samples.
+     */
+    PerformanceSampler(RenderQueue renderQueue, InputManager inputManager, long intervalMillis) {
+        this.renderQueue = renderQueue;
+        this.inputManager = inputManager;
+        intervalNanos = intervalMillis * 1_000_000L;
+        try {
+            dealers = new ObjectName("bguspl.set:type=Dealer,*");
+        } catch (JMException e) {
+            throw new IllegalStateException(e);
+        }
+        if (threads.isThreadCpuTimeSupported() && !threads.isThreadCpuTimeEnabled()) threads.setThreadCpuTimeEnabled(true);
+    }
+
+    /**
+     * Counts a frame.
+     *
+     * @param applied - the number of items the frame applied.
+     */
+    void frame(int applied) {
+        frames++;
+        if (applied > 0) framesWithUpdates++;
+    }
+
+    /**
+     * Forgets the previous sample (e.g. after the overlay was hidden for a while).
+     */
+    void reset() {
+        lastNanos = 0;
+        lastClaims = -1;
+        frames = framesWithUpdates = 0;
+        lastCpu.clear();
+        lastAllocated.clear();
+    }
+
+    /**
+     * Takes a sample.
+     *
+     * @param nowNanos - the time of the sample (System.nanoTime()).
+     * @return - the lines to show, or an empty list for the first sample (the rates need two).
+     */
+    List<String> sample(long nowNanos) {
+        List<String> lines = new ArrayList<>();
+        long elapsed = nowNanos - lastNanos;
+        boolean first = lastNanos == 0;
+        lastNanos = nowNanos;
+        ObjectName dealer = dealer();
+        long claims = claims(dealer);
+        long[] ids = threads.getAllThreadIds();
+        List<ThreadCpu> cpu = threadCpu(ids, elapsed, first);
+        long allocated = allocatedSince(ids, first);
+        if (first) {
+            lastClaims = claims;
+            frames = framesWithUpdates = 0;
+            return lines;
+        }
+        double seconds = elapsed / 1e9;
+
+        lines.add(format("frames      %5.1f/s (%.1f/s with updates)", frames / seconds, framesWithUpdates / seconds));
+        lines.add(format("edt lag     %5.1fms, %d items queued", Math.max(0, elapsed - intervalNanos) / 1e6, renderQueue.pending()));
+        lines.add(format("ui updates  %5d posted, %d applied", renderQueue.posted(), renderQueue.applied()));
+        if (inputManager != null)
+            lines.add(format("keys        %5dus p99 on the edt, %d pressed, %d dropped", inputManager.dispatchNanos().percentile(99) / 1000,
+                    inputManager.dispatched(), inputManager.dropped()));
+        if (dealer != null) {
+            lines.add(format("claims      %5.1f/s, %s queued", lastClaims < 0 || claims < 0 ? 0 : (claims - lastClaims) / seconds,
+                    attribute(dealer, "ClaimQueueDepth")));
+            lines.add(format("verdict p99 %5sus (from the third key)", attribute(dealer, "ClaimToVerdictP99Micros")));
+        } else {
+            lines.add("claims      (no game)");
+        }
+        lines.add(allocated < 0 ? "allocation  (not measured)" : format("allocation  %5.1f MB/s", allocated / 1e6 / seconds));
+        for (ThreadCpu thread : cpu)
+            lines.add(format("cpu %5.1f%%  %s", thread.percent, thread.name));
+        lastClaims = claims;
+        frames = framesWithUpdates = 0;
+        return lines;
+    }
+
+    /**
+     * @return - the dealer MBean of the latest game in this JVM, or null if there is none.
+     */
+    private ObjectName dealer() {
+        Set<ObjectName> names = server.queryNames(dealers, null);
+        ObjectName latest = null;
+        for (ObjectName name : names)
+            if (latest == null || game(name) > game(latest)) latest = name;
+        return latest;
+    }
+
+    private static int game(ObjectName name) {
+        try {
+            return Integer.parseInt(name.getKeyProperty("game"));
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+
+    private Object attribute(ObjectName name, String attribute) {
+        try {
+            return server.getAttribute(name, attribute);
+        } catch (JMException e) {
+            return "?";
+        }
+    }
+
+    /**
+     * @return - the claims of the latest game so far, or -1 if there is no game.
+     */
+    private long claims(ObjectName dealer) {
+        Object claims = dealer == null ? null : attribute(dealer, "Claims");
+        return claims instanceof Long ? (Long) claims : -1;
+    }
+
+    private static class ThreadCpu {
+        final String name;
+        final double percent;
+
+        ThreadCpu(String name, double percent) {
+            this.name = name;
+            this.percent = percent;
+        }
+    }
+
+    /**
+     * @return - the busiest threads since the previous sample.
+     */
+    private List<ThreadCpu> threadCpu(long[] ids, long elapsed, boolean first) {
+        List<ThreadCpu> busiest = new ArrayList<>();
+        if (!threads.isThreadCpuTimeSupported()) return busiest;
+        ThreadInfo[] infos = threads.getThreadInfo(ids);
+        Map<Long, Long> cpu = new HashMap<>();
+        for (int i = 0; i < ids.length; i++) {
+            long time = threads.getThreadCpuTime(ids[i]);
+            if (time < 0 || infos[i] == null) continue;
+            cpu.put(ids[i], time);
+            Long last = lastCpu.get(ids[i]);
+            if (!first && last != null && time > last)
+                busiest.add(new ThreadCpu(infos[i].getThreadName(), (time - last) * 100.0 / elapsed));
+        }
+        lastCpu.clear();
+        lastCpu.putAll(cpu);
+        busiest.sort((a, b) -> Double.compare(b.percent, a.percent));
+        return busiest.size() > TOP_THREADS ? busiest.subList(0, TOP_THREADS) : busiest;
+    }
+
+    /**
+     * @return - the bytes allocated by all the threads since the previous sample, or -1 if the JVM cannot tell.
+     */
+    private long allocatedSince(long[] ids, boolean first) {
+        if (!(threads instanceof com.sun.management.ThreadMXBean)) return -1;
+        long[] bytes = ((com.sun.management.ThreadMXBean) threads).getThreadAllocatedBytes(ids);
+        long total = 0;
+        Map<Long, Long> allocated = new HashMap<>();
+        for (int i = 0; i < ids.length; i++) {
+            if (bytes[i] < 0) continue;
+            allocated.put(ids[i], bytes[i]);
+            Long last = lastAllocated.get(ids[i]);
+            total += bytes[i] - (last != null ? last : first ? bytes[i] : 0); // a new thread counts from 0
+        }
+        lastAllocated.clear();
+        lastAllocated.putAll(allocated);
+        return total;
+    }
+}
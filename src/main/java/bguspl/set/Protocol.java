@@ -0,0 +1,162 @@
+package bguspl.set;
+
+import java.nio.ByteBuffer;
+
+/**
+ * The binary protocol of remote players (see NetworkServer).
+ * Every message is a type byte followed by a fixed payload (big endian); only WINNERS has a variable length, given
+ * by its count byte, and KEYFRAME by its size. Slots and cards are shorts, scores and times are ints.
+ * <pre>
+ * client to server:
+ *  JOIN          type                                          join a game as a player
+ *  PRESS         type, slot:short                              press the key of a slot
+ * server to client:
+ *  WELCOME       type, game:int, player:byte, players:byte, rows:byte, columns:byte
+ *  FULL          type                                          no seat is available
+ *  PLACE_CARD    type, slot:short, card:short
+ *  REMOVE_CARD   type, slot:short
+ *  PLACE_TOKEN   type, player:byte, slot:short
+ *  REMOVE_TOKEN  type, player:byte, slot:short
+ *  REMOVE_TOKENS type, slot:short                              all the tokens of a slot (-1: of all the slots)
+ *  SCORE         type, player:byte, score:int
+ *  FREEZE        type, player:byte, millis:int
+ *  COUNTDOWN     type, millis:int, warn:byte
+ *  ELAPSED       type, millis:int
+ *  WINNERS       type, count:byte, player:byte * count
+ * server to spectator (the table updates above, see SpectatorFeed):
+ *  KEYFRAME      type, size:int, rows:byte, columns:byte, players:byte, countdown:int, warn:byte,
+ *                (card:short (-1 if empty), tokens:long (bit per player)) * slots, (score:int, freeze:int) * players
+ * </pre>
+ */
+public class Protocol {
+
+    private Protocol() {}
+
+    public static final byte JOIN = 1;
+    public static final byte PRESS = 2;
+
+    public static final byte WELCOME = 10;
+    public static final byte FULL = 11;
+    public static final byte PLACE_CARD = 12;
+    public static final byte REMOVE_CARD = 13;
+    public static final byte PLACE_TOKEN = 14;
+    public static final byte REMOVE_TOKEN = 15;
+    public static final byte REMOVE_TOKENS = 16;
+    public static final byte SCORE = 17;
+    public static final byte FREEZE = 18;
+    public static final byte COUNTDOWN = 19;
+    public static final byte ELAPSED = 20;
+    public static final byte WINNERS = 21;
+    public static final byte KEYFRAME = 22;
+
+    /**
+     * The longest message, except for KEYFRAME (WINNERS of 255 players).
+     */
+    public static final int MAX_MESSAGE_SIZE = 2 + 255;
+
+    /**
+     * The longest KEYFRAME (rows, columns and players are bytes).
+     */
+    public static final int MAX_KEYFRAME_SIZE = keyframeSize(255 * 255, 255);
+
+    /**
+     * @return - the size of the KEYFRAME of a table.
+     */
+    public static int keyframeSize(int slots, int players) {
+        return 1 + 4 + 3 + 5 + slots * 10 + players * 8;
+    }
+
+    /**
+     * @param buffer - a buffer in read mode, positioned at the start of a message.
+     * @return - the size of the message (including the type), -1 if the buffer does not hold enough bytes to tell, or 0
+     *           if the type is unknown (or the size of a KEYFRAME is out of bounds).
+     */
+    public static int messageSize(ByteBuffer buffer) {
+        if (!buffer.hasRemaining()) return -1;
+        int at = buffer.position();
+        switch (buffer.get(at)) {
+            case JOIN:
+            case FULL:
+                return 1;
+            case PRESS:
+            case REMOVE_CARD:
+            case REMOVE_TOKENS:
+                return 3;
+            case PLACE_TOKEN:
+            case REMOVE_TOKEN:
+                return 4;
+            case PLACE_CARD:
+            case ELAPSED:
+                return 5;
+            case COUNTDOWN:
+            case SCORE:
+            case FREEZE:
+                return 6;
+            case WELCOME:
+                return 9;
+            case WINNERS:
+                return buffer.remaining() < 2 ? -1 : 2 + (buffer.get(at + 1) & 0xff);
+            case KEYFRAME:
+                if (buffer.remaining() < 5) return -1;
+                int size = buffer.getInt(at + 1);
+                return size < keyframeSize(0, 0) || size > MAX_KEYFRAME_SIZE ? 0 : size;
+            default:
+                return 0;
+        }
+    }
+
+    public static byte[] join() {
+        return new byte[]{JOIN};
+    }
+
+    public static byte[] press(int slot) {
+        return ByteBuffer.allocate(3).put(PRESS).putShort((short) slot).array();
+    }
+
+    public static byte[] welcome(int game, int player, Config config) {
+        return ByteBuffer.allocate(9).put(WELCOME).putInt(game).put((byte) player).put((byte) config.players)
+                .put((byte) config.rows).put((byte) config.columns).array();
+    }
+
+    public static byte[] full() {
+        return new byte[]{FULL};
+    }
+
+    public static byte[] placeCard(int card, int slot) {
+        return ByteBuffer.allocate(5).put(PLACE_CARD).putShort((short) slot).putShort((short) card).array();
+    }
+
+    public static byte[] removeCard(int slot) {
+        return ByteBuffer.allocate(3).put(REMOVE_CARD).putShort((short) slot).array();
+    }
+
+    public static byte[] token(boolean placed, int player, int slot) {
+        return ByteBuffer.allocate(4).put(placed ? PLACE_TOKEN : REMOVE_TOKEN).put((byte) player).putShort((short) slot).array();
+    }
+
+    public static byte[] removeTokens(int slot) {
+        return ByteBuffer.allocate(3).put(REMOVE_TOKENS).putShort((short) slot).array();
+    }
+
+    public static byte[] score(int player, int score) {
+        return ByteBuffer.allocate(6).put(SCORE).put((byte) player).putInt(score).array();
+    }
+
+    public static byte[] freeze(int player, long millis) {
+        return ByteBuffer.allocate(6).put(FREEZE).put((byte) player).putInt((int) millis).array();
+    }
+
+    public static byte[] countdown(long millis, boolean warn) {
+        return ByteBuffer.allocate(6).put(COUNTDOWN).putInt((int) millis).put((byte) (warn ? 1 : 0)).array();
+    }
+
+    public static byte[] elapsed(long millis) {
+        return ByteBuffer.allocate(5).put(ELAPSED).putInt((int) millis).array();
+    }
+
+    public static byte[] winners(int[] players) {
+        ByteBuffer buffer = ByteBuffer.allocate(2 + players.length).put(WINNERS).put((byte) players.length);
+        for (int player : players) buffer.put((byte) player);
+        return buffer.array();
+    }
+}
@@ -0,0 +1,40 @@
+package bguspl.set;
+
+import java.util.SplittableRandom;
+
+/**
+ * Derives independent random number streams for the game entities from the game seed (see Config::seed).
+ * Each entity gets its own unsynchronized generator, so the dealer and the computer players never contend on a shared
+ * Random, and the same seed always gives every entity the same sequence, no matter in which order they are created.
+ */
+public class RandomStreams {
+
+    private RandomStreams() {}
+
+    /**
+     * @param seed  - the game seed.
+     * @param index - the stream index.
+     * @return - the index-th split of a generator seeded with seed.
+     */
+    public static SplittableRandom stream(long seed, int index) {
+        SplittableRandom root = new SplittableRandom(seed);
+        SplittableRandom stream = root.split();
+        for (int i = 0; i < index; i++)
+            stream = root.split();
+        return stream;
+    }
+
+    /**
+     * @return - the stream of the dealer (for shuffling the deck).
+     */
+    public static SplittableRandom dealer(long seed) {
+        return stream(seed, 0);
+    }
+
+    /**
+     * @return - the stream of a computer player (for generating key presses).
+     */
+    public static SplittableRandom player(long seed, int id) {
+        return stream(seed, id + 1);
+    }
+}
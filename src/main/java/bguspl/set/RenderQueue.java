@@ -0,0 +1,240 @@
+package bguspl.set;
+
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A user interface that only records the updates of the game threads, for a renderer to apply them later in batches
+ * (see UserInterfaceSwing, which drains it on the event dispatch thread once per frame).
+ * <p>
+ * Every slot, player, the timer and the winners are an item that holds its latest value. An update sets the value and
+ * posts the item to a lock-free queue, unless the item is already waiting there; so the queue never holds an item
+ * twice, never fills up, and however many updates arrive between two frames the renderer applies each item once, with
+ * its latest value. Posting never blocks, locks or allocates (except for announceWinner).
+ */
+class RenderQueue implements UserInterface {
+
+    /**
+     * The modes of the timer.
+     */
+    static final int COUNTDOWN = 0;
+    static final int WARNING = 1;
+    static final int ELAPSED = 2;
+
+    /**
+     * Applies the items of the queue (called by the thread that drains it).
+     */
+    interface Renderer {
+        /**
+         * @param tokens - the players with a token on the slot (bit per player, see TokenLabels::words); valid only
+         *               during the call.
+         */
+        void slot(int slot, int card, long[] tokens);
+
+        void player(int player, int score, long freezeMillis);
+
+        void timer(long millis, int mode);
+
+        void winners(int[] players);
+    }
+
+    // the latest value of every item
+    private final AtomicIntegerArray cards;  // -1 if the slot is empty
+    private final AtomicLongArray tokens;    // bit per player, words longs per slot
+    private final int words;
+    private final AtomicIntegerArray scores;
+    private final AtomicLongArray freezes;
+    private volatile long timer = -1;        // millis << 2 | mode (-1 if never set)
+    private volatile int[] winners;
+
+    // the item ids: the slots, then the players, then the timer and the winners
+    private final int playersItem;
+    private final int timerItem;
+    private final int winnersItem;
+
+    /**
+     * 1 iff the item is in the queue.
+     */
+    private final AtomicIntegerArray queued;
+
+    /**
+     * The queue (multi-producer single-consumer): a producer claims a position and writes the item there, the consumer
+     * reads it once written (-1 until then) and frees the cell. Since an item is in the queue at most once, a producer
+     * never finds its cell occupied.
+     */
+    private final AtomicIntegerArray ring;
+    private final int mask;
+    private final AtomicLong tail = new AtomicLong();
+    private long head; // the consumer's position
+    private final long[] slotTokens; // the tokens of the slot being applied (used by the consumer)
+
+    private final LongAdder posted = new LongAdder();
+    private volatile long applied;
+
+    /**
+     * @param config - the game configuration.
+     */
+    RenderQueue(Config config) {
+        cards = new AtomicIntegerArray(config.tableSize);
+        for (int slot = 0; slot < config.tableSize; slot++)
+            cards.set(slot, -1);
+        words = TokenLabels.words(config.players);
+        tokens = new AtomicLongArray(config.tableSize * words);
+        slotTokens = new long[words];
+        scores = new AtomicIntegerArray(config.players);
+        freezes = new AtomicLongArray(config.players);
+
+        playersItem = config.tableSize;
+        timerItem = playersItem + config.players;
+        winnersItem = timerItem + 1;
+        queued = new AtomicIntegerArray(winnersItem + 1);
+        int size = Integer.highestOneBit(queued.length());
+        if (size < queued.length()) size <<= 1;
+        mask = size - 1;
+        ring = new AtomicIntegerArray(size);
+        for (int i = 0; i < size; i++)
+            ring.set(i, -1);
+    }
+
+    /**
+     * Puts the item in the queue, unless it is there already.
+     */
+    private void post(int item) {
+        posted.increment();
+        if (queued.get(item) != 0 || !queued.compareAndSet(item, 0, 1)) return;
+        ring.set((int) (tail.getAndIncrement() & mask), item);
+    }
+
+    /**
+     * Applies the items in the queue, each with its latest value (called by a single thread).
+     *
+     * @param renderer - the renderer to apply the items with.
+     * @return - the number of items applied.
+     */
+    int drain(Renderer renderer) {
+        int count = 0;
+        while (count < queued.length()) { // an item updated meanwhile waits for the next drain
+            int cell = (int) (head & mask);
+            int item = ring.get(cell);
+            if (item < 0) break; // empty, or a producer did not write its item yet
+            ring.set(cell, -1);
+            head++;
+            queued.set(item, 0); // before reading the value: a later update posts the item again
+            apply(renderer, item);
+            count++;
+        }
+        applied += count;
+        return count;
+    }
+
+    private void apply(Renderer renderer, int item) {
+        if (item < playersItem) {
+            for (int word = 0; word < words; word++)
+                slotTokens[word] = tokens.get(item * words + word);
+            renderer.slot(item, cards.get(item), slotTokens);
+        }
+        else if (item < timerItem) renderer.player(item - playersItem, scores.get(item - playersItem), freezes.get(item - playersItem));
+        else if (item == timerItem) {
+            long timer = this.timer;
+            renderer.timer(timer >> 2, (int) (timer & 3));
+        }
+        else renderer.winners(winners);
+    }
+
+    /**
+     * @return - the number of updates posted so far.
+     */
+    long posted() {
+        return posted.sum();
+    }
+
+    /**
+     * @return - the number of items waiting in the queue.
+     */
+    int pending() {
+        return (int) Math.max(0, tail.get() - applied);
+    }
+
+    /**
+     * @return - the number of items applied so far (at most posted()).
+     */
+    long applied() {
+        return applied;
+    }
+
+    @Override
+    public void placeCard(int card, int slot) {
+        cards.set(slot, card);
+        post(slot);
+    }
+
+    @Override
+    public void removeCard(int slot) {
+        cards.set(slot, -1);
+        post(slot);
+    }
+
+    @Override
+    public void placeToken(int player, int slot) {
+        int word = slot * words + (player >>> 6);
+        long current;
+        do current = tokens.get(word); while (!tokens.compareAndSet(word, current, current | 1L << (player & 63)));
+        post(slot);
+    }
+
+    @Override
+    public void removeTokens() {
+        for (int slot = 0; slot < playersItem; slot++)
+            removeTokens(slot);
+    }
+
+    @Override
+    public void removeTokens(int slot) {
+        for (int word = slot * words; word < (slot + 1) * words; word++)
+            tokens.set(word, 0);
+        post(slot);
+    }
+
+    @Override
+    public void removeToken(int player, int slot) {
+        int word = slot * words + (player >>> 6);
+        long current;
+        do current = tokens.get(word); while (!tokens.compareAndSet(word, current, current & ~(1L << (player & 63))));
+        post(slot);
+    }
+
+    @Override
+    public void setCountdown(long millies, boolean warn) {
+        timer = millies << 2 | (warn ? WARNING : COUNTDOWN);
+        post(timerItem);
+    }
+
+    @Override
+    public void setElapsed(long millies) {
+        timer = millies << 2 | ELAPSED;
+        post(timerItem);
+    }
+
+    @Override
+    public void setFreeze(int player, long millies) {
+        freezes.set(player, millies);
+        post(playersItem + player);
+    }
+
+    @Override
+    public void setScore(int player, int score) {
+        scores.set(player, score);
+        post(playersItem + player);
+    }
+
+    @Override
+    public void announceWinner(int[] players) {
+        winners = players.clone();
+        post(winnersItem);
+    }
+
+    @Override
+    public void dispose() {}
+}
@@ -0,0 +1,70 @@
+package bguspl.set;
+
+import bguspl.set.ex.GameReplay;
+import bguspl.set.ex.Player;
+
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.util.Properties;
+import java.util.logging.ConsoleHandler;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Replays a recorded game journal (see Config::journalFile) and verifies it.
+ * Usage: Replay journal-file [--fast]
+ * Without --fast the game is shown in the Swing window at its recorded speed; with --fast it is replayed headless, as
+ * fast as possible. The exit code is 0 iff the replay matches the recorded game.
+ */
+public class Replay {
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        if (args.length < 1) {
+            System.err.println("usage: Replay journal-file [--fast]");
+            System.exit(2);
+        }
+        boolean fast = args.length > 1 && args[1].equals("--fast");
+
+        Logger logger = Logger.getLogger("SetGameReplayLogger");
+        logger.setUseParentHandlers(false);
+        logger.addHandler(new ConsoleHandler());
+
+        GameReplay.Result result;
+        try (GameJournal.Reader reader = GameJournal.open(Paths.get(args[0]))) {
+            Config config = new Config(logger, journalProperties(logger, reader, fast));
+            Util util = new UtilImpl(config);
+            UserInterface ui = null;
+            if (!fast) {
+                try {
+                    ui = new UserInterfaceDecorator(logger, util, new UserInterfaceSwing(logger, config, new Player[config.players]));
+                } catch (UnsupportedOperationException | IllegalArgumentException e) {
+                    logger.severe("error creating swing user interface: " + e.getMessage());
+                }
+            }
+            if (ui == null) ui = new HeadlessUserInterface(config);
+            System.out.println("replaying " + args[0] + " (seed " + reader.seed + ")");
+            result = new GameReplay(new Env(logger, config, ui, util)).replay(reader, !fast);
+            if (!fast && config.endGamePauseMillies > 0) Thread.sleep(config.endGamePauseMillies);
+            ui.dispose();
+        }
+        System.out.println(result);
+        System.exit(result.matches() ? 0 : 1);
+    }
+
+    /**
+     * The configuration file properties, with the game dimensions taken from the journal.
+     */
+    private static Properties journalProperties(Logger logger, GameJournal.Reader reader, boolean fast) {
+        Properties properties = Config.loadProperties("config.properties", logger);
+        properties.setProperty("FeatureSize", Integer.toString(reader.featureSize));
+        properties.setProperty("FeatureCount", Integer.toString(reader.featureCount));
+        properties.setProperty("Rows", Integer.toString(reader.rows));
+        properties.setProperty("Columns", Integer.toString(reader.columns));
+        properties.setProperty("HumanPlayers", "0");
+        properties.setProperty("ComputerPlayers", Integer.toString(reader.players));
+        properties.setProperty("TableDelaySeconds", "0"); // the recorded delays are part of the event times
+        properties.setProperty("Seed", Long.toString(reader.seed));
+        if (fast) properties.setProperty("LogLevel", Level.OFF.getName());
+        return properties;
+    }
+}
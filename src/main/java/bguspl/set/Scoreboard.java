@@ -0,0 +1,76 @@
+package bguspl.set;
+
+import javax.swing.*;
+import java.awt.*;
+
+/**
+ * The scores of a large table (see Config::largeTable): one line per player, painted by one component that is meant to
+ * be shown in a JScrollPane, so dozens of players take no more components than two. Only the lines inside the clip are
+ * painted. Used by the event dispatch thread only.
+ */
+class Scoreboard extends JComponent {
+
+    private final Config config;
+    private final int[] scores;
+    private final long[] freezes;
+    private final Font font;
+    private final int lineHeight;
+    private final int scoreWidth;
+
+    /**
+     * @param config - the game configuration.
+     */
+    Scoreboard(Config config) {
+        this.config = config;
+        scores = new int[config.players];
+        freezes = new long[config.players];
+        font = new Font("Serif", Font.BOLD, Math.max(10, config.fontSize / 2));
+        FontMetrics metrics = getFontMetrics(font);
+        lineHeight = metrics.getHeight() + 2;
+        scoreWidth = metrics.stringWidth("00000");
+        int nameWidth = 0;
+        for (String name : config.playerNames) nameWidth = Math.max(nameWidth, metrics.stringWidth(name + " (00)"));
+        setOpaque(true);
+        setBackground(Color.WHITE);
+        setPreferredSize(new Dimension(nameWidth + scoreWidth + 16, config.players * lineHeight));
+    }
+
+    void setScore(int player, int score) {
+        if (scores[player] == score) return;
+        scores[player] = score;
+        repaintLine(player);
+    }
+
+    void setFreeze(int player, long millies) {
+        long shown = Math.max(0, millies);
+        if (freezes[player] == shown) return;
+        freezes[player] = shown;
+        repaintLine(player);
+    }
+
+    private void repaintLine(int player) {
+        repaint(0, player * lineHeight, getWidth(), lineHeight);
+    }
+
+    @Override
+    protected void paintComponent(Graphics g) {
+        Rectangle clip = g.getClipBounds();
+        if (clip == null) clip = new Rectangle(0, 0, getWidth(), getHeight());
+        g.setColor(getBackground());
+        g.fillRect(clip.x, clip.y, clip.width, clip.height);
+        g.setFont(font);
+        FontMetrics metrics = g.getFontMetrics();
+        int first = Math.max(0, clip.y / lineHeight);
+        int last = Math.min(config.players - 1, (clip.y + clip.height - 1) / lineHeight);
+        for (int player = first; player <= last; player++) {
+            int baseline = player * lineHeight + metrics.getAscent() + 1;
+            boolean frozen = freezes[player] > 0;
+            g.setColor(frozen ? Color.RED : Color.BLACK);
+            String name = frozen ? config.playerNames[player] + " (" + freezes[player] / 1000 + ")" : config.playerNames[player];
+            g.drawString(name, 4, baseline);
+            String score = Integer.toString(scores[player]);
+            g.setColor(Color.BLACK);
+            g.drawString(score, getWidth() - 4 - metrics.stringWidth(score), baseline);
+        }
+    }
+}
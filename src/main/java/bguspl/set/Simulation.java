@@ -0,0 +1,190 @@
+package bguspl.set;
+
+import bguspl.set.ex.Player;
+import bguspl.set.ex.PlayerStats;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.ConsoleHandler;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Plays complete games of computer players headless, as fast as possible, and reports the throughput.
+ * Usage: Simulation [games [concurrent-games]] [--real-time]
+ * The games are configured by config.properties, except that all the players are computer players, there are no
+ * table delays or end of game pause, nothing is logged and the games run on a VirtualClock (unless --real-time).
+ * Game i is seeded with the i-th stream of the configured seed, so a configured seed repeats the whole batch.
+ */
+public class Simulation {
+
+    /**
+     * The totals of the games played so far.
+     */
+    private final LongAdder games = new LongAdder();
+    private final LongAdder claims = new LongAdder();
+    private final LongAdder points = new LongAdder();
+    private final LongAdder gameMillis = new LongAdder();
+    private final LongAdder uiCalls = new LongAdder();
+    private final AtomicLong allocatedBytes = new AtomicLong();
+
+    private final Properties properties;
+    private final Logger logger;
+    private final Util util;
+    private final long seed;
+    private final boolean virtualTime;
+
+    /**
+     * @param properties  - the game configuration (the simulation settings are applied to it).
+     * @param logger      - the logger for the games.
+     * @param virtualTime - true to run the games on a virtual clock.
+     */
+    public Simulation(Properties properties, Logger logger, boolean virtualTime) {
+        this.properties = simulationProperties(properties);
+        this.logger = logger;
+        this.virtualTime = virtualTime;
+        Config config = new Config(logger, this.properties);
+        util = new UtilImpl(config); // shared: it depends on the game dimensions only
+        seed = config.seed;
+    }
+
+    private static Properties simulationProperties(Properties configured) {
+        Properties properties = new Properties();
+        properties.putAll(configured);
+        int players = Integer.parseInt(properties.getProperty("HumanPlayers", "2").trim())
+                + Integer.parseInt(properties.getProperty("ComputerPlayers", "0").trim());
+        properties.setProperty("HumanPlayers", "0");
+        properties.setProperty("ComputerPlayers", Integer.toString(players));
+        properties.setProperty("TableDelaySeconds", "0");
+        properties.setProperty("EndGamePauseSeconds", "0");
+        properties.setProperty("Hints", "False");
+        properties.setProperty("JournalFile", "");
+        properties.setProperty("CheckpointFile", "");
+        properties.setProperty("LogLevel", Level.OFF.getName());
+        return properties;
+    }
+
+    /**
+     * Plays a single game to its end.
+     *
+     * @param index - the game index (selects its seed).
+     */
+    public void play(int index) throws InterruptedException {
+        Properties gameProperties = new Properties();
+        gameProperties.putAll(properties);
+        gameProperties.setProperty("Seed", Long.toString(RandomStreams.stream(seed, index).nextLong()));
+        Config config = new Config(logger, gameProperties);
+
+        GameClock clock = virtualTime ? new VirtualClock() : GameClock.SYSTEM;
+        CountingClock countingClock = new CountingClock(clock);
+        HeadlessUserInterface ui = new HeadlessUserInterface();
+        Game game = new Game(new Env(logger, config, ui, util, GameEvents.NONE, countingClock));
+        long start = clock.currentTimeMillis();
+        game.start("dealer-" + index);
+        game.join();
+
+        gameMillis.add(clock.currentTimeMillis() - start);
+        if (clock instanceof VirtualClock) ((VirtualClock) clock).close();
+        for (Player player : game.players()) {
+            PlayerStats.Snapshot stats = player.stats().snapshot();
+            claims.add(stats.claims);
+            points.add(stats.score);
+        }
+        uiCalls.add(ui.calls());
+        games.increment();
+    }
+
+    /**
+     * Plays a batch of games.
+     *
+     * @param count      - the number of games.
+     * @param concurrent - the number of games to play at the same time.
+     * @return - the report of the batch.
+     */
+    public String run(int count, int concurrent) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(concurrent);
+        long start = System.nanoTime();
+        try {
+            List<Future<?>> results = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                int index = i;
+                results.add(executor.submit(() -> {
+                    play(index);
+                    return null;
+                }));
+            }
+            for (Future<?> result : results) result.get();
+        } finally {
+            executor.shutdown();
+        }
+        return report(System.nanoTime() - start, concurrent);
+    }
+
+    private String report(long elapsedNanos, int concurrent) {
+        double seconds = elapsedNanos / 1e9;
+        long played = games.sum();
+        return String.format("%d games (%d at a time, %s time) in %.2fs: %.2f games/s, %.0f claims/s, %.0f points/s%n"
+                        + "average game: %.1fs of game time, %d claims, %d points, %d ui calls%n"
+                        + "allocated by the game threads: %.1f MB/s, %.2f MB per game",
+                played, concurrent, virtualTime ? "virtual" : "real", seconds, played / seconds,
+                claims.sum() / seconds, points.sum() / seconds,
+                gameMillis.sum() / 1000.0 / played, claims.sum() / played, points.sum() / played, uiCalls.sum() / played,
+                allocatedBytes.get() / 1e6 / seconds, allocatedBytes.get() / 1e6 / played);
+    }
+
+    public static void main(String[] args) throws Exception {
+        int count = 100;
+        int concurrent = 1;
+        boolean virtualTime = true;
+        List<Integer> numbers = new ArrayList<>();
+        for (String arg : args) {
+            if (arg.equals("--real-time")) virtualTime = false;
+            else numbers.add(Integer.parseInt(arg));
+        }
+        if (numbers.size() > 0) count = numbers.get(0);
+        if (numbers.size() > 1) concurrent = numbers.get(1);
+
+        Logger logger = Logger.getLogger("SetGameSimulationLogger");
+        logger.setUseParentHandlers(false);
+        logger.addHandler(new ConsoleHandler());
+
+        Properties properties = Config.loadProperties("config.properties", logger);
+        System.out.println(new Simulation(properties, logger, virtualTime).run(count, concurrent));
+    }
+
+    /**
+     * Counts the bytes allocated by the game threads (when the JVM can measure it).
+     */
+    private class CountingClock extends ForwardingClock {
+
+        CountingClock(GameClock clock) {
+            super(clock);
+        }
+
+        @Override
+        public Runnable participant(Runnable target) {
+            return clock.participant(() -> {
+                long before = allocatedBytes();
+                try {
+                    target.run();
+                } finally {
+                    allocatedBytes.addAndGet(allocatedBytes() - before);
+                }
+            });
+        }
+
+        private long allocatedBytes() {
+            java.lang.management.ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+            if (!(threads instanceof com.sun.management.ThreadMXBean)) return 0;
+            long bytes = ((com.sun.management.ThreadMXBean) threads).getThreadAllocatedBytes(Thread.currentThread().getId());
+            return Math.max(bytes, 0);
+        }
+    }
+}
@@ -0,0 +1,418 @@
+package bguspl.set;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Broadcasts a game to spectators over TCP (see Protocol).
+ * The feed is a user interface of the game: it keeps a copy of the table state and appends every update, as a delta
+ * message, to a single shared log (a ring buffer). Every so often it also encodes the whole state as a KEYFRAME.
+ * A spectator first gets the latest keyframe, then the log from the keyframe on. All the spectators are written from
+ * the same bytes (each has its own view of the shared buffers), so an update is encoded once however many spectators
+ * watch. A spectator that falls behind by more than half the log skips to the latest keyframe, once it got the whole
+ * message it was in the middle of; the game never waits for the spectators.
+ */
+public class SpectatorFeed implements UserInterface, Closeable {
+
+    /**
+     * The size of the update log.
+     */
+    static final int LOG_CAPACITY = 1 << 20;
+
+    /**
+     * A keyframe is taken whenever this many bytes were logged since the previous one.
+     */
+    private static final int KEYFRAME_INTERVAL = LOG_CAPACITY / 8;
+
+    /**
+     * A spectator that has more than this many bytes of the log to catch up with skips to the latest keyframe.
+     */
+    private static final int MAX_LAG = LOG_CAPACITY / 2;
+
+    private final Config config;
+
+    // the state of the table, guarded by this
+    private final short[] cards;
+    private final long[] tokens;
+    private final int[] scores;
+    private final int[] freezes;
+    private int countdown;
+    private boolean warn;
+
+    private final ByteBuffer message = ByteBuffer.allocate(Protocol.MAX_MESSAGE_SIZE); // guarded by this
+    private final ByteBuffer log = ByteBuffer.allocateDirect(LOG_CAPACITY);
+    private volatile long head; // the number of bytes ever logged
+    private long keyframeHead;  // guarded by this
+
+    /**
+     * A keyframe and the log position it is valid at.
+     */
+    private static class Keyframe {
+        final ByteBuffer bytes;
+        final long offset;
+
+        Keyframe(ByteBuffer bytes, long offset) {
+            this.bytes = bytes;
+            this.offset = offset;
+        }
+    }
+
+    private volatile Keyframe keyframe;
+
+    /**
+     * A spectator (used by the selector thread only).
+     */
+    private class Spectator {
+        final SocketChannel channel;
+        final SelectionKey key;
+        final ByteBuffer view = log.duplicate();
+        ByteBuffer keyframeView;
+        long offset;
+        boolean blocked;
+
+        /**
+         * The log position where the message the spectator got part of ends (offset if it got whole messages only),
+         * and a copy of that message's remaining bytes, in case the log moves on before they are written.
+         */
+        long messageEnd;
+        final ByteBuffer rest = ByteBuffer.allocate(Protocol.MAX_MESSAGE_SIZE);
+
+        Spectator(SocketChannel channel, SelectionKey key) {
+            this.channel = channel;
+            this.key = key;
+            skipToKeyframe();
+        }
+
+        void skipToKeyframe() {
+            Keyframe latest = keyframe;
+            keyframeView = latest.bytes.duplicate();
+            offset = latest.offset;
+            messageEnd = offset; // keyframes are taken between messages
+            rest.clear().flip();
+        }
+    }
+
+    private final Selector selector;
+    private final ServerSocketChannel server;
+    private final Thread selectorThread;
+    private final List<Spectator> spectators = new ArrayList<>();
+    private final AtomicBoolean wakeupPending = new AtomicBoolean();
+    private volatile int spectatorCount;
+    private volatile long keyframeSkips;
+    private volatile boolean closed;
+
+    /**
+     * @param config  - the game configuration.
+     * @param address - the address to listen on (port 0 for any free port).
+     * @throws IOException - if the address cannot be bound.
+     * @throws IllegalArgumentException - if there are too many players for a token mask (see Config::requireTokenMasks).
+     */
+    public SpectatorFeed(Config config, InetSocketAddress address) throws IOException {
+        config.requireTokenMasks("the spectator feed");
+        this.config = config;
+        cards = new short[config.tableSize];
+        Arrays.fill(cards, (short) -1);
+        tokens = new long[config.tableSize];
+        scores = new int[config.players];
+        freezes = new int[config.players];
+        synchronized (this) {
+            takeKeyframe();
+        }
+
+        selector = Selector.open();
+        server = ServerSocketChannel.open();
+        server.bind(address);
+        server.configureBlocking(false);
+        server.register(selector, SelectionKey.OP_ACCEPT);
+        selectorThread = new Thread(this::selectLoop, "spectator-feed");
+        selectorThread.setDaemon(true);
+        selectorThread.start();
+    }
+
+    /**
+     * @return - the port the feed listens on.
+     */
+    public int port() {
+        return server.socket().getLocalPort();
+    }
+
+    public int spectators() {
+        return spectatorCount;
+    }
+
+    /**
+     * @return - the number of times a slow spectator skipped to a keyframe.
+     */
+    public long keyframeSkips() {
+        return keyframeSkips;
+    }
+
+    /**
+     * @return - the number of bytes logged so far.
+     */
+    public long logged() {
+        return head;
+    }
+
+    /**
+     * Appends the message to the log (the caller holds the lock and filled the message).
+     */
+    private void append() {
+        message.flip();
+        long position = head;
+        while (message.hasRemaining()) {
+            log.put((int) (position % LOG_CAPACITY), message.get());
+            position++;
+        }
+        message.clear();
+        head = position; // volatile: publishes the bytes to the selector thread
+        if (position - keyframeHead >= KEYFRAME_INTERVAL) takeKeyframe();
+        if (wakeupPending.compareAndSet(false, true)) selector.wakeup();
+    }
+
+    private void takeKeyframe() {
+        int slots = cards.length;
+        int size = Protocol.keyframeSize(slots, scores.length);
+        ByteBuffer bytes = ByteBuffer.allocateDirect(size);
+        bytes.put(Protocol.KEYFRAME).putInt(size)
+                .put((byte) config.rows).put((byte) config.columns).put((byte) config.players)
+                .putInt(countdown).put((byte) (warn ? 1 : 0));
+        for (int slot = 0; slot < slots; slot++) bytes.putShort(cards[slot]).putLong(tokens[slot]);
+        for (int player = 0; player < scores.length; player++) bytes.putInt(scores[player]).putInt(freezes[player]);
+        bytes.flip();
+        keyframe = new Keyframe(bytes.asReadOnlyBuffer(), head);
+        keyframeHead = head;
+    }
+
+    @Override
+    public synchronized void placeCard(int card, int slot) {
+        cards[slot] = (short) card;
+        message.put(Protocol.PLACE_CARD).putShort((short) slot).putShort((short) card);
+        append();
+    }
+
+    @Override
+    public synchronized void removeCard(int slot) {
+        cards[slot] = -1;
+        message.put(Protocol.REMOVE_CARD).putShort((short) slot);
+        append();
+    }
+
+    @Override
+    public synchronized void placeToken(int player, int slot) {
+        tokens[slot] |= 1L << player;
+        message.put(Protocol.PLACE_TOKEN).put((byte) player).putShort((short) slot);
+        append();
+    }
+
+    @Override
+    public synchronized void removeTokens() {
+        Arrays.fill(tokens, 0);
+        message.put(Protocol.REMOVE_TOKENS).putShort((short) -1);
+        append();
+    }
+
+    @Override
+    public synchronized void removeTokens(int slot) {
+        tokens[slot] = 0;
+        message.put(Protocol.REMOVE_TOKENS).putShort((short) slot);
+        append();
+    }
+
+    @Override
+    public synchronized void removeToken(int player, int slot) {
+        tokens[slot] &= ~(1L << player);
+        message.put(Protocol.REMOVE_TOKEN).put((byte) player).putShort((short) slot);
+        append();
+    }
+
+    @Override
+    public synchronized void setCountdown(long millies, boolean warn) {
+        countdown = (int) millies;
+        this.warn = warn;
+        message.put(Protocol.COUNTDOWN).putInt((int) millies).put((byte) (warn ? 1 : 0));
+        append();
+    }
+
+    @Override
+    public synchronized void setElapsed(long millies) {
+        countdown = (int) millies;
+        message.put(Protocol.ELAPSED).putInt((int) millies);
+        append();
+    }
+
+    @Override
+    public synchronized void setFreeze(int player, long millies) {
+        freezes[player] = (int) millies;
+        message.put(Protocol.FREEZE).put((byte) player).putInt((int) millies);
+        append();
+    }
+
+    @Override
+    public synchronized void setScore(int player, int score) {
+        scores[player] = score;
+        message.put(Protocol.SCORE).put((byte) player).putInt(score);
+        append();
+    }
+
+    @Override
+    public synchronized void announceWinner(int[] players) {
+        message.put(Protocol.WINNERS).put((byte) players.length);
+        for (int player : players) message.put((byte) player);
+        append();
+    }
+
+    @Override
+    public void dispose() {}
+
+    private void selectLoop() {
+        while (!closed) {
+            try {
+                selector.select();
+            } catch (IOException e) {
+                return;
+            }
+            wakeupPending.set(false);
+            Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+            while (keys.hasNext()) {
+                SelectionKey key = keys.next();
+                keys.remove();
+                if (!key.isValid()) continue;
+                if (key.isAcceptable()) accept();
+                else if (key.isWritable()) ((Spectator) key.attachment()).blocked = false;
+            }
+            long logged = head;
+            for (int i = spectators.size() - 1; i >= 0; i--) {
+                Spectator spectator = spectators.get(i);
+                if (!spectator.blocked && (spectator.keyframeView != null || spectator.offset < logged)) write(spectator, i);
+            }
+        }
+    }
+
+    private void accept() {
+        try {
+            SocketChannel channel;
+            while ((channel = server.accept()) != null) {
+                channel.configureBlocking(false);
+                channel.socket().setTcpNoDelay(true);
+                SelectionKey key = channel.register(selector, 0);
+                Spectator spectator = new Spectator(channel, key);
+                key.attach(spectator);
+                spectators.add(spectator);
+                spectatorCount = spectators.size();
+            }
+        } catch (IOException ignored) {}
+    }
+
+    /**
+     * Writes as much of the keyframe and the log as the spectator's socket takes.
+     */
+    private void write(Spectator spectator, int index) {
+        try {
+            long logged = head;
+            if (spectator.keyframeView == null && logged - spectator.offset > MAX_LAG) {
+                if (spectator.rest.hasRemaining()) { // a keyframe may only follow a whole message
+                    spectator.offset += spectator.channel.write(spectator.rest);
+                    if (spectator.rest.hasRemaining()) {
+                        block(spectator);
+                        return;
+                    }
+                }
+                spectator.skipToKeyframe();
+                keyframeSkips++;
+            }
+            if (spectator.keyframeView != null) {
+                spectator.channel.write(spectator.keyframeView);
+                if (spectator.keyframeView.hasRemaining()) {
+                    block(spectator);
+                    return;
+                }
+                spectator.keyframeView = null;
+            }
+            long start = spectator.offset;
+            while (spectator.offset < logged) {
+                int from = (int) (spectator.offset % LOG_CAPACITY);
+                int length = (int) Math.min(logged - spectator.offset, LOG_CAPACITY - from);
+                ByteBuffer view = spectator.view;
+                view.clear();
+                view.position(from);
+                view.limit(from + length);
+                int written = spectator.channel.write(view);
+                spectator.offset += written;
+                if (written < length) {
+                    block(spectator);
+                    break;
+                }
+            }
+            keepRest(spectator);
+            if (head - LOG_CAPACITY > start) throw new IOException("the log was overwritten while it was written");
+            if (!spectator.blocked) spectator.key.interestOps(0);
+        } catch (IOException e) {
+            remove(spectator, index);
+        }
+    }
+
+    /**
+     * Finds where the message the spectator got part of ends and copies the rest of it (the log holds whole deltas, so
+     * the messages are found from the previous message end on).
+     */
+    private void keepRest(Spectator spectator) throws IOException {
+        while (spectator.messageEnd < spectator.offset) {
+            ByteBuffer header = spectator.rest;
+            header.clear();
+            header.put(log.get((int) (spectator.messageEnd % LOG_CAPACITY)))
+                    .put(log.get((int) ((spectator.messageEnd + 1) % LOG_CAPACITY)));
+            header.flip();
+            int size = Protocol.messageSize(header);
+            if (size <= 0) throw new IOException("the log is corrupt");
+            spectator.messageEnd += size;
+        }
+        ByteBuffer rest = spectator.rest;
+        rest.clear();
+        for (long position = spectator.offset; position < spectator.messageEnd; position++)
+            rest.put(log.get((int) (position % LOG_CAPACITY)));
+        rest.flip();
+    }
+
+    private void block(Spectator spectator) {
+        spectator.blocked = true;
+        spectator.key.interestOps(SelectionKey.OP_WRITE);
+    }
+
+    private void remove(Spectator spectator, int index) {
+        spectator.key.cancel();
+        try {
+            spectator.channel.close();
+        } catch (IOException ignored) {}
+        spectators.remove(index);
+        spectatorCount = spectators.size();
+    }
+
+    /**
+     * Disconnects all the spectators and stops the feed.
+     */
+    @Override
+    public void close() throws IOException {
+        closed = true;
+        selector.wakeup();
+        try {
+            selectorThread.join(5000);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        for (SelectionKey key : selector.keys())
+            key.channel().close();
+        selector.close();
+    }
+}
@@ -0,0 +1,64 @@
+package bguspl.set;
+
+import java.util.Arrays;
+
+/**
+ * The texts of the token overlays of the slots, by the players that have a token on the slot (a bit per player, in a
+ * long per 64 players, see words(int)). A direct-mapped cache keeps the texts built so far: looking up a set of players
+ * that was shown before takes a multiplication per long and an array compare and allocates nothing; only a new set of
+ * players builds its text.
+ */
+class TokenLabels {
+
+    private static final int CACHE_SIZE = 256;
+
+    private final String[] names;
+    private final long[][] masks = new long[CACHE_SIZE][];
+    private final String[] texts = new String[CACHE_SIZE];
+
+    /**
+     * @param names - the names of the players.
+     */
+    TokenLabels(String[] names) {
+        this.names = names;
+        long[] none = new long[words(names.length)];
+        masks[index(none)] = none;
+        texts[index(none)] = "";
+    }
+
+    /**
+     * @param players - the number of players.
+     * @return - the number of longs that keep a bit per player (at least 1).
+     */
+    static int words(int players) {
+        return Math.max(1, (players + Long.SIZE - 1) / Long.SIZE);
+    }
+
+    private static int index(long[] players) {
+        long hash = 0;
+        for (long word : players) hash = (hash ^ word) * 0x9E3779B97F4A7C15L;
+        return (int) (hash >>> 56); // the top 8 bits: CACHE_SIZE entries
+    }
+
+    /**
+     * @param players - the players that have a token on the slot (bit per player, words(players) longs).
+     * @return - their names, separated by commas.
+     */
+    String text(long[] players) {
+        int index = index(players);
+        String text = texts[index];
+        if (text != null && Arrays.equals(masks[index], players)) return text;
+
+        StringBuilder sb = new StringBuilder();
+        for (int word = 0; word < players.length; word++) {
+            for (long rest = players[word]; rest != 0; rest &= rest - 1) {
+                if (sb.length() > 0) sb.append(", ");
+                sb.append(names[word * Long.SIZE + Long.numberOfTrailingZeros(rest)]);
+            }
+        }
+        text = sb.toString();
+        masks[index] = players.clone();
+        texts[index] = text;
+        return text;
+    }
+}
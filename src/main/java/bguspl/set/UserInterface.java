@@ -84,4 +84,72 @@ public interface UserInterface {
      * Programmatically closes the window.
      */
     void dispose();
+
+    /**
+     * @return - a user interface that passes every call to first and then to second.
+     */
+    static UserInterface both(UserInterface first, UserInterface second) {
+        return new UserInterface() {
+            @Override
+            public void placeCard(int card, int slot) {
+                first.placeCard(card, slot);
+                second.placeCard(card, slot);
+            }
+            @Override
+            public void removeCard(int slot) {
+                first.removeCard(slot);
+                second.removeCard(slot);
+            }
+            @Override
+            public void placeToken(int player, int slot) {
+                first.placeToken(player, slot);
+                second.placeToken(player, slot);
+            }
+            @Override
+            public void removeTokens() {
+                first.removeTokens();
+                second.removeTokens();
+            }
+            @Override
+            public void removeTokens(int slot) {
+                first.removeTokens(slot);
+                second.removeTokens(slot);
+            }
+            @Override
+            public void removeToken(int player, int slot) {
+                first.removeToken(player, slot);
+                second.removeToken(player, slot);
+            }
+            @Override
+            public void setCountdown(long millies, boolean warn) {
+                first.setCountdown(millies, warn);
+                second.setCountdown(millies, warn);
+            }
+            @Override
+            public void setElapsed(long millies) {
+                first.setElapsed(millies);
+                second.setElapsed(millies);
+            }
+            @Override
+            public void setFreeze(int player, long millies) {
+                first.setFreeze(player, millies);
+                second.setFreeze(player, millies);
+            }
+            @Override
+            public void setScore(int player, int score) {
+                first.setScore(player, score);
+                second.setScore(player, score);
+            }
+            @Override
+            public void announceWinner(int[] players) {
+                first.announceWinner(players);
+                second.announceWinner(players);
+            }
+            @Override
+            public void dispose() {
+                first.dispose();
+                second.dispose();
+            }
+        };
+    }
 }
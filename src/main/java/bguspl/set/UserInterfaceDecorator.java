@@ -1,62 +1,220 @@
 package bguspl.set;
 
-import java.util.Arrays;
-import java.util.List;
+import bguspl.set.HeadlessUserInterface.Method;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.logging.Level;
+import java.util.logging.LogRecord;
 import java.util.logging.Logger;
-import java.util.stream.Collectors;
 
+/**
+ * Traces the calls to a user interface and passes them on.
+ * <p>
+ * Every call is recorded as a typed event (the method, player, slot, card, value and time) into a buffer of the
+ * calling thread, only if the logger accepts TRACE_LEVEL; otherwise tracing costs a level check. A full buffer is
+ * logged as a single record whose text is built when a handler first asks for it (by the log writer thread, with the
+ * asynchronous file handler), so the game threads never build strings while they hold the table.
+ */
 public class UserInterfaceDecorator implements UserInterface {
 
+    /**
+     * The level the calls are traced at.
+     */
+    public static final Level TRACE_LEVEL = Level.FINE;
+
+    private static final int DEFAULT_BATCH = 64;
+
     private final Logger logger;
     private final Util util;
     private final UserInterface ui;
+    private final int batch;
+    private final long startNanos = System.nanoTime();
+
+    private final ThreadLocal<Events> buffers;
+    private final Queue<Events> allBuffers = new ConcurrentLinkedQueue<>();
 
     public UserInterfaceDecorator(Logger logger, Util util, UserInterface ui) {
+        this(logger, util, ui, DEFAULT_BATCH);
+    }
+
+    /**
+     * @param batch - the number of events a thread buffers before they are logged.
+     */
+    UserInterfaceDecorator(Logger logger, Util util, UserInterface ui, int batch) {
         this.ui = ui;
         this.logger = logger;
         this.util = util;
+        this.batch = batch;
+        buffers = ThreadLocal.withInitial(() -> {
+            Events events = new Events(batch, Thread.currentThread().getName());
+            allBuffers.add(events);
+            return events;
+        });
 
         if (ui == null) System.out.println("running without a user interface. Check logs.");
     }
 
+    /**
+     * The events of one thread (written by that thread only, until it is done).
+     */
+    private static class Events {
+        final String thread;
+        byte[] methods;
+        int[] players;
+        int[] slots;
+        int[] cards;
+        long[] values;
+        long[] times;
+        int size;
+
+        Events(int capacity, String thread) {
+            this.thread = thread;
+            allocate(capacity);
+        }
+
+        void allocate(int capacity) {
+            methods = new byte[capacity];
+            players = new int[capacity];
+            slots = new int[capacity];
+            cards = new int[capacity];
+            values = new long[capacity];
+            times = new long[capacity];
+            size = 0;
+        }
+    }
+
+    /**
+     * A batch of events of one thread, formatted when first asked for.
+     */
+    private class TraceRecord extends LogRecord {
+        private final String thread;
+        private final byte[] methods;
+        private final int[] players;
+        private final int[] slots;
+        private final int[] cards;
+        private final long[] values;
+        private final long[] times;
+        private final int size;
+        private volatile String text;
+
+        TraceRecord(Events events) {
+            super(TRACE_LEVEL, null);
+            setLoggerName(logger.getName());
+            thread = events.thread;
+            methods = events.methods;
+            players = events.players;
+            slots = events.slots;
+            cards = events.cards;
+            values = events.values;
+            times = events.times;
+            size = events.size;
+        }
+
+        @Override
+        public String getMessage() {
+            String text = this.text;
+            if (text == null) this.text = text = format();
+            return text;
+        }
+
+        private String format() {
+            StringBuilder builder = new StringBuilder(size * 48);
+            builder.append(size).append(" user interface calls by ").append(thread).append(':');
+            for (int i = 0; i < size; i++) {
+                builder.append(System.lineSeparator()).append(String.format("  %10.3fms ", (times[i] - startNanos) / 1e6));
+                describe(builder, Method.values()[methods[i]], players[i], slots[i], cards[i], values[i]);
+            }
+            return builder.toString();
+        }
+    }
+
+    private static void describe(StringBuilder builder, Method method, int player, int slot, int card, long value) {
+        switch (method) {
+            case PLACE_CARD: builder.append("placing card ").append(card).append(" in slot ").append(slot); break;
+            case REMOVE_CARD: builder.append("removing card from slot ").append(slot); break;
+            case PLACE_TOKEN: builder.append("player ").append(player + 1).append(" placing token on slot ").append(slot); break;
+            case REMOVE_ALL_TOKENS: builder.append("removing all tokens"); break;
+            case REMOVE_TOKENS: builder.append("removing tokens from slot ").append(slot); break;
+            case REMOVE_TOKEN: builder.append("removing player ").append(player + 1).append(" token from slot ").append(slot); break;
+            case SET_COUNTDOWN: builder.append("updating countdown to ").append(value).append(card != 0 ? " (warning)" : ""); break;
+            case SET_ELAPSED: builder.append("updating elapsed time to ").append(value); break;
+            case SET_FREEZE: builder.append("setting player ").append(player + 1).append(" freeze to ").append(value); break;
+            case SET_SCORE: builder.append("setting player ").append(player + 1).append(" score to ").append(value); break;
+            case ANNOUNCE_WINNER: builder.append("announcing winner player ").append(player + 1).append(" (of ").append(value).append(')'); break;
+            case DISPOSE: builder.append("disposing of user interface elements"); break;
+        }
+    }
+
+    /**
+     * Records an event of the calling thread, if the calls are traced.
+     */
+    private void trace(Method method, int player, int slot, int card, long value) {
+        if (!logger.isLoggable(TRACE_LEVEL)) return;
+        Events events = buffers.get();
+        int i = events.size;
+        events.methods[i] = (byte) method.ordinal();
+        events.players[i] = player;
+        events.slots[i] = slot;
+        events.cards[i] = card;
+        events.values[i] = value;
+        events.times[i] = System.nanoTime();
+        events.size = i + 1;
+        if (events.size == batch) publish(events);
+    }
+
+    private void publish(Events events) {
+        if (events.size == 0) return;
+        TraceRecord record = new TraceRecord(events);
+        events.allocate(batch); // the record owns the filled arrays now
+        logger.log(record);
+    }
+
+    /**
+     * Logs the events buffered by all the threads (call once they stopped calling the user interface).
+     */
+    public void flush() {
+        for (Events events : allBuffers) publish(events);
+    }
+
     @Override
     public void placeCard(int card, int slot) {
-        logger.severe("placing card " + card + " in slot " + slot);
+        trace(Method.PLACE_CARD, -1, slot, card, 0);
         util.spin();
         if (ui != null) ui.placeCard(card, slot);
     }
 
     @Override
     public void removeCard(int slot) {
-        logger.severe("removing card from slot " + slot);
+        trace(Method.REMOVE_CARD, -1, slot, -1, 0);
         util.spin();
         if (ui != null) ui.removeCard(slot);
     }
 
     @Override
     public void placeToken(int player, int slot) {
-        logger.severe("player " + (player + 1) + " placing token on slot " + slot);
+        trace(Method.PLACE_TOKEN, player, slot, -1, 0);
         util.spin();
         if (ui != null) ui.placeToken(player, slot);
     }
 
     @Override
     public void removeTokens() {
-        logger.severe("removing all tokens");
+        trace(Method.REMOVE_ALL_TOKENS, -1, -1, -1, 0);
         util.spin();
         if (ui != null) ui.removeTokens();
     }
 
     @Override
     public void removeTokens(int slot) {
-        logger.severe("removing tokens from slot " + slot);
+        trace(Method.REMOVE_TOKENS, -1, slot, -1, 0);
         util.spin();
         if (ui != null) ui.removeTokens(slot);
     }
 
     @Override
     public void removeToken(int player, int slot) {
-        logger.severe("removing player " + (player + 1) + " token from slot " + slot);
+        trace(Method.REMOVE_TOKEN, player, slot, -1, 0);
         util.spin();
         if (ui != null) ui.removeToken(player, slot);
     }
@@ -64,41 +222,41 @@ public class UserInterfaceDecorator implements UserInterface {
     @Override
     public void setCountdown(long millies, boolean warn) {
         if (!warn || millies % 1000L == 0L)
-            logger.severe("updating countdown to " + millies);
+            trace(Method.SET_COUNTDOWN, -1, -1, warn ? 1 : 0, millies); // the card field holds the warning flag
         if (ui != null) ui.setCountdown(millies, warn);
     }
 
     @Override
     public void setElapsed(long millies) {
-        logger.severe("updating elapsed time to " + millies);
+        trace(Method.SET_ELAPSED, -1, -1, -1, millies);
         util.spin();
         if (ui != null) ui.setElapsed(millies);
     }
 
     @Override
     public void setFreeze(int player, long millies) {
-        logger.severe("setting player " + (player + 1) + " freeze to " + millies);
+        trace(Method.SET_FREEZE, player, -1, -1, millies);
         util.spin();
         if (ui != null) ui.setFreeze(player, millies);
     }
 
     @Override
     public void setScore(int player, int score) {
-        logger.severe("setting player " + (player + 1) + " score to " + score);
+        trace(Method.SET_SCORE, player, -1, -1, score);
         util.spin();
         if (ui != null) ui.setScore(player, score);
     }
 
     @Override
     public void announceWinner(int[] players) {
-        List<String> winners = Arrays.stream(players).mapToObj(id -> "player " + (id + 1)).collect(Collectors.toList());
-        logger.severe("announcing winner(s): " + String.join(", ", winners));
+        for (int player : players) trace(Method.ANNOUNCE_WINNER, player, -1, -1, players.length); // an event per winner
         if (ui != null) ui.announceWinner(players);
     }
 
     @Override
     public void dispose() {
-        logger.severe("disposing of user interface elements");
+        trace(Method.DISPOSE, -1, -1, -1, 0);
+        flush();
         if (ui != null) ui.dispose();
     }
 }
@@ -4,9 +4,11 @@ import bguspl.set.ex.Player;
 
 import javax.swing.*;
 import java.awt.*;
-import java.io.FileNotFoundException;
-import java.net.URL;
+import java.awt.event.KeyAdapter;
+import java.awt.event.KeyEvent;
+import java.awt.image.VolatileImage;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
 import java.util.logging.Logger;
 import java.util.stream.Collectors;
@@ -15,12 +17,33 @@ import static java.lang.String.format;
 
 /**
  * Java Swing implementation of the UserInterface interface.
+ * The game threads never touch Swing: their updates go to a RenderQueue, which the event dispatch thread drains once
+ * per frame, so the cost of the user interface is bounded by the frame rate however many updates arrive.
+ * A large table (see Config::largeTable) is shown by a LargeGridView and a Scoreboard in a resizable window.
  */
 public class UserInterfaceSwing extends JFrame implements UserInterface {
 
+    /**
+     * The time between two frames (about 60 frames per second).
+     */
+    private static final int FRAME_MILLIS = 16;
+
+    /**
+     * The time between two samples of the performance overlay.
+     */
+    private static final int HUD_MILLIS = 500;
+
+    private final Logger logger;
+    private final RenderQueue renderQueue;
+    private final InputManager inputManager;
+    private final Timer frameTimer;
+    private final PerformanceHud hud;
+
     private final TimerPanel timerPanel;
-    private final GamePanel gamePanel;
-    private final PlayersPanel playersPanel;
+    private final GamePanel gamePanel;       // null for a large table
+    private final PlayersPanel playersPanel; // null for a large table
+    private final LargeGridView largeGrid;   // only for a large table (see Config::largeTable)
+    private final Scoreboard scoreboard;     // only for a large table
     private final WinnerPanel winnerPanel;
     private final Config config;
 
@@ -31,11 +54,59 @@ public class UserInterfaceSwing extends JFrame implements UserInterface {
     public UserInterfaceSwing(Logger logger, Config config, Player[] players) {
 
         this.config = config;
+        this.logger = logger;
         timerPanel = new TimerPanel();
-        gamePanel = new GamePanel();
-        playersPanel = new PlayersPanel();
         winnerPanel = new WinnerPanel();
+        if (config.largeTable) {
+            gamePanel = null;
+            playersPanel = null;
+            largeGrid = new LargeGridView(config);
+            scoreboard = new Scoreboard(config);
+            layoutLargeTable();
+        } else {
+            gamePanel = new GamePanel();
+            playersPanel = new PlayersPanel();
+            largeGrid = null;
+            scoreboard = null;
+            layoutTable();
+        }
 
+        setFocusable(true);
+        requestFocusInWindow();
+
+        setResizable(config.largeTable);
+        pack();
+
+        setTitle("Set Card Game");
+        setLocationRelativeTo(null);
+        setDefaultCloseOperation(JFrame.EXIT_ON_CLOSE);
+
+        inputManager = new InputManager(logger, config, players);
+        addKeyListener(inputManager);
+        addWindowListener(new WindowManager());
+
+        renderQueue = new RenderQueue(config);
+        hud = new PerformanceHud();
+        setGlassPane(hud);
+        addKeyListener(new KeyAdapter() {
+            @Override
+            public void keyPressed(KeyEvent e) {
+                if (e.getKeyCode() == KeyEvent.VK_F3) hud.toggle();
+            }
+        });
+        Renderer renderer = new Renderer();
+        frameTimer = new Timer(FRAME_MILLIS, e -> { // fires on the event dispatch thread
+            int applied = renderQueue.drain(renderer);
+            if (hud.isVisible()) hud.sampler.frame(applied);
+        });
+        frameTimer.setCoalesce(true);
+        frameTimer.start();
+        if (config.performanceHud) hud.toggle();
+
+        EventQueue.invokeLater(() -> setVisible(true));
+    }
+
+    private void layoutTable() {
         setLayout(new GridBagLayout());
         GridBagConstraints gbc = new GridBagConstraints();
         gbc.gridx = 0;
@@ -52,21 +123,24 @@ public class UserInterfaceSwing extends JFrame implements UserInterface {
         gbc.gridy++;
         add(winnerPanel, gbc);
         gbc.gridwidth = 1;
+    }
 
-        setFocusable(true);
-        requestFocusInWindow();
-
-        setResizable(false);
-        pack();
-
-        setTitle("Set Card Game");
-        setLocationRelativeTo(null);
-        setDefaultCloseOperation(JFrame.EXIT_ON_CLOSE);
-
-        addKeyListener(new InputManager(logger, config, players));
-        addWindowListener(new WindowManager());
-
-        EventQueue.invokeLater(() -> setVisible(true));
+    /**
+     * The grid and the scoreboard scroll, so the window may be of any size (the keys stay with the window).
+     */
+    private void layoutLargeTable() {
+        setLayout(new BorderLayout());
+        JScrollPane grid = new JScrollPane(largeGrid);
+        JScrollPane scores = new JScrollPane(scoreboard, ScrollPaneConstants.VERTICAL_SCROLLBAR_AS_NEEDED,
+                ScrollPaneConstants.HORIZONTAL_SCROLLBAR_NEVER);
+        scores.setPreferredSize(new Dimension(scoreboard.getPreferredSize().width + 24,
+                Math.min(scoreboard.getPreferredSize().height + 4, grid.getPreferredSize().height)));
+        for (JComponent component : new JComponent[]{largeGrid, scoreboard, grid, scores}) component.setFocusable(false);
+
+        add(timerPanel, BorderLayout.NORTH);
+        add(grid, BorderLayout.CENTER);
+        add(scores, BorderLayout.EAST);
+        add(winnerPanel, BorderLayout.SOUTH);
     }
 
     private class TimerPanel extends JPanel {
@@ -102,40 +176,47 @@ public class UserInterfaceSwing extends JFrame implements UserInterface {
 
     private class GamePanel extends JLayeredPane {
 
+        private final CardImages images;
         private final Image emptyCard;
-        private final Image[] deck;
-        private final Image[][] grid;
-        private final boolean[][][] playerTokens;
+
+        /**
+         * The card in each slot (-1 if none).
+         */
+        private final int[] slotCards;
         private final JLabel[][] tokenText;
+        private final TokenLabels tokenLabels;
 
-        private Image loadImageResource(String filename) {
-            URL imageResource = getClass().getClassLoader().getResource(filename);
-            if (imageResource == null)
-                throw new RuntimeException(new FileNotFoundException(filename));
-            return new ImageIcon(imageResource).getImage();
-        }
+        /**
+         * The tokens shown on each slot (bit per player), so a card change does not touch the labels.
+         */
+        private final long[][] shownTokens;
+
+        /**
+         * The grid as last drawn (null until the first paint, or if the panel cannot create one).
+         */
+        private VolatileImage backBuffer;
+
+        /**
+         * The slots that changed since they were last drawn to the back buffer (used by the event dispatch thread).
+         */
+        private final boolean[] dirtySlots;
 
         private GamePanel() {
 
             setPreferredSize(new Dimension(config.columns * config.cellWidth, config.rows * config.cellHeight));
 
-            // init deck and load all pictures from png files
-            assert config.featureSize < 10; // otherwise there will be naming conflicts
+            // the card images are prepared in the background (once per JVM), only the empty card is needed right away
+            images = CardImages.of(config);
+            emptyCard = images.emptyCard();
 
-            // load the image resources
-            deck = new Image[config.deckSize];
-            for (int i = 0; i < config.deckSize; ++i)
-                deck[i] = loadImageResource("cards/" + intInBaseToPaddedString(i, config.featureCount, config.featureSize) + ".png");
-            emptyCard = loadImageResource("cards/empty_card.png");
-
-            grid = new Image[config.rows][config.columns];
+            shownTokens = new long[config.tableSize][TokenLabels.words(config.players)];
+            dirtySlots = new boolean[config.tableSize];
+            slotCards = new int[config.tableSize];
+            Arrays.fill(slotCards, -1);
             tokenText = new JLabel[config.rows][config.columns];
-            playerTokens = new boolean[config.players][config.rows][config.columns];
+            tokenLabels = new TokenLabels(config.playerNames);
             for (int row = 0; row < config.rows; row++) {
                 for (int column = 0; column < config.columns; column++) {
-                    // init the cards on the table grid as empty cards
-                    grid[row][column] = emptyCard;
-
                     // init the JLabel selection overlay
                     tokenText[row][column] = new JLabel("");
                     tokenText[row][column].setVerticalAlignment(JLabel.TOP);
@@ -148,67 +229,79 @@ public class UserInterfaceSwing extends JFrame implements UserInterface {
             }
         }
 
-        private void placeCard(int slot, int card) {
+        private void setSlot(int slot, int card, long[] tokens) {
             int row = slot / config.columns;
             int column = slot % config.columns;
-            grid[row][column] = deck[card];
-            validate();
-            repaint();
+            if (slotCards[slot] != card) {
+                slotCards[slot] = card;
+                repaintSlot(slot);
+            }
+            if (!Arrays.equals(shownTokens[slot], tokens)) {
+                System.arraycopy(tokens, 0, shownTokens[slot], 0, tokens.length);
+                tokenText[row][column].setText(tokenLabels.text(tokens));
+            }
         }
 
-        private void removeCard(int slot) {
+        private void repaintSlot(int slot) {
             int row = slot / config.columns;
             int column = slot % config.columns;
-            grid[row][column] = emptyCard;
-            validate();
-            repaint();
+            dirtySlots[slot] = true;
+            // only the cell: the repaint manager merges the cells that changed in the frame
+            repaint(column * config.cellWidth, row * config.cellHeight, config.cellWidth, config.cellHeight);
         }
 
-        private void placeToken(int player, int slot) {
-            int row = slot / config.columns;
-            int column = slot % config.columns;
-            playerTokens[player][row][column] = true;
-            tokenText[row][column].setText(generatePlayersTokenText(row, column));
+        /**
+         * @return - the image of the card in the slot; the empty card if the image is not ready yet, in which case the
+         *           slot is repainted once it is.
+         */
+        private Image slotImage(int slot) {
+            int card = slotCards[slot];
+            if (card < 0) return emptyCard;
+            Image image = images.card(card, () -> EventQueue.invokeLater(() -> {
+                if (slotCards[slot] == card) repaintSlot(slot);
+            }));
+            return image != null ? image : emptyCard;
         }
 
-        private void removeTokens() {
-            for (int i = 0; i < config.tableSize; i++)
-                removeTokens(i);
+        private void drawCell(Graphics g, int row, int column) {
+            g.clearRect(column * config.cellWidth, row * config.cellHeight, config.cellWidth, config.cellHeight);
+            g.drawImage(slotImage(row * config.columns + column), (column * config.cellWidth), (row * config.cellHeight), this);
         }
 
-        private void removeTokens(int slot) {
-            int row = slot / config.columns;
-            int column = slot % config.columns;
-            for (int player = 0; player < playerTokens.length; player++) {
-                playerTokens[player][row][column] = false;
-                tokenText[row][column].setText(generatePlayersTokenText(row, column));
+        /**
+         * Draws the slots that changed to the back buffer (all of them if it is new or its contents were lost).
+         * @return - false iff there is no back buffer.
+         */
+        private boolean updateBackBuffer() {
+            int state = backBuffer == null ? VolatileImage.IMAGE_INCOMPATIBLE : backBuffer.validate(getGraphicsConfiguration());
+            boolean all = state != VolatileImage.IMAGE_OK;
+            if (state == VolatileImage.IMAGE_INCOMPATIBLE) {
+                backBuffer = createVolatileImage(getWidth(), getHeight());
+                if (backBuffer == null) return false;
             }
-        }
-
-        private void removeToken(int player, int slot) {
-            int row = slot / config.columns;
-            int column = slot % config.columns;
-            playerTokens[player][row][column] = false;
-            tokenText[row][column].setText(generatePlayersTokenText(row, column));
-        }
-
-        private String generatePlayersTokenText(int row, int column) {
-            String text = "";
-            for (int player = 0; player < config.players; player++) {
-                if (playerTokens[player][row][column])
-                    text = text.concat(config.playerNames[player] + ", ");
+            Graphics2D g = backBuffer.createGraphics();
+            g.setBackground(getBackground());
+            for (int slot = 0; slot < dirtySlots.length; slot++) {
+                if (!all && !dirtySlots[slot]) continue;
+                drawCell(g, slot / config.columns, slot % config.columns);
+                dirtySlots[slot] = false;
             }
-            if (text.length() < 2)
-                return "";
-            return text.substring(0, text.length() - 2);
+            g.dispose();
+            return true;
         }
 
         @Override
         public void paintComponent(Graphics g) {
-            // draw card images
-            for (int row = 0; row < config.rows; row++)
-                for (int column = 0; column < config.columns; column++)
-                    g.drawImage(grid[row][column], (column * config.cellWidth), (row * config.cellHeight), this);
+            // copy the grid from the back buffer (only the clip, i.e. the cells that changed, is actually copied)
+            do {
+                if (!updateBackBuffer()) { // not displayable yet: draw the cards directly
+                    for (int row = 0; row < config.rows; row++)
+                        for (int column = 0; column < config.columns; column++)
+                            drawCell(g, row, column);
+                    return;
+                }
+                g.drawImage(backBuffer, 0, 0, this);
+            } while (backBuffer.contentsLost());
         }
     }
 
@@ -274,65 +367,158 @@ public class UserInterfaceSwing extends JFrame implements UserInterface {
         }
     }
 
+    /**
+     * The performance overlay (the glass pane of the window, toggled by F3): samples the engine at a low fixed rate,
+     * and only while shown.
+     */
+    private class PerformanceHud extends JComponent {
+
+        private final PerformanceSampler sampler = new PerformanceSampler(renderQueue, inputManager, HUD_MILLIS);
+        private final Timer sampleTimer = new Timer(HUD_MILLIS, e -> sample());
+        private final Font font = new Font(Font.MONOSPACED, Font.PLAIN, 12);
+        private List<String> lines = Collections.emptyList();
+
+        private PerformanceHud() {
+            setOpaque(false);
+            setVisible(false);
+            sampleTimer.setCoalesce(true);
+        }
+
+        private void toggle() {
+            if (isVisible()) {
+                sampleTimer.stop();
+                setVisible(false);
+            } else {
+                sampler.reset();
+                lines = Collections.singletonList("sampling...");
+                sample();
+                sampleTimer.start();
+                setVisible(true);
+            }
+        }
+
+        private void sample() {
+            List<String> sampled = sampler.sample(System.nanoTime());
+            if (!sampled.isEmpty()) lines = sampled;
+            repaint();
+        }
+
+        @Override
+        protected void paintComponent(Graphics g) {
+            g.setFont(font);
+            FontMetrics metrics = g.getFontMetrics();
+            int width = 0;
+            for (String line : lines) width = Math.max(width, metrics.stringWidth(line));
+            int lineHeight = metrics.getHeight();
+            g.setColor(new Color(0, 0, 0, 170));
+            g.fillRoundRect(4, 4, width + 16, lines.size() * lineHeight + 12, 8, 8);
+            g.setColor(Color.GREEN);
+            int y = 10 + metrics.getAscent();
+            for (String line : lines) {
+                g.drawString(line, 12, y);
+                y += lineHeight;
+            }
+        }
+    }
+
+    /**
+     * Applies the updates of the game to the panels (on the event dispatch thread).
+     */
+    private class Renderer implements RenderQueue.Renderer {
+
+        @Override
+        public void slot(int slot, int card, long[] tokens) {
+            if (largeGrid != null) largeGrid.setSlot(slot, card, tokens);
+            else gamePanel.setSlot(slot, card, tokens);
+        }
+
+        @Override
+        public void player(int player, int score, long freezeMillis) {
+            if (scoreboard != null) {
+                scoreboard.setScore(player, score);
+                scoreboard.setFreeze(player, freezeMillis);
+                return;
+            }
+            playersPanel.setScore(player, score);
+            playersPanel.setFreeze(player, freezeMillis);
+        }
+
+        @Override
+        public void timer(long millis, int mode) {
+            if (mode == RenderQueue.ELAPSED) timerPanel.setElapsed(millis);
+            else timerPanel.setCountdown(millis, mode == RenderQueue.WARNING);
+        }
+
+        @Override
+        public void winners(int[] players) {
+            if (playersPanel != null) playersPanel.setVisible(false); // the scoreboard of a large table stays
+            winnerPanel.announceWinner(players);
+            winnerPanel.setVisible(true);
+        }
+    }
+
     @Override
     public void placeCard(int card, int slot) {
-        gamePanel.placeCard(slot, card);
+        renderQueue.placeCard(card, slot);
     }
 
     @Override
     public void removeCard(int slot) {
-        gamePanel.removeCard(slot);
+        renderQueue.removeCard(slot);
     }
 
     @Override
     public void placeToken(int player, int slot) {
-        gamePanel.placeToken(player, slot);
+        renderQueue.placeToken(player, slot);
     }
 
     @Override
     public void removeTokens() {
-        gamePanel.removeTokens();
+        renderQueue.removeTokens();
     }
 
     @Override
     public void removeTokens(int slot) {
-        gamePanel.removeTokens(slot);
+        renderQueue.removeTokens(slot);
     }
 
     @Override
     public void removeToken(int player, int slot) {
-        gamePanel.removeToken(player, slot);
+        renderQueue.removeToken(player, slot);
     }
 
     @Override
     public void setCountdown(long millies, boolean warn) {
-        timerPanel.setCountdown(millies, warn);
+        renderQueue.setCountdown(millies, warn);
     }
 
     @Override
     public void setElapsed(long millies) {
-        timerPanel.setElapsed(millies);
+        renderQueue.setElapsed(millies);
     }
 
     @Override
     public void setFreeze(int player, long millies) {
-        playersPanel.setFreeze(player, millies);
+        renderQueue.setFreeze(player, millies);
     }
 
     @Override
     public void setScore(int player, int score) {
-        playersPanel.setScore(player, score);
+        renderQueue.setScore(player, score);
     }
 
     @Override
     public void announceWinner(int[] players) {
-        playersPanel.setVisible(false);
-        winnerPanel.announceWinner(players);
-        winnerPanel.setVisible(true);
+        renderQueue.announceWinner(players);
     }
 
     @Override
     public void dispose() {
+        frameTimer.stop();
+        hud.sampleTimer.stop();
+        if (inputManager.dispatched() > 0)
+            logger.info("key presses: " + inputManager.dispatchNanos().summary(1000, "us") + " on the event dispatch thread, "
+                    + inputManager.dropped() + " dropped, " + inputManager.unbound() + " not bound to a slot");
         super.dispose();
     }
 }
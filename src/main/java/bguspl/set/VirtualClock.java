@@ -0,0 +1,315 @@
+package bguspl.set;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * A clock whose time only moves when all the game threads are idle, and then jumps straight to the next deadline.
+ * A timed game therefore runs as fast as the threads can do their work: a 60 second countdown of computer players
+ * takes as long as their moves, not a minute.
+ *
+ * The game threads are the ones started with participant(). A participant is idle when it waits in waitOn(), sleep()
+ * or park() and nobody woke it up yet, or when it is blocked or waiting outside the clock (e.g. on a monitor held by
+ * an idle thread, or in Thread.join()). Since a thread may still be on its way out of a monitor when it is checked,
+ * the clock advances only after the game threads were seen idle twice, with no clock activity in between.
+ */
+public class VirtualClock implements GameClock, AutoCloseable {
+
+    /**
+     * How long (in real time) the game threads must be seen idle before the time advances.
+     */
+    private static final long QUIET_NANOS = 20_000;
+
+    /**
+     * How long the timekeeper sleeps when the game threads are busy (a thread that becomes idle also wakes it up).
+     */
+    private static final long POLL_NANOS = 1_000_000;
+
+    /**
+     * A thread waiting in the clock.
+     */
+    private static class Waiter {
+        final Thread thread;
+        final Object monitor; // null for park()
+        final long deadline;  // Long.MAX_VALUE when there is none
+        boolean woken;
+
+        Waiter(Thread thread, Object monitor, long deadline) {
+            this.thread = thread;
+            this.monitor = monitor;
+            this.deadline = deadline;
+        }
+    }
+
+    private final Object lock = new Object();
+
+    private volatile long now;
+    private final long startMillis;
+
+    // all the following are guarded by lock
+    private final List<Thread> participants = new ArrayList<>();
+    private final Map<Thread, Waiter> waiters = new HashMap<>();
+    private final Set<Thread> permits = new HashSet<>();
+    private int starting;
+    private long activity;
+    private long advances;
+    private boolean stalled; // the timekeeper waits for activity: nobody waits for a time
+
+    private final Thread timekeeper;
+    private volatile boolean closed;
+
+    /**
+     * Starts the virtual time at the current system time.
+     */
+    public VirtualClock() {
+        this(System.currentTimeMillis());
+    }
+
+    /**
+     * @param startMillis - the initial time.
+     */
+    public VirtualClock(long startMillis) {
+        this.startMillis = now = startMillis;
+        timekeeper = new Thread(this::keepTime, "virtual-clock");
+        timekeeper.setDaemon(true);
+        timekeeper.start();
+    }
+
+    @Override
+    public long currentTimeMillis() {
+        return now;
+    }
+
+    /**
+     * @return - the virtual time that passed since the clock was created.
+     */
+    public long elapsedMillis() {
+        return now - startMillis;
+    }
+
+    /**
+     * @return - the number of times the clock jumped ahead.
+     */
+    public long advances() {
+        synchronized (lock) {
+            return advances;
+        }
+    }
+
+    /**
+     * @return - the thread that advances the time (for tests).
+     */
+    Thread timekeeper() {
+        return timekeeper;
+    }
+
+    @Override
+    public void sleep(long millis) throws InterruptedException {
+        if (Thread.interrupted()) throw new InterruptedException();
+        if (millis <= 0) return;
+        Object monitor = new Object();
+        synchronized (monitor) {
+            waitOn(monitor, millis);
+        }
+    }
+
+    @Override
+    public void waitOn(Object monitor, long millis) throws InterruptedException {
+        Waiter waiter = enter(monitor, millis > 0 ? now + millis : Long.MAX_VALUE);
+        try {
+            while (!released(waiter))
+                monitor.wait();
+        } finally {
+            leave(waiter);
+        }
+    }
+
+    @Override
+    public void notifyAll(Object monitor) {
+        synchronized (lock) {
+            for (Waiter waiter : waiters.values())
+                if (waiter.monitor == monitor) waiter.woken = true;
+            changed();
+        }
+        monitor.notifyAll();
+    }
+
+    @Override
+    public void park() {
+        Thread thread = Thread.currentThread();
+        synchronized (lock) {
+            if (permits.remove(thread)) return;
+        }
+        Waiter waiter = enter(null, Long.MAX_VALUE);
+        try {
+            while (!released(waiter) && !thread.isInterrupted())
+                LockSupport.park(this);
+        } finally {
+            leave(waiter);
+        }
+    }
+
+    @Override
+    public void unpark(Thread thread) {
+        synchronized (lock) {
+            Waiter waiter = waiters.get(thread);
+            if (waiter != null && waiter.monitor == null) waiter.woken = true;
+            else permits.add(thread);
+            changed();
+        }
+        LockSupport.unpark(thread);
+    }
+
+    @Override
+    public Runnable participant(Runnable target) {
+        synchronized (lock) {
+            starting++;
+        }
+        return () -> {
+            Thread thread = Thread.currentThread();
+            synchronized (lock) {
+                starting--;
+                participants.add(thread);
+                changed();
+            }
+            try {
+                target.run();
+            } finally {
+                synchronized (lock) {
+                    participants.remove(thread);
+                    permits.remove(thread);
+                    changed();
+                }
+            }
+        };
+    }
+
+    private Waiter enter(Object monitor, long deadline) {
+        Waiter waiter = new Waiter(Thread.currentThread(), monitor, deadline);
+        synchronized (lock) {
+            waiters.put(waiter.thread, waiter);
+            changed();
+        }
+        LockSupport.unpark(timekeeper);
+        return waiter;
+    }
+
+    private boolean released(Waiter waiter) {
+        synchronized (lock) {
+            return waiter.woken || now >= waiter.deadline;
+        }
+    }
+
+    /**
+     * Counts an activity of the game threads and wakes up a stalled timekeeper (called with the lock held).
+     */
+    private void changed() {
+        activity++;
+        if (stalled) {
+            stalled = false;
+            LockSupport.unpark(timekeeper);
+        }
+    }
+
+    private void leave(Waiter waiter) {
+        synchronized (lock) {
+            waiters.remove(waiter.thread);
+            changed();
+        }
+    }
+
+    /**
+     * @return - the activity count if all the participants are idle, -1 otherwise.
+     */
+    private long idleActivity() {
+        synchronized (lock) {
+            if (starting > 0 || participants.isEmpty()) return -1;
+            for (Thread thread : participants) {
+                Waiter waiter = waiters.get(thread);
+                if (waiter != null) {
+                    if (waiter.woken || now >= waiter.deadline) return -1;
+                } else {
+                    Thread.State state = thread.getState();
+                    if (state == Thread.State.RUNNABLE || state == Thread.State.NEW) return -1;
+                }
+            }
+            return activity;
+        }
+    }
+
+    private void keepTime() {
+        while (!closed) {
+            long seen = idleActivity();
+            if (seen < 0) {
+                LockSupport.parkNanos(this, POLL_NANOS);
+                continue;
+            }
+            for (long quietStart = System.nanoTime(); System.nanoTime() - quietStart < QUIET_NANOS; )
+                Thread.yield();
+            if (idleActivity() == seen && !advance()) awaitActivity(seen);
+        }
+    }
+
+    /**
+     * Parks the timekeeper until the activity count moves on from seen (or the clock is closed).
+     */
+    private void awaitActivity(long seen) {
+        while (!closed) {
+            synchronized (lock) {
+                if (activity != seen) {
+                    stalled = false;
+                    return;
+                }
+                stalled = true;
+            }
+            LockSupport.park(this);
+        }
+    }
+
+    /**
+     * Moves the time to the earliest deadline and wakes up the threads waiting for it.
+     *
+     * @return - false if nobody waits for a time (the game threads wait for each other, and only an activity of theirs
+     *           can change that).
+     */
+    private boolean advance() {
+        List<Waiter> due = new ArrayList<>();
+        synchronized (lock) {
+            long next = Long.MAX_VALUE;
+            for (Waiter waiter : waiters.values())
+                if (!waiter.woken) next = Math.min(next, waiter.deadline);
+            if (next == Long.MAX_VALUE) return false;
+            if (next > now) {
+                now = next;
+                advances++;
+            }
+            for (Waiter waiter : waiters.values())
+                if (waiter.deadline <= now) due.add(waiter);
+            changed();
+        }
+        for (Waiter waiter : due) {
+            if (waiter.monitor == null) {
+                LockSupport.unpark(waiter.thread);
+            } else {
+                synchronized (waiter.monitor) {
+                    waiter.monitor.notifyAll();
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Stops the timekeeper thread. Threads still waiting for a time are not woken up.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        LockSupport.unpark(timekeeper);
+    }
+}
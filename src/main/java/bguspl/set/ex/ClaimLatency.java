@@ -0,0 +1,132 @@
+package bguspl.set.ex;
+
+import bguspl.set.LatencyHistogram;
+
+/**
+ * Time stamps the stages of a player's set claims, from the third key press until the player sees the verdict,
+ * and records each stage in a latency histogram (in nanoseconds).
+ * The stamps are handed between the player and the dealer threads through the claim queue and the player's monitor,
+ * so no additional synchronization is needed.
+ */
+public class ClaimLatency {
+
+    /**
+     * The stages of a claim.
+     */
+    public enum Stage {
+        /** key press until the player thread acts on it. */
+        DISPATCH,
+        /** player thread acts on the key press until the claim enters the dealer's queue. */
+        SUBMIT,
+        /** waiting in the dealer's queue. */
+        QUEUE,
+        /** the dealer collects the cards and tests the set. */
+        VERIFY,
+        /** verdict until the player sees the point or the penalty. */
+        NOTIFY,
+        /** key press until the player sees the point or the penalty. */
+        TOTAL
+    }
+
+    private static final Stage[] STAGES = Stage.values();
+
+    private final LatencyHistogram[] histograms = new LatencyHistogram[STAGES.length];
+
+    /**
+     * The stamps (System.nanoTime()) of the claim in progress (0 if the stage was not reached).
+     */
+    private long pressedNanos;
+    private long actedNanos;
+    private long submittedNanos;
+    private long dequeuedNanos;
+    private long verdictNanos;
+
+    public ClaimLatency() {
+        for (int i = 0; i < histograms.length; i++)
+            histograms[i] = new LatencyHistogram();
+    }
+
+    /**
+     * Called by the player thread when it acts on the key press that completes a claim.
+     * @param pressNanos - the time the key was pressed.
+     * @param actNanos   - the time the player thread took the key press.
+     */
+    void pressed(long pressNanos, long actNanos) {
+        pressedNanos = pressNanos;
+        actedNanos = actNanos;
+        submittedNanos = dequeuedNanos = verdictNanos = 0;
+    }
+
+    /**
+     * Called right before the claim is put in the dealer's queue.
+     */
+    void submitted(long nanos) {
+        submittedNanos = nanos;
+    }
+
+    /**
+     * Called by the dealer thread when it takes the claim from the queue.
+     */
+    void dequeued(long nanos) {
+        dequeuedNanos = nanos;
+    }
+
+    /**
+     * Called by the dealer thread once the set was tested, before the player is notified.
+     */
+    void verdict(long nanos) {
+        verdictNanos = nanos;
+    }
+
+    /**
+     * Called by the player thread once the verdict is displayed. Records all stages of the claim (only once per claim;
+     * claims that were not tested by the dealer are not recorded).
+     */
+    void shown(long nanos) {
+        if (verdictNanos == 0 || pressedNanos == 0) return;
+        histograms[Stage.DISPATCH.ordinal()].record(actedNanos - pressedNanos);
+        histograms[Stage.SUBMIT.ordinal()].record(submittedNanos - actedNanos);
+        histograms[Stage.QUEUE.ordinal()].record(dequeuedNanos - submittedNanos);
+        histograms[Stage.VERIFY.ordinal()].record(verdictNanos - dequeuedNanos);
+        histograms[Stage.NOTIFY.ordinal()].record(nanos - verdictNanos);
+        histograms[Stage.TOTAL.ordinal()].record(nanos - pressedNanos);
+        pressedNanos = verdictNanos = 0;
+    }
+
+    /**
+     * @param stage - the claim stage.
+     * @return - the live histogram of the stage (may be queried while the game is running).
+     */
+    public LatencyHistogram histogram(Stage stage) {
+        return histograms[stage.ordinal()];
+    }
+
+    /**
+     * Merges the histograms of several players.
+     * @param players - the players.
+     * @param stage   - the claim stage.
+     * @return - a new histogram containing the stage latencies of all the players.
+     */
+    public static LatencyHistogram merge(Player[] players, Stage stage) {
+        LatencyHistogram merged = new LatencyHistogram();
+        for (Player player : players)
+            if (player != null) merged.add(player.claimLatency().histogram(stage));
+        return merged;
+    }
+
+    /**
+     * @return - one line per stage, with the stage histogram summary in microseconds.
+     */
+    public static String report(Player[] players) {
+        StringBuilder sb = new StringBuilder();
+        for (Stage stage : STAGES) {
+            sb.append("claim latency ").append(stage).append(": ").append(merge(players, stage));
+            for (Player player : players)
+                if (player != null)
+                    sb.append(System.lineSeparator()).append("    player ").append(player.id + 1).append(": ")
+                            .append(player.claimLatency().histogram(stage));
+            sb.append(System.lineSeparator());
+        }
+        return sb.toString();
+    }
+}
@@ -1,11 +1,20 @@
 package bguspl.set.ex;
 
 import bguspl.set.Env;
+import bguspl.set.LatencyHistogram;
+import bguspl.set.RandomStreams;
 
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.SplittableRandom;
 import java.util.concurrent.ArrayBlockingQueue;
 import java.util.stream.Collectors;
+import java.util.logging.Level;
 import java.util.stream.IntStream;
 
 /**
@@ -31,6 +40,11 @@ public class Dealer implements Runnable {
      */
     private final List<Integer> deck;
 
+    /**
+     * The dealer's own random stream (derived from the game seed).
+     */
+    private final SplittableRandom random;
+
     /**
      * True iff game should be terminated.
      */
@@ -39,7 +53,7 @@ public class Dealer implements Runnable {
     /**
      * The time when the dealer needs to reshuffle the deck due to turn timeout.
      */
-    private long reshuffleTime = Long.MAX_VALUE;
+    private volatile long reshuffleTime = Long.MAX_VALUE;
 
     /**
      * Reference for the thread of the dealer
@@ -56,13 +70,55 @@ public class Dealer implements Runnable {
      */
     private boolean setExists = true;
 
+    /**
+     * The number of times the cards were returned to the deck
+     */
+    private volatile int reshuffles;
+
+    /**
+     * True iff someone asked the dealer to reshuffle before the turn times out
+     */
+    private volatile boolean reshuffleRequested;
+
+    /**
+     * The file to write the checkpoints of the game to (null for no checkpoints).
+     */
+    private final Path checkpointFile;
+
+    /**
+     * The buffer the checkpoints are encoded in (allocated by the first checkpoint).
+     */
+    private ByteBuffer checkpointBuffer;
+
+    /**
+     * The time of the next periodic checkpoint.
+     */
+    private long nextCheckpointTime;
+
+    /**
+     * True iff someone asked the dealer to take a checkpoint now.
+     */
+    private volatile boolean checkpointRequested;
+
+    /**
+     * The number of checkpoints written.
+     */
+    private volatile int checkpoints;
+
+    /**
+     * The time left for the first turn of a resumed game (-1 if the game was not resumed).
+     */
+    private long restoredRemainingMillis = -1;
+
     public Dealer(Env env, Table table, Player[] players) {
         this.env = env;
         this.table = table;
         this.players = players;
         deck = IntStream.range(0, env.config.deckSize).boxed().collect(Collectors.toList());
+        random = RandomStreams.dealer(env.config.seed);
         playersThreads = new Thread[players.length];
         waitForCheckQueue = new ArrayBlockingQueue<>(players.length, true);
+        checkpointFile = env.config.checkpointFile.isEmpty() ? null : Paths.get(env.config.checkpointFile);
 
     }
 
@@ -72,54 +128,85 @@ public class Dealer implements Runnable {
     @Override
     public void run() {
         dealerThread = Thread.currentThread();
-        // generate players threads and run them:
-        for(int i=0; i<players.length ; i++){
-            playersThreads[i] = new Thread(players[i], "Player-" + Integer.toString(i+1)); 
-            playersThreads[i].start();
-        }
+        GameMonitors monitors = new GameMonitors(env);
+        monitors.register(this, table, players);
+        try{
+            // generate players threads and run them:
+            for(int i=0; i<players.length ; i++){
+                playersThreads[i] = env.clock.newThread(players[i], "Player-" + Integer.toString(i+1)); 
+                playersThreads[i].start();
+            }
 
-        env.ui.setCountdown(env.config.turnTimeoutMillis,false);
+            env.ui.setCountdown(env.config.turnTimeoutMillis,false);
 
-        while (!shouldFinish()) {
-            synchronized(table){ placeCardsOnTable(); }
-            updateTimerDisplay(true);
-            timerLoop();
-            if(!terminate){ // for faster termination
+            while (!shouldFinish()) {
+                long lockRequested = System.nanoTime();
+                synchronized(table){ table.lockAcquired(lockRequested); placeCardsOnTable(); }
                 updateTimerDisplay(true);
-                synchronized(table){ removeAllCardsFromTable(); }
+                if(checkpointFile != null) checkpoint(); // a new turn (and after a reshuffle)
+                timerLoop();
+                if(!terminate){ // for faster termination
+                    updateTimerDisplay(true);
+                    int deckSizeBefore = deck.size();
+                    lockRequested = System.nanoTime();
+                    synchronized(table){ table.lockAcquired(lockRequested); removeAllCardsFromTable(); }
+                    reshuffleRequested = false;
+                    reshuffles++;
+                    env.events.reshuffle(deck.size() - deckSizeBefore);
+                }
             }
-        }
 
-        if(!terminate){
-            for(int i = 0 ; i<env.config.players ; i++)
-                env.logger.info("player number " + (i+1) + " claimed a set: " + players[i].numSetForCheck() + " times!");
-            for(int i = 0 ; i<env.config.players ; i++)
-                env.logger.info("player number " + (i+1) + " has " + players[i].score() + " points.");
+            int[] deckCards = new int[deck.size()];
+            for(int i = 0; i < deckCards.length; i++)
+                deckCards[i] = deck.get(i);
+            env.events.gameEnded(table.countCards(), deckCards);
+
+            if(!terminate){
+                PlayerStats.Snapshot[] finalStats = new PlayerStats.Snapshot[players.length];
+                for(int i = 0 ; i<players.length ; i++)
+                    finalStats[i] = players[i].stats().snapshot();
+                if(env.logger.isLoggable(Level.INFO)){ // skips building the reports of simulated games
+                    for(int i = 0 ; i<players.length ; i++)
+                        env.logger.info("player number " + (i+1) + " claimed a set: " + finalStats[i].claims + " times! (" + finalStats[i].falseClaims + " false)");
+                    for(int i = 0 ; i<players.length ; i++)
+                        env.logger.info("player number " + (i+1) + " has " + finalStats[i].score + " points.");
+                    env.logger.info(ClaimLatency.report(players));
+                }
             
-            announceWinners();
-            for(Player player : players){
-                if(player != null) player.terminate();
+                announceWinners(finalStats);
+                deleteCheckpoint(); // nothing to resume
+                for(Player player : players){
+                    if(player != null) player.terminate();
+                }
             }
-        }
+            else if(checkpointFile != null) checkpoint(); // so the game can resume where it stopped
         
-        // gracefully closing all threads:
-        for(Thread playerThread : playersThreads){
-            try{playerThread.join();} 
-            catch(InterruptedException ignored){
-                env.logger.warning("dealer thread was interrupted while waiting for " + playerThread.getName() + "to join:" + ignored.getMessage());
+            // gracefully closing all threads:
+            for(Thread playerThread : playersThreads){
+                while(playerThread.isAlive()){ // terminate() may interrupt the join, the player is terminating anyway
+                    try{playerThread.join();} 
+                    catch(InterruptedException ignored){
+                        env.logger.warning("dealer thread was interrupted while waiting for " + playerThread.getName() + "to join:" + ignored.getMessage());
+                    }
+                }
             }
         }
+        finally{ // the MBeans of a game that failed would keep the dealer and its table reachable
+            monitors.unregister();
+        }
     }
 
     /**
      * The inner loop of the dealer thread that runs as long as the countdown did not time out.
      */
     private void timerLoop() {
-        while (!terminate && System.currentTimeMillis() < reshuffleTime && setExists) {
+        while (!terminate && env.clock.currentTimeMillis() < reshuffleTime && !reshuffleRequested && setExists) {
             sleepUntilWokenOrTimeout();
             updateTimerDisplay(false);
             removeCardsFromTable();
             placeCardsOnTable();
+            if(checkpointRequested || (checkpointFile != null && env.clock.currentTimeMillis() >= nextCheckpointTime))
+                checkpoint();
         }
     }
 
@@ -128,7 +215,7 @@ public class Dealer implements Runnable {
      */
     public void terminate() {
         terminate = true;
-        dealerThread.interrupt();
+        if(dealerThread != null) dealerThread.interrupt(); // null if the dealer did not start yet
        
         // closing and joining players threads:
         for(Player player : players){
@@ -142,7 +229,17 @@ public class Dealer implements Runnable {
      * @return true iff the game should be finished.
      */
     private boolean shouldFinish() {
-        return terminate || env.util.findSets(deck, 1).size() == 0;
+        return terminate || findSets(deck, 1).size() == 0;
+    }
+
+    /**
+     * Calls Util::findSets and reports the search.
+     */
+    private List<int[]> findSets(List<Integer> cards, int count) {
+        long start = System.nanoTime();
+        List<int[]> sets = env.util.findSets(cards, count);
+        env.events.findSets(cards.size(), count, sets.size(), System.nanoTime() - start);
+        return sets;
     }
 
     /**
@@ -151,9 +248,11 @@ public class Dealer implements Runnable {
     private void removeCardsFromTable() {
         while(!waitForCheckQueue.isEmpty() && !terminate){
             int playerTested = waitForCheckQueue.poll();
+            long dequeuedNanos = System.nanoTime();
+            players[playerTested].claimLatency().dequeued(dequeuedNanos);
             if(players[playerTested].getNumTokensHolding() != 0){ // not needed to be in queue anymore, got his token back before
                 synchronized(players[playerTested]){
-                    players[playerTested].notifyAll();
+                    env.clock.notifyAll(players[playerTested]);
                 }
                 continue; // to next while() itteration
             }
@@ -165,12 +264,18 @@ public class Dealer implements Runnable {
                     ind++;
                 }
             }
+            boolean legalSet = env.util.testSet(cardsToTest);
+            long verdictNanos = System.nanoTime();
+            players[playerTested].claimLatency().verdict(verdictNanos);
+            env.events.claimVerified(playerTested, legalSet, verdictNanos - dequeuedNanos);
             // legal set:
-            if(env.util.testSet(cardsToTest)){ 
+            if(legalSet){ 
                 players[playerTested].point();
                 for(int card : cardsToTest){
                     int slot = table.cardToSlot[card];
+                    long lockRequested = System.nanoTime();
                     synchronized(table){
+                        table.lockAcquired(lockRequested);
                         table.removeCard(slot);
                         removeTokens(slot);
                     }
@@ -179,6 +284,7 @@ public class Dealer implements Runnable {
             }
             // not a set:
             else{
+                players[playerTested].falseClaim();
                 players[playerTested].penalty(env.config.penaltyFreezeMillis);
             }
         }
@@ -216,12 +322,12 @@ public class Dealer implements Runnable {
         for (Integer i=0; i<table.slotToCard.length && !terminate ; i++){
             if(deck.isEmpty()){
                 List<Integer> cardsOnTableList = convertToCleanList(table.slotToCard);
-                if(env.util.findSets(cardsOnTableList, 1).size() == 0)
+                if(findSets(cardsOnTableList, 1).size() == 0)
                         setExists = false;
                 return; 
             }
             if (table.slotToCard[i] == null){ // emptySlot
-                int randIndex = (int) (Math.random() * deck.size());
+                int randIndex = random.nextInt(deck.size());
                 int randCard = deck.remove(randIndex); // random card from the deck
                 table.placeCard(randCard, i);
                 cardWasPlaced = true;
@@ -245,7 +351,7 @@ public class Dealer implements Runnable {
      */
     synchronized private void sleepUntilWokenOrTimeout() {
         try {
-            wait(Math.max(nextUpdateTime-System.currentTimeMillis(), 0));
+            env.clock.waitOn(this, Math.max(nextUpdateTime-env.clock.currentTimeMillis(), 1)); // 0 would wait until notified
         }
         catch(InterruptedException InterruptedException){}        
 
@@ -257,13 +363,15 @@ public class Dealer implements Runnable {
     private void updateTimerDisplay(boolean reset) {
         boolean warn;
         if(reset){
-            reshuffleTime = System.currentTimeMillis() + env.config.turnTimeoutMillis;
-            warn = (reshuffleTime - System.currentTimeMillis() <= env.config.turnTimeoutWarningMillis);
-            env.ui.setCountdown(env.config.turnTimeoutMillis , warn);
-            if(warn) nextUpdateTime = System.currentTimeMillis() + 10;
-            else nextUpdateTime = System.currentTimeMillis() + 1000;
+            long turnMillis = restoredRemainingMillis >= 0 ? restoredRemainingMillis : env.config.turnTimeoutMillis;
+            restoredRemainingMillis = -1;
+            reshuffleTime = env.clock.currentTimeMillis() + turnMillis;
+            warn = (reshuffleTime - env.clock.currentTimeMillis() <= env.config.turnTimeoutWarningMillis);
+            env.ui.setCountdown(turnMillis , warn);
+            if(warn) nextUpdateTime = env.clock.currentTimeMillis() + 10;
+            else nextUpdateTime = env.clock.currentTimeMillis() + 1000;
         }
-        else if(nextUpdateTime - System.currentTimeMillis() <= 0 ){ // need to update now:
+        else if(nextUpdateTime - env.clock.currentTimeMillis() <= 0 ){ // need to update now:
             long newCountDown = reshuffleTime - nextUpdateTime;
             warn = (newCountDown <= env.config.turnTimeoutWarningMillis);
             env.ui.setCountdown(newCountDown,warn);
@@ -275,23 +383,23 @@ public class Dealer implements Runnable {
     /**
      * Check who is/are the winner/s and displays them.
      */
-    private void announceWinners() {
+    private void announceWinners(PlayerStats.Snapshot[] finalStats) {
         int maxScore = -1; //so if all players have 0 points, it will be tie  
         for (int i = 0; i < players.length ; i++){ //only updating the winner's score
-            if (players[i].score() > maxScore){
-                maxScore = players[i].score();
+            if (finalStats[i].score > maxScore){
+                maxScore = finalStats[i].score;
             }
         }
         int numOfWinners = 0;
         for (int i = 0; i < players.length ; i++){ //only checking the number of winners
-            if (players[i].score() == maxScore){
+            if (finalStats[i].score == maxScore){
                 numOfWinners++;
             }
         }
         int[] winnersArray = new int[numOfWinners];
         int counter = 0;
         for (int i = 0; i < players.length ; i++){ //puts the players' ids in an array
-            if (players[i].score() == maxScore){
+            if (finalStats[i].score == maxScore){
                 winnersArray[counter] = i;
                 counter++;
             }
@@ -300,9 +408,172 @@ public class Dealer implements Runnable {
     }
 
 
+    /**
+     * Makes the dealer return all the cards to the deck and deal again, as if the turn timed out.
+     */
+    synchronized public void forceReshuffle() {
+        reshuffleRequested = true;
+        env.clock.notifyAll(this); // wakeup dealer
+    }
+
+    /**
+     * Makes the dealer write a checkpoint of the game as soon as it wakes up.
+     */
+    synchronized public void requestCheckpoint() {
+        checkpointRequested = true;
+        env.clock.notifyAll(this); // wakeup dealer
+    }
+
+    /**
+     * Captures the state of the game (called by the dealer thread, the only one that changes the deck).
+     */
+    GameCheckpoint capture() {
+        int[] slotCards = new int[table.slotToCard.length];
+        long[] tokens = new long[slotCards.length];
+        long lockRequested = System.nanoTime();
+        synchronized(table){
+            table.lockAcquired(lockRequested);
+            for(int slot = 0; slot < slotCards.length; slot++){
+                slotCards[slot] = table.slotToCard[slot] == null ? -1 : table.slotToCard[slot];
+                for(int player = 0; player < players.length; player++)
+                    if(table.tokensArray[slot][player]) tokens[slot] |= 1L << player;
+            }
+        }
+        PlayerStats.Snapshot[] stats = new PlayerStats.Snapshot[players.length];
+        for(int i = 0; i < players.length; i++)
+            stats[i] = players[i].stats().snapshot();
+        int[] deckCards = new int[deck.size()];
+        for(int i = 0; i < deckCards.length; i++)
+            deckCards[i] = deck.get(i);
+        return new GameCheckpoint(env.config.seed, reshuffles, remainingMillis(), env.config.deckSize, deckCards, slotCards, tokens, stats);
+    }
+
+    /**
+     * Writes a checkpoint of the game to the checkpoint file. The state is copied under the table lock and written
+     * outside it, so the players are held up only for the copy.
+     */
+    private void checkpoint() {
+        checkpointRequested = false;
+        nextCheckpointTime = env.clock.currentTimeMillis() + env.config.checkpointIntervalMillis;
+        if(checkpointFile == null){
+            env.logger.warning("a checkpoint was requested but no checkpoint file is configured");
+            return;
+        }
+        long start = System.nanoTime();
+        GameCheckpoint checkpoint = capture();
+        if(checkpointBuffer == null || checkpointBuffer.capacity() < checkpoint.size())
+            checkpointBuffer = ByteBuffer.allocateDirect(checkpoint.size() + env.config.deckSize * 2); // fits a full deck too
+        boolean interrupted = Thread.interrupted(); // an interrupt would close the file channel (e.g. when terminating)
+        try{
+            checkpoint.write(checkpointFile, checkpointBuffer);
+            checkpoints++;
+            if(env.logger.isLoggable(Level.FINE))
+                env.logger.fine("checkpoint written in " + (System.nanoTime() - start) / 1000 + "us: " + checkpoint);
+        }
+        catch(IOException e){
+            env.logger.warning("cannot write checkpoint " + checkpointFile + ": " + e.getMessage());
+        }
+        finally{
+            if(interrupted) Thread.currentThread().interrupt();
+        }
+    }
+
+    private void deleteCheckpoint() {
+        if(checkpointFile == null) return;
+        try{ Files.deleteIfExists(checkpointFile); }
+        catch(IOException e){ env.logger.warning("cannot delete checkpoint " + checkpointFile + ": " + e.getMessage()); }
+    }
+
+    /**
+     * Resumes the game from a checkpoint: the deck, the table, the players' statistics and the time left for the turn.
+     * Should be called before the dealer thread starts. A claim that was waiting for the dealer when the checkpoint was
+     * taken is dropped: its tokens go back to the player.
+     *
+     * @param checkpoint - a checkpoint that matches the game configuration (see GameCheckpoint::matches).
+     */
+    public void restore(GameCheckpoint checkpoint) {
+        if(!checkpoint.matches(env.config))
+            throw new IllegalArgumentException("the checkpoint does not match the game configuration");
+        deck.clear();
+        for(int card : checkpoint.deck)
+            deck.add(card);
+        reshuffles = checkpoint.reshuffles;
+        restoredRemainingMillis = checkpoint.remainingMillis;
+
+        // the journal starts from the restored state (see GameJournal.RESUME)
+        boolean[] inGame = new boolean[env.config.deckSize];
+        for(int card : checkpoint.deck) inGame[card] = true;
+        for(int card : checkpoint.slotToCard) if(card >= 0) inGame[card] = true;
+        int[] scores = new int[players.length];
+        for(int player = 0; player < players.length; player++) scores[player] = checkpoint.players[player].score;
+        env.events.gameResumed(scores, IntStream.range(0, inGame.length).filter(card -> !inGame[card]).toArray());
+
+        long[] tokens = checkpoint.tokens.clone();
+        int[] placed = new int[players.length];
+        for(long slotTokens : tokens)
+            for(int player = 0; player < players.length; player++)
+                if((slotTokens & 1L << player) != 0) placed[player]++;
+        for(int player = 0; player < players.length; player++){
+            if(placed[player] < env.config.featureSize) continue;
+            for(int slot = 0; slot < tokens.length; slot++)
+                tokens[slot] &= ~(1L << player);
+            placed[player] = 0;
+        }
+        table.restore(checkpoint.slotToCard, tokens);
+        for(int player = 0; player < players.length; player++)
+            players[player].restore(checkpoint.players[player], placed[player]);
+    }
+
+    /**
+     * Returns the number of checkpoints written.
+     */
+    public int checkpoints() {
+        return checkpoints;
+    }
+
+    /**
+     * Returns the number of times the cards were returned to the deck.
+     */
+    public int reshuffles() {
+        return reshuffles;
+    }
+
+    /**
+     * Returns the number of cards left in the deck (racy, for monitoring only).
+     */
+    public int cardsInDeck() {
+        return deck.size();
+    }
+
+    /**
+     * Returns the number of claims waiting to be checked.
+     */
+    public int claimQueueDepth() {
+        return waitForCheckQueue.size();
+    }
+
+    /**
+     * Returns the number of milliseconds until the next reshuffle.
+     */
+    public long remainingMillis() {
+        return Math.max(0, reshuffleTime - env.clock.currentTimeMillis());
+    }
+
+    Player[] players() {
+        return players;
+    }
+
+    /**
+     * Returns the latency of a claim stage, merged over all players (may be called while the game is running).
+     */
+    public LatencyHistogram claimLatency(ClaimLatency.Stage stage) {
+        return ClaimLatency.merge(players, stage);
+    }
+
     synchronized protected void playerClaimSet(int playerId){
+        players[playerId].claimLatency().submitted(System.nanoTime());
         try{waitForCheckQueue.put(playerId);}
         catch(InterruptedException exception){};
-        notifyAll(); // wakeup dealer
+        env.clock.notifyAll(this); // wakeup dealer
     }
 }
@@ -0,0 +1,90 @@
+package bguspl.set.ex;
+
+import bguspl.set.LatencyHistogram;
+
+/**
+ * Exposes the live state of the dealer over JMX.
+ */
+public class DealerMonitor implements DealerMonitorMBean {
+
+    private final Dealer dealer;
+
+    /**
+     * The claims counter and time of the previous claim rate query.
+     */
+    private long lastClaims;
+    private long lastSampleNanos;
+
+    DealerMonitor(Dealer dealer) {
+        this.dealer = dealer;
+        lastSampleNanos = System.nanoTime();
+    }
+
+    @Override
+    public int getClaimQueueDepth() {
+        return dealer.claimQueueDepth();
+    }
+
+    @Override
+    public long getClaims() {
+        long claims = 0;
+        for (Player player : dealer.players())
+            if (player != null) claims += player.stats().claims();
+        return claims;
+    }
+
+    @Override
+    public synchronized double getClaimsPerSecond() {
+        long claims = getClaims();
+        long now = System.nanoTime();
+        double rate = (claims - lastClaims) * 1e9 / Math.max(1, now - lastSampleNanos);
+        lastClaims = claims;
+        lastSampleNanos = now;
+        return rate;
+    }
+
+    @Override
+    public long getVerdictLatencyP50Micros() {
+        return dealer.claimLatency(ClaimLatency.Stage.VERIFY).percentile(50) / 1000;
+    }
+
+    @Override
+    public long getVerdictLatencyP99Micros() {
+        return dealer.claimLatency(ClaimLatency.Stage.VERIFY).percentile(99) / 1000;
+    }
+
+    @Override
+    public long getClaimToVerdictP99Micros() {
+        return dealer.claimLatency(ClaimLatency.Stage.TOTAL).percentile(99) / 1000;
+    }
+
+    @Override
+    public int getReshuffleCount() {
+        return dealer.reshuffles();
+    }
+
+    @Override
+    public int getCardsInDeck() {
+        return dealer.cardsInDeck();
+    }
+
+    @Override
+    public long getRemainingMillis() {
+        return dealer.remainingMillis();
+    }
+
+    @Override
+    public void forceReshuffle() {
+        dealer.forceReshuffle();
+    }
+
+    @Override
+    public void checkpoint() {
+        dealer.requestCheckpoint();
+    }
+
+    @Override
+    public String claimLatencyReport() {
+        return ClaimLatency.report(dealer.players());
+    }
+}
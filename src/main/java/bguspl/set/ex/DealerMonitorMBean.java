@@ -0,0 +1,63 @@
+package bguspl.set.ex;
+
+/**
+ * JMX management interface of the dealer (see DealerMonitor).
+ */
+public interface DealerMonitorMBean {
+
+    /**
+     * @return - the number of claims waiting for the dealer to check them.
+     */
+    int getClaimQueueDepth();
+
+    /**
+     * @return - the total number of claims since the game started.
+     */
+    long getClaims();
+
+    /**
+     * @return - the claim rate since the previous query (or since the game started).
+     */
+    double getClaimsPerSecond();
+
+    /**
+     * @return - the 50th/99th percentiles of the time the dealer takes to check a claim, in microseconds.
+     */
+    long getVerdictLatencyP50Micros();
+    long getVerdictLatencyP99Micros();
+
+    /**
+     * @return - the 99th percentile of the time from the third key press until the player sees the verdict.
+     */
+    long getClaimToVerdictP99Micros();
+
+    /**
+     * @return - the number of times the dealer returned all the cards to the deck.
+     */
+    int getReshuffleCount();
+
+    /**
+     * @return - the number of cards left in the deck.
+     */
+    int getCardsInDeck();
+
+    /**
+     * @return - the number of milliseconds until the next reshuffle.
+     */
+    long getRemainingMillis();
+
+    /**
+     * Makes the dealer reshuffle the deck as if the turn timed out.
+     */
+    void forceReshuffle();
+
+    /**
+     * Makes the dealer write a checkpoint of the game now (if a checkpoint file is configured).
+     */
+    void checkpoint();
+
+    /**
+     * @return - the latency histograms of all claim stages, per player.
+     */
+    String claimLatencyReport();
+}
@@ -0,0 +1,158 @@
+package bguspl.set.ex;
+
+import bguspl.set.Config;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.CRC32;
+
+/**
+ * The full state of a game at some point: the deck, the cards and tokens on the table, the players' statistics and
+ * the time left for the turn. The dealer takes checkpoints (see Dealer::checkpoint) and a new game resumes from one
+ * (see Dealer::restore).
+ * <p>
+ * The file is a fixed header followed by the state, big endian, and a CRC32 of everything before it:
+ * <pre>
+ *  magic:int, version:short, seed:long, reshuffles:int, remainingMillis:long, players:byte, slots:short, deckSize:short,
+ *  deck:short, card:short * deck, (card:short (-1 if empty), tokens:long (bit per player)) * slots,
+ *  (score:int, claims:int, falseClaims:int, freezeMillis:long) * players, crc:int
+ * </pre>
+ * A checkpoint is written to a temporary file that is then renamed over the previous one, so a crash at any point
+ * leaves either the previous checkpoint or the new one.
+ */
+public class GameCheckpoint {
+
+    private static final int MAGIC = 0x53455443; // "SETC"
+    private static final short VERSION = 1;
+    private static final int HEADER_SIZE = 4 + 2 + 8 + 4 + 8 + 1 + 2 + 2 + 2;
+
+    public final long seed;
+    public final int reshuffles;
+    public final long remainingMillis;
+    public final int deckSize;
+
+    /**
+     * The cards left in the deck.
+     */
+    final int[] deck;
+
+    /**
+     * The card in each slot (-1 if none).
+     */
+    final int[] slotToCard;
+
+    /**
+     * The tokens on each slot (bit per player).
+     */
+    final long[] tokens;
+
+    final PlayerStats.Snapshot[] players;
+
+    GameCheckpoint(long seed, int reshuffles, long remainingMillis, int deckSize, int[] deck, int[] slotToCard,
+                   long[] tokens, PlayerStats.Snapshot[] players) {
+        this.seed = seed;
+        this.reshuffles = reshuffles;
+        this.remainingMillis = remainingMillis;
+        this.deckSize = deckSize;
+        this.deck = deck;
+        this.slotToCard = slotToCard;
+        this.tokens = tokens;
+        this.players = players;
+    }
+
+    /**
+     * @return - the number of bytes the checkpoint takes.
+     */
+    int size() {
+        return HEADER_SIZE + deck.length * 2 + slotToCard.length * 10 + players.length * 20 + 4;
+    }
+
+    /**
+     * @return - true iff a game of the given configuration can resume from this checkpoint.
+     */
+    public boolean matches(Config config) {
+        return players.length == config.players && slotToCard.length == config.tableSize && deckSize == config.deckSize;
+    }
+
+    /**
+     * Writes the checkpoint to a file atomically.
+     *
+     * @param file   - the file to write.
+     * @param buffer - a buffer to encode the checkpoint in (cleared first), large enough for size() bytes.
+     * @throws IOException - if the file cannot be written, in which case the previous checkpoint is left as it was.
+     */
+    void write(Path file, ByteBuffer buffer) throws IOException {
+        buffer.clear();
+        buffer.putInt(MAGIC).putShort(VERSION).putLong(seed).putInt(reshuffles).putLong(remainingMillis)
+                .put((byte) players.length).putShort((short) slotToCard.length).putShort((short) deckSize)
+                .putShort((short) deck.length);
+        for (int card : deck) buffer.putShort((short) card);
+        for (int slot = 0; slot < slotToCard.length; slot++) buffer.putShort((short) slotToCard[slot]).putLong(tokens[slot]);
+        for (PlayerStats.Snapshot player : players)
+            buffer.putInt(player.score).putInt(player.claims).putInt(player.falseClaims).putLong(player.freezeMillis);
+        buffer.putInt(crc(buffer, buffer.position()));
+        buffer.flip();
+
+        Path temporary = file.resolveSibling(file.getFileName() + ".tmp");
+        try (FileChannel channel = FileChannel.open(temporary,
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            while (buffer.hasRemaining()) channel.write(buffer);
+        }
+        Files.move(temporary, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    /**
+     * Reads a checkpoint file.
+     *
+     * @param file - the file to read.
+     * @return - the checkpoint.
+     * @throws IOException - if the file cannot be read or is not a valid checkpoint.
+     */
+    public static GameCheckpoint read(Path file) throws IOException {
+        ByteBuffer buffer;
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            buffer = ByteBuffer.allocate((int) channel.size());
+            while (buffer.hasRemaining() && channel.read(buffer) >= 0) ;
+        }
+        buffer.flip();
+        if (buffer.remaining() < HEADER_SIZE + 4 || buffer.getInt() != MAGIC) throw new IOException(file + " is not a game checkpoint");
+        if (buffer.getShort() != VERSION) throw new IOException(file + " is of an unsupported checkpoint version");
+        if (buffer.getInt(buffer.limit() - 4) != crc(buffer, buffer.limit() - 4)) throw new IOException(file + " is corrupt");
+
+        long seed = buffer.getLong();
+        int reshuffles = buffer.getInt();
+        long remainingMillis = buffer.getLong();
+        PlayerStats.Snapshot[] players = new PlayerStats.Snapshot[buffer.get()];
+        int[] slotToCard = new int[buffer.getShort()];
+        long[] tokens = new long[slotToCard.length];
+        int deckSize = buffer.getShort();
+        int[] deck = new int[buffer.getShort()];
+        for (int i = 0; i < deck.length; i++) deck[i] = buffer.getShort();
+        for (int slot = 0; slot < slotToCard.length; slot++) {
+            slotToCard[slot] = buffer.getShort();
+            tokens[slot] = buffer.getLong();
+        }
+        for (int player = 0; player < players.length; player++)
+            players[player] = new PlayerStats.Snapshot(buffer.getInt(), buffer.getInt(), buffer.getInt(), 0, buffer.getLong());
+        return new GameCheckpoint(seed, reshuffles, remainingMillis, deckSize, deck, slotToCard, tokens, players);
+    }
+
+    private static int crc(ByteBuffer buffer, int end) {
+        CRC32 crc = new CRC32();
+        ByteBuffer bytes = buffer.duplicate();
+        bytes.position(0).limit(end);
+        crc.update(bytes);
+        return (int) crc.getValue();
+    }
+
+    @Override
+    public String toString() {
+        return "checkpoint of game " + seed + " after " + reshuffles + " reshuffles: " + deck.length + " cards in the deck, "
+                + remainingMillis + "ms left for the turn";
+    }
+}
@@ -0,0 +1,69 @@
+package bguspl.set.ex;
+
+import bguspl.set.Env;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Registers the dealer, table and player MBeans of a game in the platform MBean server
+ * (under "bguspl.set:game=N,type=...", so several games in one JVM do not collide).
+ */
+class GameMonitors {
+
+    private static final AtomicInteger gameCounter = new AtomicInteger();
+
+    private final Env env;
+    private final List<ObjectName> registered = new ArrayList<>();
+
+    /**
+     * The number of the game in this JVM (starting from 1).
+     */
+    final int game;
+
+    GameMonitors(Env env) {
+        this.env = env;
+        game = gameCounter.incrementAndGet();
+    }
+
+    /**
+     * Registers the MBeans of all game entities. Failures are logged and do not stop the game.
+     */
+    void register(Dealer dealer, Table table, Player[] players) {
+        register("type=Dealer", new DealerMonitor(dealer));
+        register("type=Table", new TableMonitor(env, table));
+        for (Player player : players)
+            if (player != null) register("type=Player,id=" + (player.id + 1), new PlayerMonitor(env, player));
+    }
+
+    private void register(String properties, Object mbean) {
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        try {
+            ObjectName name = new ObjectName("bguspl.set:game=" + game + "," + properties);
+            server.registerMBean(mbean, name);
+            registered.add(name);
+        } catch (JMException e) {
+            env.logger.warning("cannot register MBean " + properties + ": " + e.getMessage());
+        }
+    }
+
+    /**
+     * Removes all the MBeans registered by this object.
+     */
+    void unregister() {
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        for (ObjectName name : registered) {
+            try {
+                server.unregisterMBean(name);
+            } catch (JMException e) {
+                env.logger.warning("cannot unregister MBean " + name + ": " + e.getMessage());
+            }
+        }
+        registered.clear();
+    }
+}
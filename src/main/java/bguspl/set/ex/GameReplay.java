@@ -0,0 +1,204 @@
+package bguspl.set.ex;
+
+import bguspl.set.Env;
+import bguspl.set.GameJournal;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.stream.IntStream;
+
+/**
+ * Rebuilds a recorded game from its event journal.
+ * The recorded dealer and player decisions are applied, in order, to a fresh Table (and through it to the
+ * UserInterface), and every step is checked against the replayed state: cards are dealt to empty slots and removed
+ * from the slots they are in, token flips are legal, each verdict is recomputed with the same Util the dealer uses,
+ * and the final scores must equal the recorded ones. If the journal ends with the final state of the game (see
+ * GameJournal.END), the cards on the replayed table and in the replayed deck must match it too. A game that was
+ * resumed from a checkpoint is replayed from the restored scores and discarded cards (see GameJournal.RESUME).
+ */
+public class GameReplay {
+
+    /**
+     * The outcome of a replay.
+     */
+    public static class Result {
+        public final long events;
+        public final long elapsedNanos;
+        public final int[] recordedScores;
+        public final int[] replayedScores;
+
+        /**
+         * A description of the first event that did not match the replayed state (null if all matched).
+         */
+        public final String divergence;
+
+        Result(long events, long elapsedNanos, int[] recordedScores, int[] replayedScores, String divergence) {
+            this.events = events;
+            this.elapsedNanos = elapsedNanos;
+            this.recordedScores = recordedScores;
+            this.replayedScores = replayedScores;
+            this.divergence = divergence;
+        }
+
+        public boolean matches() {
+            return divergence == null;
+        }
+
+        @Override
+        public String toString() {
+            return (matches() ? "replay matches" : "replay diverged: " + divergence)
+                    + " (" + events + " events in " + elapsedNanos / 1_000_000 + "ms, recorded scores "
+                    + Arrays.toString(recordedScores) + ", replayed scores " + Arrays.toString(replayedScores) + ")";
+        }
+    }
+
+    private final Env env;
+    private final Table table;
+    private final int[] recordedScores;
+    private final int[] replayedScores;
+
+    /**
+     * The cards of legal sets, which left the game (the other cards are on the table or in the deck).
+     */
+    private final boolean[] discarded;
+
+    /**
+     * @param env - the environment to replay in. Its configuration must match the journal's dimensions.
+     */
+    public GameReplay(Env env) {
+        this.env = env;
+        table = new Table(env);
+        recordedScores = new int[env.config.players];
+        replayedScores = new int[env.config.players];
+        discarded = new boolean[env.config.deckSize];
+    }
+
+    /**
+     * Replays a journal.
+     *
+     * @param reader        - the journal, positioned before its first record.
+     * @param recordedSpeed - true to wait between the events as long as in the recorded game, false to replay as fast
+     *                        as possible.
+     * @return - the outcome of the replay.
+     */
+    public Result replay(GameJournal.Reader reader, boolean recordedSpeed) throws IOException, InterruptedException {
+        if (reader.rows != env.config.rows || reader.columns != env.config.columns || reader.players != env.config.players
+                || reader.featureSize != env.config.featureSize || reader.featureCount != env.config.featureCount)
+            throw new IllegalArgumentException("the journal dimensions do not match the configuration");
+
+        long start = System.nanoTime();
+        long events = 0;
+        String divergence = null;
+        while (divergence == null && reader.next()) {
+            if (recordedSpeed) {
+                long wait = reader.nanos() - (System.nanoTime() - start);
+                if (wait > 0) Thread.sleep(wait / 1_000_000, (int) (wait % 1_000_000));
+            }
+            divergence = apply(reader);
+            events++;
+            if (divergence != null) divergence = "event " + events + ": " + divergence;
+        }
+        if (divergence == null && !Arrays.equals(recordedScores, replayedScores))
+            divergence = "final scores differ";
+        if (divergence == null) announceWinners();
+        return new Result(events, System.nanoTime() - start, recordedScores, replayedScores, divergence);
+    }
+
+    /**
+     * Applies a single event.
+     * @return - null if the event matches the replayed state, otherwise a description of the mismatch.
+     */
+    private String apply(GameJournal.Reader event) {
+        int slot = event.slot();
+        int card = event.card();
+        int player = event.player();
+        switch (event.type()) {
+            case GameJournal.DEAL:
+                if (table.slotToCard[slot] != null) return "card " + card + " dealt to occupied slot " + slot;
+                if (table.cardToSlot[card] != null) return "card " + card + " dealt twice";
+                table.placeCard(card, slot);
+                return null;
+            case GameJournal.REMOVE:
+                if (table.slotToCard[slot] == null || table.slotToCard[slot] != card)
+                    return "card " + card + " removed from slot " + slot + " which holds " + table.slotToCard[slot];
+                table.removeCard(slot);
+                return null;
+            case GameJournal.TOKEN:
+                boolean flipped = event.flag() ? table.placeToken(player, slot) : table.removeToken(player, slot);
+                return flipped ? null : "player " + (player + 1) + " token flip on slot " + slot + " is not possible";
+            case GameJournal.VERDICT:
+                int[] claimed = claimedCards(player);
+                boolean legal = env.util.testSet(claimed);
+                if (legal) {
+                    replayedScores[player]++;
+                    for (int claimedCard : claimed) discarded[claimedCard] = true;
+                }
+                return legal == event.flag() ? null
+                        : "player " + (player + 1) + " verdict was " + event.flag() + " but the cards make it " + legal;
+            case GameJournal.SCORE:
+                recordedScores[player] = (int) event.value();
+                env.ui.setScore(player, recordedScores[player]);
+                return recordedScores[player] == replayedScores[player] ? null
+                        : "player " + (player + 1) + " score " + recordedScores[player] + " but replayed " + replayedScores[player];
+            case GameJournal.FREEZE_START:
+                env.ui.setFreeze(player, event.value());
+                return null;
+            case GameJournal.FREEZE_END:
+                env.ui.setFreeze(player, 0);
+                return null;
+            case GameJournal.END:
+                return finalState(event.slot(), event.value(), event.aux());
+            case GameJournal.RESUME:
+                if (player >= 0) {
+                    recordedScores[player] = replayedScores[player] = (int) event.value();
+                    env.ui.setScore(player, recordedScores[player]);
+                    return null;
+                }
+                if (discarded[card] || table.cardToSlot[card] != null) return "card " + card + " resumed as discarded twice";
+                discarded[card] = true;
+                return null;
+            default: // claims, reshuffles and searches do not change the table by themselves (the dealer may also drop a
+                     // claim whose cards were taken meanwhile, so claims are only checked through their verdicts)
+                return null;
+        }
+    }
+
+    /**
+     * Compares the recorded final state with the replayed one.
+     * @return - null if they match, otherwise a description of the mismatch.
+     */
+    private String finalState(int cardsOnTable, long deckSize, int deckChecksum) {
+        int[] deck = IntStream.range(0, discarded.length)
+                .filter(card -> !discarded[card] && table.cardToSlot[card] == null).toArray();
+        if (table.countCards() != cardsOnTable)
+            return "the game ended with " + cardsOnTable + " cards on the table but replayed " + table.countCards();
+        if (deck.length != deckSize)
+            return "the game ended with " + deckSize + " cards in the deck but replayed " + deck.length;
+        return GameJournal.deckChecksum(deck) == deckChecksum ? null : "the cards left in the deck differ";
+    }
+
+    /**
+     * Collects the cards the player has tokens on, the same way the dealer does.
+     */
+    private int[] claimedCards(int player) {
+        int[] cards = new int[env.config.featureSize];
+        int found = 0;
+        for (int slot = 0; slot < table.slotToCard.length && found < cards.length; slot++)
+            if (table.tokensArray[slot][player] && table.slotToCard[slot] != null)
+                cards[found++] = table.slotToCard[slot];
+        return cards;
+    }
+
+    private void announceWinners() {
+        int maxScore = Arrays.stream(replayedScores).max().orElse(0);
+        env.ui.announceWinner(IntStream.range(0, replayedScores.length)
+                .filter(player -> replayedScores[player] == maxScore).toArray());
+    }
+
+    /**
+     * @return - the replayed table (for inspecting the final state).
+     */
+    public Table table() {
+        return table;
+    }
+}
@@ -0,0 +1,173 @@
+package bguspl.set.ex;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A preallocated multi-producer/single-consumer ring of key presses.
+ * Each press is a primitive slot id tagged with the System.nanoTime() of the moment it was pressed.
+ * The producers (the EDT, the network server or the AI thread, possibly at once: a computer player still has keys)
+ * never block, lock or allocate: when the ring is full the press is dropped and counted.
+ *
+ * @inv 0 <= size() <= capacity
+ */
+public class KeyPressRing {
+
+    /**
+     * Returned by poll() when the ring is empty.
+     */
+    public static final int EMPTY = -1;
+
+    /**
+     * The maximal number of presses waiting in the ring.
+     */
+    private final int capacity;
+
+    private final int mask;
+    private final int[] slots;
+    private final long[] pressNanos;
+
+    /**
+     * Per cell: position + 1 once the press of that position is written (so the consumer never reads a cell that a
+     * producer claimed but did not fill yet).
+     */
+    private final AtomicLongArray written;
+
+    /**
+     * The index of the next press to be read (written only by the consumer).
+     */
+    private final AtomicLong head = new AtomicLong();
+
+    /**
+     * The index of the next press to be written (claimed by the producers with a CAS).
+     */
+    private final AtomicLong tail = new AtomicLong();
+
+    /**
+     * Producer side counters.
+     */
+    private final AtomicLong offered = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+    private final AtomicInteger highWaterMark = new AtomicInteger();
+
+    /**
+     * The press time of the last press returned by poll() (consumer only).
+     */
+    private long polledNanos;
+
+    /**
+     * @param capacity - the maximal number of presses waiting in the ring.
+     */
+    public KeyPressRing(int capacity) {
+        if (capacity <= 0) throw new IllegalArgumentException("capacity must be positive: " + capacity);
+        this.capacity = capacity;
+        int length = Integer.highestOneBit(capacity);
+        if (length < capacity) length <<= 1;
+        mask = length - 1;
+        slots = new int[length];
+        pressNanos = new long[length];
+        written = new AtomicLongArray(length);
+    }
+
+    /**
+     * Called by the producers (any thread).
+     *
+     * @param slot       - the slot that was pressed.
+     * @param pressNanos - System.nanoTime() of the press.
+     * @return - true iff the press was queued, false if it was dropped since the ring is full.
+     */
+    public boolean offer(int slot, long pressNanos) {
+        offered.incrementAndGet();
+        long t;
+        int occupancy;
+        do {
+            t = tail.get();
+            occupancy = (int) (t - head.get());
+            if (occupancy >= capacity) {
+                dropped.incrementAndGet();
+                return false;
+            }
+        } while (!tail.compareAndSet(t, t + 1));
+        // the cell is free: the consumer moved past it (capacity <= cells) before head allowed the claim
+        int index = (int) t & mask;
+        slots[index] = slot;
+        this.pressNanos[index] = pressNanos;
+        written.set(index, t + 1); // publishes the slot and the time stamp to the consumer
+        int high;
+        while (occupancy + 1 > (high = highWaterMark.get()) && !highWaterMark.compareAndSet(high, occupancy + 1)) ;
+        return true;
+    }
+
+    /**
+     * Called by the consumer only.
+     *
+     * @return - the oldest slot in the ring, or EMPTY if there is none. Its press time is available from polledNanos().
+     */
+    public int poll() {
+        long h = head.get();
+        int index = (int) h & mask;
+        if (written.get(index) != h + 1) return EMPTY; // none claimed, or not written yet
+        int slot = slots[index];
+        polledNanos = pressNanos[index];
+        head.lazySet(h + 1);
+        return slot;
+    }
+
+    /**
+     * Called by the consumer only.
+     *
+     * @return - the press time (System.nanoTime()) of the slot last returned by poll().
+     */
+    public long polledNanos() {
+        return polledNanos;
+    }
+
+    /**
+     * Discards all waiting presses. Called by the consumer only.
+     */
+    public void clear() {
+        while (poll() != EMPTY) ; // not by moving head: a producer may still be writing a claimed cell
+    }
+
+    /**
+     * @return - true iff there is no press ready for poll() (called by the consumer).
+     */
+    public boolean isEmpty() {
+        long h = head.get();
+        return written.get((int) h & mask) != h + 1;
+    }
+
+    /**
+     * @return - the number of presses currently waiting in the ring.
+     */
+    public int size() {
+        long h = head.get();
+        return (int) Math.min(capacity, Math.max(0, tail.get() - h));
+    }
+
+    public int remainingCapacity() {
+        return capacity - size();
+    }
+
+    /**
+     * @return - the total number of presses offered to the ring.
+     */
+    public long offered() {
+        return offered.get();
+    }
+
+    /**
+     * @return - the number of presses dropped since the ring was full.
+     */
+    public long dropped() {
+        return dropped.get();
+    }
+
+    /**
+     * @return - the maximal number of presses that were waiting in the ring at once.
+     */
+    public int highWaterMark() {
+        return highWaterMark.get();
+    }
+}
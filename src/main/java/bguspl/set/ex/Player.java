@@ -1,7 +1,10 @@
 package bguspl.set.ex;
 
-import java.util.concurrent.ArrayBlockingQueue;
 import bguspl.set.Env;
+import bguspl.set.RandomStreams;
+
+import java.util.SplittableRandom;
+import java.util.logging.Level;
 
 /**
  * This class manages the players' threads and data
@@ -29,12 +32,12 @@ public class Player implements Runnable {
     /**
      * The thread representing the current player.
      */
-    private Thread playerThread;
+    private volatile Thread playerThread;
 
     /**
      * The thread of the AI (computer) player (an additional thread used to generate key presses).
      */
-    private Thread aiThread;
+    private volatile Thread aiThread;
 
     /**
      * True iff the player is human (not a computer player).
@@ -46,33 +49,32 @@ public class Player implements Runnable {
      */
     private volatile boolean terminate;
 
-    /**
-     * The current score of the player.
-     */
-    private int score;
-
-
     /**
      * The dealer of the game  
      */
     private Dealer dealer;
 
     /**
-     * The number of set the current player sent to check
+     * The score, claims, tokens and freeze time of the player (lock-free).
      */
-    private int numSetForCheck;
+    private final PlayerStats stats;
 
     
     /**
-     * The keys that pressed enter the queue (the queue has 3 cells)  
+     * The keys that pressed enter the queue (the queue has 3 cells), each tagged with its press time
      */
-    protected ArrayBlockingQueue<Integer> playerPressesQueue;
+    protected final KeyPressRing playerPressesQueue;
 
+    /**
+     * The press time (System.nanoTime()) of the key press the player thread currently acts on
+     */
+    private long lastPressNanos;
 
     /**
-     * The current number of tokens that the player holds (initiallizing with env.config.featureSize) 
+     * The time stamps and latency histograms of the player's claims
      */
-    private int tokensCounter;
+    private final ClaimLatency claimLatency = new ClaimLatency();
+
 
     /**
      * true iff the player claimed a false set
@@ -95,11 +97,9 @@ public class Player implements Runnable {
         this.id = id;
         this.human = human;
         this.dealer = dealer;
-        tokensCounter = env.config.featureSize;
-        playerPressesQueue = new ArrayBlockingQueue<>(3);
-        score = 0;
+        stats = new PlayerStats(env.config.featureSize);
+        playerPressesQueue = new KeyPressRing(3);
         inFreeze = 0; 
-        numSetForCheck=0;
 
     }
 
@@ -111,11 +111,12 @@ public class Player implements Runnable {
         playerThread = Thread.currentThread();
         env.logger.info("Thread " + Thread.currentThread().getName() + " starting.");
         if (!human) createArtificialIntelligence();
-        // main running loop of player:
+        // main running loop of player (parks while there are no key presses, keyPressed() unparks it):
         while (!terminate) {
             if (!playerPressesQueue.isEmpty()){
                 pressToAct();
             }
+            else env.clock.park();
         }
         // closing/terminating computer-thread if exists:
         if (!human){
@@ -135,13 +136,14 @@ public class Player implements Runnable {
      */
     private void createArtificialIntelligence() {
         // note: this is a very, very smart AI (!)
-        aiThread = new Thread(() -> {
+        SplittableRandom random = RandomStreams.player(env.config.seed, id); // used by the ai thread only
+        aiThread = env.clock.newThread(() -> {
             env.logger.info("Thread " + Thread.currentThread().getName() + " starting.");
             while (!terminate) {
-                int randomSlot = (int)(Math.random() * env.config.tableSize);
+                int randomSlot = random.nextInt(env.config.tableSize);
                 keyPressed(randomSlot);
                 try {
-                    synchronized (this) { wait(5); }
+                    synchronized (this) { env.clock.waitOn(this, 5); }
                 } catch (InterruptedException ignored) {}
             }
             env.logger.info("Thread " + Thread.currentThread().getName() + " terminated. end of aiThread::lambda");
@@ -154,10 +156,11 @@ public class Player implements Runnable {
      */
     public void terminate() {
         terminate = true;
-        if(!human){
-            aiThread.interrupt();
+        Thread ai = aiThread, player = playerThread; // null if the threads did not start yet
+        if(!human && ai != null){
+            ai.interrupt();
         }
-        playerThread.interrupt();
+        if(player != null) player.interrupt();
     }
 
     /**
@@ -166,36 +169,57 @@ public class Player implements Runnable {
      * @param slot - the slot corresponding to the key pressed.
      */
     public void keyPressed(int slot) {
-        playerPressesQueue.offer(slot);
+        keyPressed(slot, System.nanoTime());
+    }
+
+    /**
+     * Pushes a time stamped key press to the player presses ring and wakes up the player thread. Never blocks, locks
+     * or allocates; presses that arrive while the ring is full are dropped and counted.
+     *
+     * @param slot       - the slot corresponding to the key pressed.
+     * @param pressNanos - System.nanoTime() at the moment the key was pressed.
+     * @return - true iff the press was queued, false if it was dropped.
+     */
+    public boolean keyPressed(int slot, long pressNanos) {
+        boolean queued = playerPressesQueue.offer(slot, pressNanos);
+        Thread thread = playerThread;
+        if (thread != null) env.clock.unpark(thread);
+        return queued;
     }
 
     /**
      * Pulls a key-press from player-queue and acts.
      */
     public void pressToAct() {
-        Integer slotNumFromQueue = playerPressesQueue.poll(); //can be null if the queue is empty
-        if (slotNumFromQueue == null){
+        int slotNumFromQueue = playerPressesQueue.poll(); //can be EMPTY if the queue is empty
+        if (slotNumFromQueue == KeyPressRing.EMPTY){
             env.logger.warning("we pulled from queue but the queue was empty");
             return;
         }
-        if(tokensCounter == 0 && table.tokensArray[slotNumFromQueue][id] == false){ // already used all tokens and tries to add another one.
+        long actNanos = System.nanoTime();
+        lastPressNanos = playerPressesQueue.polledNanos();
+        if (env.logger.isLoggable(Level.FINEST))
+            env.logger.finest("player " + (id+1) + " acts on slot " + slotNumFromQueue + " pressed " + (actNanos - lastPressNanos) / 1000 + "us ago");
+        if(stats.tokens() == 0 && table.tokensArray[slotNumFromQueue][id] == false){ // already used all tokens and tries to add another one.
                 return;
         }
         boolean currentlyTokenPlaced;
+        long lockRequested = System.nanoTime();
         synchronized(table){
+            table.lockAcquired(lockRequested);
             if(table.slotToCard[slotNumFromQueue] == null) { // trying to place token on empty slot
                 return;
             }
             currentlyTokenPlaced = table.flipToken(id, slotNumFromQueue);
         }
         if (currentlyTokenPlaced){ // player placed a token
-            tokensCounter--;
-            if (tokensCounter == 0){ //player placed his last token
+            if (stats.takeToken() == 0){ //player placed his last token
+                claimLatency.pressed(lastPressNanos, actNanos);
                 PlacedThirdToken();
             }   
         }
         else{ // player removed a token
-            tokensCounter++;
+            stats.returnToken();
         }       
     }
 
@@ -204,19 +228,26 @@ public class Player implements Runnable {
      */
     synchronized private void PlacedThirdToken(){
         setClaimed();
+        env.events.claimSubmitted(id);
         dealer.playerClaimSet(id);
-        try { wait(); } 
+        try { env.clock.waitOn(this, 0); } 
         catch (InterruptedException interruptedException) {Thread.currentThread().interrupt();}
 
+        long freeze = inFreeze;
+        if (freeze > 0) env.events.freezeStarted(id, freeze);
         try {
             for(long time = inFreeze ;  time >= 1000 ; time -= 1000){
                 env.ui.setFreeze(id,time);
-                wait(1000);
+                claimLatency.shown(System.nanoTime()); // records the claim only the first time
+                env.clock.waitOn(this, 1000);
             }
             env.ui.setFreeze(id,0);
+            claimLatency.shown(System.nanoTime());
         } 
         catch (InterruptedException interruptedException) { Thread.currentThread().interrupt(); }
 
+        if (freeze > 0) env.events.freezeEnded(id);
+        stats.addFreeze(inFreeze);
         inFreeze = 0;  
         playerPressesQueue.clear();
     }
@@ -227,17 +258,38 @@ public class Player implements Runnable {
      * @post - the player's score is increased by 1.
      * @post - the player's score is updated in the ui.
      */
-    synchronized public void point() {
+    public void point() {
         int ignored = table.countCards(); // this part is just for demonstration in the unit tests
-        env.ui.setScore(id, ++score);
+        int score = stats.point();
+        env.ui.setScore(id, score);
+        env.events.scoreChanged(id, score);
         penalty(env.config.pointFreezeMillis);
     }
 
+    /**
+     * Restores the statistics of the player from a checkpoint, before the player thread starts.
+     *
+     * @param snapshot     - the statistics in the checkpoint.
+     * @param placedTokens - the number of tokens the player has on the table.
+     */
+    void restore(PlayerStats.Snapshot snapshot, int placedTokens) {
+        stats.restore(new PlayerStats.Snapshot(snapshot.score, snapshot.claims, snapshot.falseClaims,
+                env.config.featureSize - placedTokens, snapshot.freezeMillis));
+        env.ui.setScore(id, snapshot.score);
+    }
+
     /**
      * increases the number of set the player claimed by one.
      */
-    synchronized public void setClaimed() {
-        numSetForCheck++;
+    public void setClaimed() {
+        stats.claim();
+    }
+
+    /**
+     * Marks the last claimed set of the player as illegal.
+     */
+    public void falseClaim() {
+        stats.falseClaim();
     }
 
     /**
@@ -245,32 +297,67 @@ public class Player implements Runnable {
      */
     synchronized public void penalty(long millis) {
         inFreeze = millis;
-        notifyAll();
+        env.clock.notifyAll(this);
     }
 
     /**
      * returns the player's score
      */
     public int score() {
-        return score;
+        return stats.score();
     }
 
     /**
      * returns the number of tokens currently in the player's hands (not placed on the table).
      */
     public int getNumTokensHolding(){
-        return tokensCounter;
+        return stats.tokens();
     }
 
     public void returnToken(){
-        tokensCounter++;
+        int tokensCounter = stats.returnToken();
         if(tokensCounter > env.config.featureSize){
             env.logger.warning("token counter of player " + id + " is " + tokensCounter + ". It's more than he could hava.");
         }
     }
 
     public int numSetForCheck() {
-        return numSetForCheck;
+        return stats.claims();
+    }
+
+    /**
+     * returns the key presses ring of the player (for drop and occupancy counters).
+     */
+    public KeyPressRing presses() {
+        return playerPressesQueue;
+    }
+
+    /**
+     * returns true iff the player is human (not a computer player).
+     */
+    public boolean isHuman() {
+        return human;
+    }
+
+    /**
+     * returns true iff the player is currently frozen after a point or a penalty.
+     */
+    public boolean isFrozen() {
+        return inFreeze > 0;
+    }
+
+    /**
+     * returns the time stamps and latency histograms of the player's claims.
+     */
+    public ClaimLatency claimLatency() {
+        return claimLatency;
+    }
+
+    /**
+     * returns the lock-free statistics of the player (safe to read from any thread).
+     */
+    public PlayerStats stats() {
+        return stats;
     }
 
 }
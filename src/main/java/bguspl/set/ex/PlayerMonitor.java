@@ -0,0 +1,72 @@
+package bguspl.set.ex;
+
+import bguspl.set.Env;
+
+/**
+ * Exposes the live state of a player over JMX.
+ */
+public class PlayerMonitor implements PlayerMonitorMBean {
+
+    private final Env env;
+    private final Player player;
+
+    PlayerMonitor(Env env, Player player) {
+        this.env = env;
+        this.player = player;
+    }
+
+    @Override
+    public String getName() {
+        return env.config.playerNames[player.id];
+    }
+
+    @Override
+    public boolean isHuman() {
+        return player.isHuman();
+    }
+
+    @Override
+    public int getScore() {
+        return player.stats().score();
+    }
+
+    @Override
+    public int getClaims() {
+        return player.stats().claims();
+    }
+
+    @Override
+    public int getFalseClaims() {
+        return player.stats().falseClaims();
+    }
+
+    @Override
+    public int getTokens() {
+        return player.stats().tokens();
+    }
+
+    @Override
+    public boolean isFrozen() {
+        return player.isFrozen();
+    }
+
+    @Override
+    public long getTotalFreezeMillis() {
+        return player.stats().freezeMillis();
+    }
+
+    @Override
+    public int getKeyPressQueueDepth() {
+        return player.presses().size();
+    }
+
+    @Override
+    public long getKeyPressesDropped() {
+        return player.presses().dropped();
+    }
+
+    @Override
+    public long getClaimToVerdictP99Micros() {
+        return player.claimLatency().histogram(ClaimLatency.Stage.TOTAL).percentile(99) / 1000;
+    }
+}
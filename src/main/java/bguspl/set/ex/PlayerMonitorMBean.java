@@ -0,0 +1,47 @@
+package bguspl.set.ex;
+
+/**
+ * JMX management interface of a player (see PlayerMonitor).
+ */
+public interface PlayerMonitorMBean {
+
+    String getName();
+
+    boolean isHuman();
+
+    int getScore();
+
+    int getClaims();
+
+    int getFalseClaims();
+
+    /**
+     * @return - the number of tokens in the player's hands (not placed on the table).
+     */
+    int getTokens();
+
+    /**
+     * @return - true iff the player is currently frozen (after a point or a penalty).
+     */
+    boolean isFrozen();
+
+    /**
+     * @return - the total number of milliseconds the player was frozen for.
+     */
+    long getTotalFreezeMillis();
+
+    /**
+     * @return - the number of key presses waiting for the player thread.
+     */
+    int getKeyPressQueueDepth();
+
+    /**
+     * @return - the number of key presses dropped since the player's queue was full.
+     */
+    long getKeyPressesDropped();
+
+    /**
+     * @return - the 99th percentile of the time from the third key press until the player sees the verdict.
+     */
+    long getClaimToVerdictP99Micros();
+}
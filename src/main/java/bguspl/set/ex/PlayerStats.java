@@ -0,0 +1,191 @@
+package bguspl.set.ex;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Lock-free bookkeeping of a single player (score, claims, tokens and freeze time).
+ * Any thread may update or read the counters without taking the player's monitor.
+ *
+ * @inv score() >= 0
+ * @inv claims() >= falseClaims()
+ */
+public class PlayerStats {
+
+    /**
+     * The current score of the player.
+     */
+    private final AtomicInteger score = new AtomicInteger();
+
+    /**
+     * The number of sets the player sent to the dealer for checking.
+     */
+    private final AtomicInteger claims = new AtomicInteger();
+
+    /**
+     * The number of claims the dealer found to be illegal sets.
+     */
+    private final AtomicInteger falseClaims = new AtomicInteger();
+
+    /**
+     * The number of tokens currently in the player's hands (not placed on the table).
+     */
+    private final AtomicInteger tokens;
+
+    /**
+     * The total number of milliseconds the player was frozen for (points and penalties).
+     */
+    private final AtomicLong freezeMillis = new AtomicLong();
+
+    /**
+     * Write brackets used by snapshot(): a snapshot is consistent iff no write started after the last one finished.
+     */
+    private final AtomicLong writesStarted = new AtomicLong();
+    private final AtomicLong writesFinished = new AtomicLong();
+
+    /**
+     * @param tokens - the number of tokens the player starts with.
+     */
+    public PlayerStats(int tokens) {
+        this.tokens = new AtomicInteger(tokens);
+    }
+
+    /**
+     * An immutable, consistent view of the counters at some point in time.
+     */
+    public static class Snapshot {
+        public final int score;
+        public final int claims;
+        public final int falseClaims;
+        public final int tokens;
+        public final long freezeMillis;
+
+        Snapshot(int score, int claims, int falseClaims, int tokens, long freezeMillis) {
+            this.score = score;
+            this.claims = claims;
+            this.falseClaims = falseClaims;
+            this.tokens = tokens;
+            this.freezeMillis = freezeMillis;
+        }
+
+        @Override
+        public String toString() {
+            return "score=" + score + " claims=" + claims + " falseClaims=" + falseClaims
+                    + " tokens=" + tokens + " freezeMillis=" + freezeMillis;
+        }
+    }
+
+    /**
+     * Reads all counters without locking. Retries while a concurrent update is in flight.
+     *
+     * @return - a consistent snapshot of the counters.
+     */
+    public Snapshot snapshot() {
+        while (true) {
+            long finished = writesFinished.get();
+            long started = writesStarted.get();
+            if (started == finished) {
+                Snapshot snapshot = new Snapshot(score.get(), claims.get(), falseClaims.get(), tokens.get(), freezeMillis.get());
+                if (writesStarted.get() == started) return snapshot;
+            }
+            Thread.yield();
+        }
+    }
+
+    /**
+     * Sets all the counters (e.g. to those of a resumed game).
+     * @param snapshot - the counters to set.
+     */
+    void restore(Snapshot snapshot) {
+        writesStarted.incrementAndGet();
+        score.set(snapshot.score);
+        claims.set(snapshot.claims);
+        falseClaims.set(snapshot.falseClaims);
+        tokens.set(snapshot.tokens);
+        freezeMillis.set(snapshot.freezeMillis);
+        writesFinished.incrementAndGet();
+    }
+
+    /**
+     * Increases the score by one.
+     * @return - the new score.
+     */
+    public int point() {
+        writesStarted.incrementAndGet();
+        int newScore = score.incrementAndGet();
+        writesFinished.incrementAndGet();
+        return newScore;
+    }
+
+    /**
+     * Increases the number of claimed sets by one.
+     * @return - the new number of claims.
+     */
+    public int claim() {
+        writesStarted.incrementAndGet();
+        int newClaims = claims.incrementAndGet();
+        writesFinished.incrementAndGet();
+        return newClaims;
+    }
+
+    /**
+     * Increases the number of illegal claims by one.
+     */
+    public void falseClaim() {
+        writesStarted.incrementAndGet();
+        falseClaims.incrementAndGet();
+        writesFinished.incrementAndGet();
+    }
+
+    /**
+     * Takes a token from the player's hands.
+     * @return - the number of tokens left in the player's hands.
+     */
+    public int takeToken() {
+        writesStarted.incrementAndGet();
+        int left = tokens.decrementAndGet();
+        writesFinished.incrementAndGet();
+        return left;
+    }
+
+    /**
+     * Returns a token to the player's hands.
+     * @return - the number of tokens in the player's hands.
+     */
+    public int returnToken() {
+        writesStarted.incrementAndGet();
+        int left = tokens.incrementAndGet();
+        writesFinished.incrementAndGet();
+        return left;
+    }
+
+    /**
+     * Adds freeze time to the total.
+     * @param millis - the freeze time in milliseconds.
+     */
+    public void addFreeze(long millis) {
+        writesStarted.incrementAndGet();
+        freezeMillis.addAndGet(millis);
+        writesFinished.incrementAndGet();
+    }
+
+    public int score() {
+        return score.get();
+    }
+
+    public int claims() {
+        return claims.get();
+    }
+
+    public int falseClaims() {
+        return falseClaims.get();
+    }
+
+    public int tokens() {
+        return tokens.get();
+    }
+
+    public long freezeMillis() {
+        return freezeMillis.get();
+    }
+}
@@ -1,6 +1,8 @@
 package bguspl.set.ex;
 
 import bguspl.set.Env;
+import bguspl.set.LatencyHistogram;
+import bguspl.set.UserInterface;
 
 import java.util.Arrays;
 import java.util.List;
@@ -35,6 +37,11 @@ public class Table {
      */
     protected final boolean[][] tokensArray; 
 
+    /**
+     * The time the dealer and the players waited to lock the table (in nanoseconds).
+     */
+    private final LatencyHistogram lockWait = new LatencyHistogram();
+
     /**
      * Constructor for testing.
      *
@@ -86,6 +93,73 @@ public class Table {
         return cards;
     }
 
+    /**
+     * Records the time it took to lock the table. Should be called first thing inside synchronized(table).
+     * @param requestedNanos - System.nanoTime() right before trying to lock the table.
+     */
+    void lockAcquired(long requestedNanos) {
+        lockWait.record(System.nanoTime() - requestedNanos);
+    }
+
+    /**
+     * @return - the histogram of the time it took to lock the table.
+     */
+    public LatencyHistogram lockWait() {
+        return lockWait;
+    }
+
+    /**
+     * Describes the table state, one line per slot: the card in it and the players that have a token on it.
+     * @return - the description.
+     */
+    synchronized public String describe() {
+        StringBuilder sb = new StringBuilder();
+        for (int slot = 0; slot < slotToCard.length; slot++) {
+            sb.append("slot ").append(slot).append(": ");
+            if (slotToCard[slot] == null) sb.append("empty");
+            else sb.append("card ").append(slotToCard[slot]).append(' ').append(Arrays.toString(env.util.cardToFeatures(slotToCard[slot])));
+            for (int player = 0; player < tokensArray[slot].length; player++)
+                if (tokensArray[slot][player]) sb.append(" token:").append(player + 1);
+            sb.append(System.lineSeparator());
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Shows the current table state on another user interface (e.g. of a viewer that joined in the middle of the game):
+     * places the cards and the tokens on it. The table is locked meanwhile, so no update is missed or reordered.
+     * @param ui - the user interface to update.
+     */
+    synchronized public void showTo(UserInterface ui) {
+        for (int slot = 0; slot < slotToCard.length; slot++) {
+            if (slotToCard[slot] == null) continue;
+            ui.placeCard(slotToCard[slot], slot);
+            for (int player = 0; player < tokensArray[slot].length; player++)
+                if (tokensArray[slot][player]) ui.placeToken(player, slot);
+        }
+    }
+
+    /**
+     * Places the cards and the tokens of a checkpoint on the (empty) table at once, with no table delay.
+     * @param slotCards - the card in each slot (-1 if none).
+     * @param tokens    - the tokens on each slot (bit per player).
+     */
+    synchronized void restore(int[] slotCards, long[] tokens) {
+        for (int slot = 0; slot < slotCards.length; slot++) {
+            if (slotCards[slot] < 0) continue;
+            cardToSlot[slotCards[slot]] = slot;
+            slotToCard[slot] = slotCards[slot];
+            env.ui.placeCard(slotCards[slot], slot);
+            env.events.cardDealt(slotCards[slot], slot);
+            for (int player = 0; player < tokensArray[slot].length; player++) {
+                if ((tokens[slot] & 1L << player) == 0) continue;
+                tokensArray[slot][player] = true;
+                env.ui.placeToken(player, slot);
+                env.events.tokenFlipped(player, slot, true);
+            }
+        }
+    }
+
     /**
      * Places a card on the table in a grid slot.
      * @param card - the card id to place in the slot.
@@ -95,13 +169,14 @@ public class Table {
      */
     synchronized public void placeCard(int card, int slot) {
         try {
-            Thread.sleep(env.config.tableDelayMillis);
+            env.clock.sleep(env.config.tableDelayMillis);
         } catch (InterruptedException ignored) {}
 
         cardToSlot[card] = slot;
         slotToCard[slot] = card;
 
         env.ui.placeCard(card, slot);
+        env.events.cardDealt(card, slot);
     }
 
     /**
@@ -111,12 +186,13 @@ public class Table {
      */
     synchronized public void removeCard(int slot) {
         try {
-            Thread.sleep(env.config.tableDelayMillis);
+            env.clock.sleep(env.config.tableDelayMillis);
         } catch (InterruptedException ignored) {}
         Integer cardToRemove = slotToCard[slot];
         slotToCard[slot] = null; 
         cardToSlot[cardToRemove] = null;
         env.ui.removeCard(slot);
+        env.events.cardRemoved(cardToRemove, slot);
     }
 
     /**
@@ -130,6 +206,7 @@ public class Table {
         if (!isPlaced){ 
             tokensArray[slot][player] = true;
             env.ui.placeToken(player, slot);    
+            env.events.tokenFlipped(player, slot, true);
             return true;
         }
         return false;
@@ -146,6 +223,7 @@ public class Table {
         if (isPlaced){
             tokensArray[slot][player] = false;
             env.ui.removeToken(player, slot);
+            env.events.tokenFlipped(player, slot, false);
             return true;
         }
         return false;
@@ -162,11 +240,13 @@ public class Table {
         if (isPlaced){ //removing a token 
             tokensArray[slot][player] = false;
             env.ui.removeToken(player, slot);
+            env.events.tokenFlipped(player, slot, false);
             return false;
         }
         else{ //adding a token 
             tokensArray[slot][player] = true;
             env.ui.placeToken(player, slot);
+            env.events.tokenFlipped(player, slot, true);
             return true;
         }
     }
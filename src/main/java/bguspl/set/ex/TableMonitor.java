@@ -0,0 +1,61 @@
+package bguspl.set.ex;
+
+import bguspl.set.Env;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Objects;
+import java.util.stream.Collectors;
+
+/**
+ * Exposes the live state of the table over JMX.
+ */
+public class TableMonitor implements TableMonitorMBean {
+
+    private final Env env;
+    private final Table table;
+
+    TableMonitor(Env env, Table table) {
+        this.env = env;
+        this.table = table;
+    }
+
+    @Override
+    public int getCardsOnTable() {
+        return table.countCards();
+    }
+
+    @Override
+    public int getSetsOnTable() {
+        // a racy copy is good enough for monitoring and does not hold up the game threads
+        List<Integer> cards = Arrays.stream(table.slotToCard.clone()).filter(Objects::nonNull).collect(Collectors.toList());
+        return env.util.findSets(cards, Integer.MAX_VALUE).size();
+    }
+
+    @Override
+    public long getLockAcquisitions() {
+        return table.lockWait().count();
+    }
+
+    @Override
+    public double getLockWaitMeanMicros() {
+        return table.lockWait().mean() / 1000;
+    }
+
+    @Override
+    public long getLockWaitP99Micros() {
+        return table.lockWait().percentile(99) / 1000;
+    }
+
+    @Override
+    public long getLockWaitMaxMicros() {
+        return table.lockWait().max() / 1000;
+    }
+
+    @Override
+    public String dumpTableState() {
+        synchronized (table) {
+            return table.describe();
+        }
+    }
+}
@@ -0,0 +1,34 @@
+package bguspl.set.ex;
+
+/**
+ * JMX management interface of the table (see TableMonitor).
+ */
+public interface TableMonitorMBean {
+
+    /**
+     * @return - the number of cards currently on the table.
+     */
+    int getCardsOnTable();
+
+    /**
+     * @return - the number of legal sets currently on the table.
+     */
+    int getSetsOnTable();
+
+    /**
+     * @return - the number of times the dealer and the players locked the table.
+     */
+    long getLockAcquisitions();
+
+    /**
+     * @return - the time the dealer and the players waited for the table lock, in microseconds.
+     */
+    double getLockWaitMeanMicros();
+    long getLockWaitP99Micros();
+    long getLockWaitMaxMicros();
+
+    /**
+     * @return - a description of every slot: its card and the players that have a token on it.
+     */
+    String dumpTableState();
+}
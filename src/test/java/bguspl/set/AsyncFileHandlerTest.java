@@ -0,0 +1,121 @@
+package bguspl.set;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.CountDownLatch;
+import java.util.logging.Formatter;
+import java.util.logging.Level;
+import java.util.logging.LogRecord;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class AsyncFileHandlerTest {
+
+    @TempDir
+    Path directory;
+
+    /**
+     * Formats a record as its message on a line, holding the writer thread on the record "stall" until released.
+     */
+    private static class StallingFormatter extends Formatter {
+        final CountDownLatch release = new CountDownLatch(1);
+
+        @Override
+        public String format(LogRecord record) {
+            if (record.getMessage().equals("stall")) {
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            return record.getMessage() + System.lineSeparator();
+        }
+    }
+
+    private static LogRecord record(String message) {
+        return new LogRecord(Level.INFO, message);
+    }
+
+    private String contents(Path path) throws IOException {
+        return new String(Files.readAllBytes(path), StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Publishes "stall" and waits until the writer thread took it, so the ring is empty and the writer is held.
+     */
+    private static void stall(AsyncFileHandler handler) {
+        handler.publish(record("stall"));
+        while (handler.backlog() > 0) Thread.yield();
+    }
+
+    @Test
+    void flushWaitsUntilTheRecordIsInTheFile() throws IOException {
+        Path path = directory.resolve("flush.log");
+        AsyncFileHandler handler = new AsyncFileHandler(path, 16, AsyncFileHandler.OverflowPolicy.BLOCK);
+        handler.setFormatter(new StallingFormatter());
+        try {
+            for (int i = 0; i < 100; i++) {
+                handler.publish(record("record " + i));
+                handler.flush();
+                assertTrue(contents(path).contains("record " + i + System.lineSeparator()));
+            }
+            assertEquals(100, handler.written());
+        } finally {
+            handler.close();
+        }
+    }
+
+    @Test
+    void dropsWhenFullAndSaysSo() throws IOException {
+        Path path = directory.resolve("drop.log");
+        AsyncFileHandler handler = new AsyncFileHandler(path, 2, AsyncFileHandler.OverflowPolicy.DROP);
+        StallingFormatter formatter = new StallingFormatter();
+        handler.setFormatter(formatter);
+        stall(handler);
+        handler.publish(record("a"));
+        handler.publish(record("b"));
+        handler.publish(record("c")); // the ring is full
+        assertEquals(1, handler.dropped());
+
+        formatter.release.countDown();
+        handler.close();
+        String log = contents(path);
+        assertTrue(log.contains("a" + System.lineSeparator()));
+        assertTrue(log.contains("b" + System.lineSeparator()));
+        assertFalse(log.contains("c" + System.lineSeparator()));
+        assertTrue(log.contains("[log] 1 records were dropped"));
+        assertEquals(3, handler.written());
+    }
+
+    @Test
+    void blocksWhenFullAndLosesNothing() throws IOException, InterruptedException {
+        Path path = directory.resolve("block.log");
+        AsyncFileHandler handler = new AsyncFileHandler(path, 2, AsyncFileHandler.OverflowPolicy.BLOCK);
+        StallingFormatter formatter = new StallingFormatter();
+        handler.setFormatter(formatter);
+        stall(handler);
+        handler.publish(record("a"));
+        handler.publish(record("b"));
+        Thread publisher = new Thread(() -> handler.publish(record("c")));
+        publisher.start();
+        publisher.join(200);
+        assertTrue(publisher.isAlive()); // waits for room
+
+        formatter.release.countDown();
+        publisher.join();
+        handler.close();
+        String log = contents(path);
+        assertTrue(log.contains("a" + System.lineSeparator() + "b" + System.lineSeparator() + "c" + System.lineSeparator()));
+        assertEquals(0, handler.dropped());
+        assertFalse(log.contains("[log]"));
+        assertEquals(4, handler.written());
+    }
+}
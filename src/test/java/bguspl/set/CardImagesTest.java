@@ -0,0 +1,84 @@
+package bguspl.set;
+
+import org.junit.jupiter.api.Test;
+
+import java.awt.*;
+import java.util.Properties;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class CardImagesTest {
+
+    private static Config config(int cellWidth) {
+        return config(cellWidth, 3, 4);
+    }
+
+    private static Config config(int cellWidth, int featureSize, int featureCount) {
+        Properties properties = new Properties();
+        properties.setProperty("CellWidth", Integer.toString(cellWidth));
+        properties.setProperty("FeatureSize", Integer.toString(featureSize));
+        properties.setProperty("FeatureCount", Integer.toString(featureCount));
+        return new Config(Logger.getAnonymousLogger(), properties);
+    }
+
+    @Test
+    void imagesAreScaledAndShared() {
+        Config config = config(100);
+        CardImages images = CardImages.of(config);
+        assertSame(images, CardImages.of(config(100)));
+        assertNotSame(images, CardImages.of(config(120)));
+
+        for (int card = 0; card < config.deckSize; card++) {
+            Image image = images.card(card);
+            assertEquals(100, image.getWidth(null));
+            assertEquals(config.cellHeight, image.getHeight(null));
+        }
+        assertSame(images.card(5), images.card(5));
+        assertEquals(100, images.emptyCard().getWidth(null));
+        assertFalse(images.isRendered());
+    }
+
+    @Test
+    void largerDecksAreDrawnInTheBackground() throws InterruptedException {
+        Config config = config(90, 4, 5); // 1024 cards of 5 features, beyond the bundled images
+        CardImages images = CardImages.of(config);
+        assertTrue(images.isRendered());
+
+        CountDownLatch ready = new CountDownLatch(1);
+        Image image = images.card(1000, ready::countDown);
+        if (image == null) assertTrue(ready.await(5, TimeUnit.SECONDS));
+        image = images.card(1000, () -> {});
+        assertNotNull(image);
+        assertEquals(90, image.getWidth(null));
+        assertSame(image, images.card(1000));
+    }
+
+    @Test
+    void sizedImagesArePreparedOnRequestAndCancelled() throws InterruptedException {
+        Config config = config(100);
+        CardImages images = CardImages.sized(config, 40, 30);
+        assertFalse(images.isRendered());
+        assertEquals(0, images.requested()); // the bundled deck is not decoded up front
+        assertNull(images.ready(7));
+
+        CountDownLatch ready = new CountDownLatch(1);
+        if (images.card(7, ready::countDown) == null) assertTrue(ready.await(5, TimeUnit.SECONDS));
+        assertEquals(40, images.ready(7).getWidth(null));
+        assertEquals(1, images.requested());
+        CountDownLatch emptyReady = new CountDownLatch(1);
+        if (images.emptyCard(emptyReady::countDown) == null) assertTrue(emptyReady.await(5, TimeUnit.SECONDS));
+        assertEquals(30, images.emptyCard(null).getHeight(null));
+
+        images.cancel();
+        assertNotNull(images.ready(7)); // what was ready stays ready
+    }
+}
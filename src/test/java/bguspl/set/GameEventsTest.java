@@ -0,0 +1,66 @@
+package bguspl.set;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoMoreInteractions;
+
+class GameEventsTest {
+
+    private static void fire(GameEvents events, int[] deck) {
+        events.cardDealt(7, 1);
+        events.cardRemoved(7, 1);
+        events.tokenFlipped(2, 3, true);
+        events.claimSubmitted(2);
+        events.claimVerified(2, false, 1000);
+        events.reshuffle(12);
+        events.scoreChanged(1, 4);
+        events.freezeStarted(1, 3000);
+        events.freezeEnded(1);
+        events.findSets(12, 1, 1, 500);
+        events.gameResumed(new int[]{2, 0}, deck);
+        events.gameEnded(0, deck);
+    }
+
+    @Test
+    void bothFansOutEveryEvent() {
+        GameEvents first = mock(GameEvents.class);
+        GameEvents second = mock(GameEvents.class);
+        int[] deck = {3, 5};
+        fire(GameEvents.both(first, second), deck);
+        for (GameEvents events : new GameEvents[]{first, second}) {
+            verify(events).cardDealt(7, 1);
+            verify(events).cardRemoved(7, 1);
+            verify(events).tokenFlipped(2, 3, true);
+            verify(events).claimSubmitted(2);
+            verify(events).claimVerified(2, false, 1000);
+            verify(events).reshuffle(12);
+            verify(events).scoreChanged(1, 4);
+            verify(events).freezeStarted(1, 3000);
+            verify(events).freezeEnded(1);
+            verify(events).findSets(12, 1, 1, 500);
+            verify(events).gameResumed(new int[]{2, 0}, deck);
+            verify(events).gameEnded(0, deck);
+            verifyNoMoreInteractions(events);
+        }
+    }
+
+    @Test
+    void noneIsANoOpAndIsSkippedByBoth() {
+        fire(GameEvents.NONE, new int[0]);
+        GameEvents events = mock(GameEvents.class);
+        assertSame(events, GameEvents.both(GameEvents.NONE, events));
+        assertSame(events, GameEvents.both(events, GameEvents.NONE));
+        assertSame(GameEvents.NONE, GameEvents.both(GameEvents.NONE, GameEvents.NONE));
+    }
+
+    @Test
+    void flightRecorderEventsAreSafeToFire() {
+        GameEvents events = GameEvents.flightRecorderOrNone();
+        assertNotNull(events);
+        fire(events, new int[]{1}); // not recording: the events are dropped
+    }
+}
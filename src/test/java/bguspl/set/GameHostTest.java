@@ -0,0 +1,42 @@
+package bguspl.set;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Properties;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class GameHostTest {
+
+    private static GameHost host() {
+        Properties properties = new Properties();
+        properties.setProperty("HumanPlayers", "2");
+        properties.setProperty("ComputerPlayers", "0");
+        properties.setProperty("TableDelaySeconds", "0");
+        properties.setProperty("LogLevel", Level.OFF.getName());
+        properties.setProperty("Seed", "5");
+        return new GameHost(properties, Logger.getAnonymousLogger());
+    }
+
+    @Test
+    void gamesAreIsolatedAndClosedWithTheirThreads() throws InterruptedException {
+        try (GameHost host = host()) {
+            int first = host.open();
+            int second = host.open();
+            assertEquals(2, host.size());
+            assertNotSame(host.game(first).env(), host.game(second).env());
+            assertNotSame(host.game(first).table(), host.game(second).table());
+            assertTrue(host.game(first).isRunning());
+
+            assertTrue(host.close(first));
+            assertNull(host.game(first));
+            assertEquals(1, host.size());
+            assertTrue(host.game(second).isRunning());
+        }
+    }
+}
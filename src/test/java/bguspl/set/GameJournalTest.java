@@ -0,0 +1,139 @@
+package bguspl.set;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Properties;
+import java.util.logging.Logger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class GameJournalTest {
+
+    @TempDir
+    Path directory;
+
+    Config config;
+
+    @BeforeEach
+    void setUp() {
+        config = new Config(Logger.getAnonymousLogger(), new Properties());
+    }
+
+    @Test
+    void readsBackWhatWasWritten() throws IOException {
+        Path path = directory.resolve("game.journal");
+        try (GameJournal journal = new GameJournal(path, config, 42)) {
+            journal.cardDealt(17, 3);
+            journal.tokenFlipped(1, 3, true);
+            journal.claimVerified(1, true, 1234);
+            journal.scoreChanged(1, 5);
+        }
+
+        try (GameJournal.Reader reader = GameJournal.open(path)) {
+            assertEquals(42, reader.seed);
+            assertEquals(config.rows, reader.rows);
+            assertEquals(config.players, reader.players);
+
+            assertTrue(reader.next());
+            assertEquals(GameJournal.DEAL, reader.type());
+            assertEquals(17, reader.card());
+            assertEquals(3, reader.slot());
+
+            assertTrue(reader.next());
+            assertEquals(GameJournal.TOKEN, reader.type());
+            assertEquals(1, reader.player());
+            assertTrue(reader.flag());
+
+            assertTrue(reader.next());
+            assertEquals(GameJournal.VERDICT, reader.type());
+            assertEquals(1234, reader.value());
+
+            assertTrue(reader.next());
+            assertEquals(GameJournal.SCORE, reader.type());
+            assertEquals(5, reader.value());
+
+            assertFalse(reader.next());
+        }
+    }
+
+    @Test
+    void closeTruncatesTheFileToItsRecords() throws IOException {
+        Path path = directory.resolve("truncated.journal");
+        GameJournal journal = new GameJournal(path, config, 1);
+        for (int slot = 0; slot < 3; slot++) journal.cardDealt(slot, slot);
+        journal.close();
+        journal.cardRemoved(0, 0);
+        assertEquals(1, journal.lostRecords());
+        assertEquals(GameJournal.HEADER_SIZE + 3 * GameJournal.RECORD_SIZE, Files.size(path));
+
+        int records = 0;
+        try (GameJournal.Reader reader = GameJournal.open(path)) {
+            while (reader.next()) records++;
+        }
+        assertEquals(3, records);
+    }
+
+    @Test
+    void concurrentWritersDoNotLoseRecords() throws Exception {
+        Path path = directory.resolve("concurrent.journal");
+        int perThread = 10_000;
+        Thread[] writers = new Thread[4];
+        try (GameJournal journal = new GameJournal(path, config, 0)) {
+            for (int i = 0; i < writers.length; i++) {
+                int player = i;
+                writers[i] = new Thread(() -> {
+                    for (int j = 0; j < perThread; j++) journal.scoreChanged(player, j);
+                });
+                writers[i].start();
+            }
+            for (Thread writer : writers) writer.join();
+        }
+
+        long[] sums = new long[writers.length];
+        int records = 0;
+        try (GameJournal.Reader reader = GameJournal.open(path)) {
+            while (reader.next()) {
+                sums[reader.player()] += reader.value();
+                records++;
+            }
+        }
+        assertEquals(writers.length * perThread, records);
+        for (long sum : sums)
+            assertEquals((long) perThread * (perThread - 1) / 2, sum);
+    }
+
+    @Test
+    void closeWaitsForTheAppendsInProgress() throws Exception {
+        Path path = directory.resolve("closing.journal");
+        GameJournal journal = new GameJournal(path, config, 0);
+        int perThread = 200_000;
+        Thread[] writers = new Thread[3];
+        for (int i = 0; i < writers.length; i++) {
+            int player = i;
+            writers[i] = new Thread(() -> {
+                for (int j = 0; j < perThread; j++) journal.scoreChanged(player, j);
+            });
+            writers[i].start();
+        }
+        while (journal.records() < 1000) Thread.yield();
+        journal.close(); // while the writers append
+        for (Thread writer : writers) writer.join();
+
+        assertEquals(writers.length * perThread, journal.records() + journal.lostRecords());
+        int records = 0;
+        try (GameJournal.Reader reader = GameJournal.open(path)) {
+            while (reader.next()) {
+                assertEquals(GameJournal.SCORE, reader.type());
+                records++;
+            }
+        }
+        assertEquals(journal.records(), records);
+    }
+}
@@ -0,0 +1,87 @@
+package bguspl.set;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Properties;
+import java.util.logging.Logger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class HeadlessUserInterfaceTest {
+
+    private final Config config = new Config(Logger.getAnonymousLogger(), new Properties());
+
+    @Test
+    void keepsTheShownState() {
+        HeadlessUserInterface ui = new HeadlessUserInterface(config);
+        assertEquals(-1, ui.card(3));
+        assertEquals(-1, ui.timer());
+
+        ui.placeCard(17, 3);
+        ui.placeToken(0, 3);
+        ui.placeToken(1, 3);
+        ui.removeToken(0, 3);
+        ui.setScore(1, 2);
+        ui.setFreeze(1, 3000);
+        ui.setCountdown(4000, true);
+
+        assertEquals(17, ui.card(3));
+        assertArrayEquals(new long[]{0b10L}, ui.tokens(3));
+        assertEquals(2, ui.score(1));
+        assertEquals(3000, ui.freeze(1));
+        assertEquals(4000, ui.timer());
+        assertTrue(ui.warn());
+        assertFalse(ui.elapsed());
+
+        ui.removeTokens();
+        ui.removeCard(3);
+        ui.setElapsed(1234);
+        ui.announceWinner(new int[]{1});
+        assertArrayEquals(new long[]{0}, ui.tokens(3));
+        assertEquals(-1, ui.card(3));
+        assertEquals(1234, ui.timer());
+        assertTrue(ui.elapsed());
+        assertArrayEquals(new int[]{1}, ui.winners());
+    }
+
+    @Test
+    void countsTheCallsOfEveryMethod() {
+        HeadlessUserInterface ui = new HeadlessUserInterface();
+        assertFalse(ui.keepsState());
+        for (int slot = 0; slot < config.tableSize; slot++) ui.placeCard(slot, slot);
+        ui.placeToken(0, 0);
+        ui.removeTokens(0);
+        ui.dispose();
+
+        assertEquals(config.tableSize, ui.calls(HeadlessUserInterface.Method.PLACE_CARD));
+        assertEquals(1, ui.calls(HeadlessUserInterface.Method.PLACE_TOKEN));
+        assertEquals(1, ui.calls(HeadlessUserInterface.Method.REMOVE_TOKENS));
+        assertEquals(0, ui.calls(HeadlessUserInterface.Method.REMOVE_ALL_TOKENS));
+        assertEquals(config.tableSize + 3, ui.calls());
+        assertThrows(IllegalStateException.class, () -> ui.card(0));
+    }
+
+    @Test
+    void keepsTheTokensOfMoreThan64Players() {
+        Properties properties = new Properties();
+        properties.setProperty("HumanPlayers", "0");
+        properties.setProperty("ComputerPlayers", Integer.toString(Config.MAX_TOKEN_MASK_PLAYERS + 1));
+        Config many = new Config(Logger.getAnonymousLogger(), properties);
+        HeadlessUserInterface ui = new HeadlessUserInterface(many);
+        ui.placeToken(0, 3);
+        ui.placeToken(64, 3);
+        ui.placeToken(64, 4);
+        assertArrayEquals(new long[]{1, 1}, ui.tokens(3));
+        ui.removeToken(0, 3);
+        ui.removeTokens(4);
+        assertArrayEquals(new long[]{0, 1}, ui.tokens(3));
+        assertArrayEquals(new long[]{0, 0}, ui.tokens(4));
+
+        // the checkpoints keep a long per slot
+
+        properties.setProperty("CheckpointFile", "game.checkpoint");
+        assertThrows(IllegalArgumentException.class, () -> new Config(Logger.getAnonymousLogger(), properties));
+        properties.setProperty("ComputerPlayers", Integer.toString(Config.MAX_TOKEN_MASK_PLAYERS));
+        new Config(Logger.getAnonymousLogger(), properties);
+    }
+}
@@ -0,0 +1,40 @@
+package bguspl.set;
+
+import bguspl.set.ex.Player;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.util.Properties;
+import java.util.logging.Logger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class InputManagerTest {
+
+    @Mock
+    private Player player;
+
+    @Test
+    void dispatchesAndMeasuresKeyPresses() {
+        Config config = new Config(Logger.getAnonymousLogger(), new Properties()); // the default keys of 2 players
+        InputManager input = new InputManager(Logger.getAnonymousLogger(), config, new Player[]{player, null});
+        when(player.keyPressed(anyInt(), anyLong())).thenReturn(true, false);
+
+        input.dispatch(87, 0, System.nanoTime()); // player 1, slot 1
+        input.dispatch(87, Config.KEY_SHIFT, System.nanoTime());
+        input.dispatch(85, 0, System.nanoTime()); // player 2 does not exist yet
+        input.dispatch(1, 0, System.nanoTime());
+
+        verify(player, times(2)).keyPressed(eq(1), anyLong());
+        assertEquals(2, input.dispatched());
+        assertEquals(1, input.dropped());
+        assertEquals(2, input.unbound());
+        assertEquals(2, input.dispatchNanos().count());
+    }
+}
@@ -0,0 +1,61 @@
+package bguspl.set;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Properties;
+import java.util.logging.Logger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class KeyMapTest {
+
+    private static KeyMap keyMap(String keys1, String keys2) {
+        return keyMap(keys1, keys2, 2, 0);
+    }
+
+    private static KeyMap keyMap(String keys1, String keys2, int humans, int computers) {
+        Properties properties = new Properties();
+        properties.setProperty("Rows", "1");
+        properties.setProperty("Columns", "3");
+        properties.setProperty("HumanPlayers", Integer.toString(humans));
+        properties.setProperty("ComputerPlayers", Integer.toString(computers));
+        properties.setProperty("PlayerKeys1", keys1);
+        properties.setProperty("PlayerKeys2", keys2);
+        return new KeyMap(Logger.getAnonymousLogger(), new Config(Logger.getAnonymousLogger(), properties));
+    }
+
+    @Test
+    void mapsKeysAndChordsToPlayersAndSlots() {
+        KeyMap keys = keyMap("81,87,Ctrl+81", "Shift+81,Ctrl+Alt+87,300");
+
+        assertEquals(0 << 16 | 0, keys.lookup(81, 0));
+        assertEquals(0 << 16 | 2, keys.lookup(81, Config.KEY_CTRL));
+        assertEquals(1 << 16 | 0, keys.lookup(81, Config.KEY_SHIFT));
+        assertEquals(0 << 16 | 0, keys.lookup(81, Config.KEY_ALT)); // not bound: the plain key answers
+        assertEquals(1 << 16 | 1, keys.lookup(87, Config.KEY_CTRL | Config.KEY_ALT));
+        assertEquals(0 << 16 | 1, keys.lookup(87, Config.KEY_CTRL));
+        assertEquals(1, KeyMap.player(keys.lookup(300, 0)));
+        assertEquals(2, KeyMap.slot(keys.lookup(300, 0)));
+
+        assertEquals(KeyMap.NONE, keys.lookup(82, 0));
+        assertEquals(KeyMap.NONE, keys.lookup(0, 0));
+        assertEquals(KeyMap.NONE, keys.lookup(5000, 0));
+        assertEquals(KeyMap.NONE, keys.lookup(-1, 0));
+    }
+
+    @Test
+    void aKeyBoundTwiceKeepsItsFirstSlot() {
+        KeyMap keys = keyMap("81,87,69", "81,0,Shift+69");
+        assertEquals(0 << 16 | 0, keys.lookup(81, 0));
+        assertEquals(1 << 16 | 2, keys.lookup(69, Config.KEY_SHIFT));
+        assertThrows(IllegalArgumentException.class, () -> Config.parseKey("Hyper+81"));
+    }
+
+    @Test
+    void bindsTheKeysOfHumanPlayersOnly() {
+        KeyMap keys = keyMap("81,87,69", "65,83,68", 1, 1);
+        assertEquals(0 << 16 | 1, keys.lookup(87, 0));
+        assertEquals(KeyMap.NONE, keys.lookup(65, 0));
+        assertEquals(KeyMap.NONE, keys.lookup(83, Config.KEY_SHIFT));
+    }
+}
@@ -0,0 +1,66 @@
+package bguspl.set;
+
+import org.junit.jupiter.api.Test;
+
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.util.Properties;
+import java.util.logging.Logger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LargeGridViewTest {
+
+    private static Config largeConfig() {
+        Properties properties = new Properties();
+        properties.setProperty("Rows", "20");
+        properties.setProperty("Columns", "20");
+        properties.setProperty("FeatureSize", "3");
+        properties.setProperty("FeatureCount", "6");
+        properties.setProperty("HumanPlayers", "0");
+        properties.setProperty("ComputerPlayers", "40");
+        return new Config(Logger.getAnonymousLogger(), properties);
+    }
+
+    @Test
+    void paintsOnlyTheCellsInTheClip() {
+        Config config = largeConfig();
+        assertTrue(config.largeTable);
+        LargeGridView grid = new LargeGridView(config);
+        grid.setScale(0.25);
+        Dimension size = grid.getPreferredSize();
+        grid.setSize(size);
+        for (int slot = 0; slot < config.tableSize; slot++) grid.setSlot(slot, slot, new long[]{slot % 3 == 0 ? 1L << (slot % 40) : 0});
+
+        BufferedImage image = new BufferedImage(size.width, size.height, BufferedImage.TYPE_INT_ARGB);
+        Graphics2D g = image.createGraphics();
+        int cellWidth = size.width / config.columns;
+        int cellHeight = size.height / config.rows;
+        g.setClip(5 * cellWidth, 7 * cellHeight, 2 * cellWidth, 2 * cellHeight); // 2x2 cells, as a scrolled viewport
+        grid.paintComponent(g);
+        assertEquals(4, grid.paintedCells());
+
+        g.setClip(0, 0, size.width, size.height);
+        grid.paintComponent(g);
+        assertEquals(config.tableSize, grid.paintedCells());
+        g.dispose();
+    }
+
+    @Test
+    void scaleIsClamped() {
+        LargeGridView grid = new LargeGridView(largeConfig());
+        assertTrue(grid.scale() <= 1);
+        grid.setScale(100);
+        assertEquals(LargeGridView.MAX_SCALE, grid.scale());
+        grid.setScale(0);
+        assertEquals(LargeGridView.MIN_SCALE, grid.scale());
+    }
+
+    @Test
+    void keepsTheImagesOfTheLatestZoomLevels() {
+        Config config = largeConfig();
+        LargeGridView grid = new LargeGridView(config);
+        for (double scale = LargeGridView.MIN_SCALE; scale <= LargeGridView.MAX_SCALE; scale *= 1.25) grid.setScale(scale);
+        assertEquals(LargeGridView.LEVELS_KEPT, grid.imageLevels());
+    }
+}
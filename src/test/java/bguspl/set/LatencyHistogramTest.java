@@ -0,0 +1,61 @@
+package bguspl.set;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class LatencyHistogramTest {
+
+    LatencyHistogram histogram;
+
+    @BeforeEach
+    void setUp() {
+        histogram = new LatencyHistogram();
+    }
+
+    @Test
+    void smallValuesAreExact() {
+        for (int i = 1; i <= 50; i++)
+            histogram.record(i);
+
+        assertEquals(50, histogram.count());
+        assertEquals(25, histogram.percentile(50));
+        assertEquals(50, histogram.percentile(100));
+        assertEquals(50, histogram.max());
+    }
+
+    @Test
+    void largeValuesAreWithinPrecision() {
+        for (int i = 0; i < 99; i++)
+            histogram.record(1_000_000L);
+        histogram.record(50_000_000L);
+
+        long p50 = histogram.percentile(50);
+        assertTrue(Math.abs(p50 - 1_000_000L) <= 1_000_000L / 32, "p50 was " + p50);
+        assertEquals(50_000_000L, histogram.percentile(100));
+    }
+
+    @Test
+    void bucketsAreContiguous() {
+        for (long value = 0; value < 100_000; value++) {
+            int bucket = LatencyHistogram.bucketOf(value);
+            assertTrue(LatencyHistogram.highestValueOf(bucket) >= value);
+            assertTrue(bucket == 0 || LatencyHistogram.highestValueOf(bucket - 1) < value);
+        }
+    }
+
+    @Test
+    void merge() {
+        LatencyHistogram other = new LatencyHistogram();
+        histogram.record(10);
+        other.record(20);
+        other.record(30);
+        histogram.add(other);
+
+        assertEquals(3, histogram.count());
+        assertEquals(30, histogram.max());
+        assertEquals(20.0, histogram.mean());
+    }
+}
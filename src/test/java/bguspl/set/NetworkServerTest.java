@@ -0,0 +1,109 @@
+package bguspl.set;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.util.Properties;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class NetworkServerTest {
+
+    private NetworkServer server;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        Properties properties = new Properties();
+        properties.setProperty("HumanPlayers", "2");
+        properties.setProperty("ComputerPlayers", "0");
+        properties.setProperty("TableDelaySeconds", "0");
+        properties.setProperty("LogLevel", Level.OFF.getName());
+        server = new NetworkServer(properties, Logger.getAnonymousLogger(), new InetSocketAddress("localhost", 0));
+        server.start();
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        server.close();
+    }
+
+    /**
+     * Reads the next message.
+     */
+    private static ByteBuffer read(DataInputStream in) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(2).put(in.readByte());
+        if (header.get(0) == Protocol.WINNERS) header.put(in.readByte()); // the count
+        header.flip();
+        ByteBuffer message = ByteBuffer.allocate(Protocol.messageSize(header)).put(header);
+        in.readFully(message.array(), message.position(), message.remaining());
+        return ByteBuffer.wrap(message.array());
+    }
+
+    private static ByteBuffer readUntil(DataInputStream in, byte type) throws IOException {
+        ByteBuffer message;
+        do message = read(in); while (message.get(0) != type);
+        return message;
+    }
+
+    @Test
+    void remotePlayersJoinAndPlaceTokens() throws IOException {
+        try (Socket first = new Socket("localhost", server.port()); Socket second = new Socket("localhost", server.port())) {
+            first.setSoTimeout(5000);
+            second.setSoTimeout(5000);
+            DataInputStream firstIn = new DataInputStream(first.getInputStream());
+            DataInputStream secondIn = new DataInputStream(second.getInputStream());
+
+            first.getOutputStream().write(Protocol.join());
+            ByteBuffer welcome = readUntil(firstIn, Protocol.WELCOME);
+            assertEquals(0, welcome.get(5));
+            assertEquals(2, welcome.get(6));
+            second.getOutputStream().write(Protocol.join());
+            ByteBuffer secondWelcome = readUntil(secondIn, Protocol.WELCOME);
+            assertEquals(welcome.getInt(1), secondWelcome.getInt(1)); // the same game
+            assertEquals(1, secondWelcome.get(5));
+
+            int slots = welcome.get(7) * welcome.get(8);
+            for (int dealt = 0; dealt < slots; dealt++) readUntil(firstIn, Protocol.PLACE_CARD);
+
+            OutputStream out = first.getOutputStream();
+            out.write(Protocol.press(3));
+            ByteBuffer token = readUntil(secondIn, Protocol.PLACE_TOKEN); // seen by the other player too
+            assertEquals(0, token.get(1));
+            assertEquals(3, token.getShort(2));
+        }
+    }
+
+    @Test
+    void tokenMessagesAreSizedAsEncoded() {
+        for (boolean placed : new boolean[]{true, false}) {
+            byte[] message = Protocol.token(placed, 1, 3);
+            assertEquals(4, message.length); // type, player:byte, slot:short
+            assertEquals(message.length, Protocol.messageSize(ByteBuffer.wrap(message)));
+        }
+    }
+
+    @Test
+    void serverMessagesFromAClientCloseTheConnection() throws IOException {
+        byte[][] bogus = {
+                {Protocol.WINNERS, (byte) 0xff},                 // 257 bytes: more than the connection buffer
+                {Protocol.KEYFRAME, (byte) 0x80, 0, 0, 0},       // a negative size
+                {Protocol.PLACE_CARD},                           // a server message, of any size
+        };
+        for (byte[] header : bogus) {
+            try (Socket client = new Socket("localhost", server.port())) {
+                client.setSoTimeout(5000);
+                client.getOutputStream().write(header);
+                assertEquals(-1, client.getInputStream().read()); // closed by the server
+            }
+        }
+    }
+}
@@ -0,0 +1,31 @@
+package bguspl.set;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Properties;
+import java.util.logging.Logger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PerformanceSamplerTest {
+
+    @Test
+    void reportsRatesBetweenTwoSamples() {
+        RenderQueue queue = new RenderQueue(new Config(Logger.getAnonymousLogger(), new Properties()));
+        PerformanceSampler sampler = new PerformanceSampler(queue, null, 500);
+        assertTrue(sampler.sample(1_000_000_000L).isEmpty()); // the rates need two samples
+
+        queue.placeCard(3, 0);
+        queue.setScore(0, 1);
+        for (int frame = 0; frame < 30; frame++) sampler.frame(frame == 0 ? 2 : 0);
+        List<String> lines = sampler.sample(1_500_000_000L);
+
+        assertTrue(lines.get(0).contains("60.0/s (2.0/s with updates)"), lines.get(0));
+        assertTrue(lines.get(1).contains("0.0ms, 2 items queued"), lines.get(1));
+        assertTrue(lines.stream().anyMatch(line -> line.startsWith("allocation")), lines.toString());
+
+        sampler.reset();
+        assertTrue(sampler.sample(2_000_000_000L).isEmpty());
+    }
+}
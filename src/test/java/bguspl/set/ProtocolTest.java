@@ -0,0 +1,25 @@
+package bguspl.set;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class ProtocolTest {
+
+    private static int keyframeSize(int size) {
+        return Protocol.messageSize((ByteBuffer) ByteBuffer.allocate(5).put(Protocol.KEYFRAME).putInt(size).flip());
+    }
+
+    @Test
+    void keyframeSizesAreBounded() {
+        assertEquals(-1, Protocol.messageSize(ByteBuffer.wrap(new byte[]{Protocol.KEYFRAME, 0, 0})));
+        assertEquals(Protocol.keyframeSize(12, 2), keyframeSize(Protocol.keyframeSize(12, 2)));
+        assertEquals(Protocol.MAX_KEYFRAME_SIZE, keyframeSize(Protocol.MAX_KEYFRAME_SIZE));
+        assertEquals(0, keyframeSize(Protocol.MAX_KEYFRAME_SIZE + 1));
+        assertEquals(0, keyframeSize(Integer.MAX_VALUE));
+        assertEquals(0, keyframeSize(-1));
+        assertEquals(0, keyframeSize(4)); // shorter than its own header
+    }
+}
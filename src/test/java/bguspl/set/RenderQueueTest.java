@@ -0,0 +1,144 @@
+package bguspl.set;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.Properties;
+import java.util.logging.Logger;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class RenderQueueTest {
+
+    private Config config;
+    private RenderQueue queue;
+
+    /**
+     * Keeps what was rendered and counts the calls.
+     */
+    private static class Screen implements RenderQueue.Renderer {
+        final int[] cards;
+        final long[][] tokens;
+        final int[] scores;
+        long timer = -1;
+        int mode = -1;
+        int[] winners;
+        int calls;
+
+        Screen(Config config) {
+            cards = new int[config.tableSize];
+            tokens = new long[config.tableSize][];
+            scores = new int[config.players];
+        }
+
+        @Override
+        public void slot(int slot, int card, long[] tokens) {
+            cards[slot] = card;
+            this.tokens[slot] = tokens.clone();
+            calls++;
+        }
+
+        @Override
+        public void player(int player, int score, long freezeMillis) {
+            scores[player] = score;
+            calls++;
+        }
+
+        @Override
+        public void timer(long millis, int mode) {
+            timer = millis;
+            this.mode = mode;
+            calls++;
+        }
+
+        @Override
+        public void winners(int[] players) {
+            winners = players;
+            calls++;
+        }
+    }
+
+    @BeforeEach
+    void setUp() {
+        config = new Config(Logger.getAnonymousLogger(), new Properties());
+        queue = new RenderQueue(config);
+    }
+
+    @Test
+    void coalescesUpdatesToTheLatestValue() {
+        Screen screen = new Screen(config);
+        for (int millis = 60_000; millis > 0; millis -= 49) queue.setCountdown(millis, millis < 5000);
+        queue.placeCard(17, 3);
+        queue.placeToken(1, 3);
+        queue.placeToken(0, 3);
+        queue.removeToken(1, 3);
+        queue.setScore(1, 2);
+        queue.setScore(1, 3);
+
+        assertEquals(3, queue.drain(screen)); // the timer, slot 3 and player 1
+        assertEquals(3, screen.calls);
+        assertEquals(60_000 % 49, screen.timer);
+        assertEquals(RenderQueue.WARNING, screen.mode);
+        assertEquals(17, screen.cards[3]);
+        assertArrayEquals(new long[]{1L}, screen.tokens[3]);
+        assertEquals(3, screen.scores[1]);
+        assertEquals(0, queue.drain(screen));
+
+        queue.announceWinner(new int[]{1});
+        queue.setElapsed(1234);
+        assertEquals(2, queue.drain(screen));
+        assertArrayEquals(new int[]{1}, screen.winners);
+        assertEquals(RenderQueue.ELAPSED, screen.mode);
+        assertEquals(1234, screen.timer);
+    }
+
+    @Test
+    void concurrentUpdatesAreNotLost() throws InterruptedException {
+        Screen screen = new Screen(config);
+        Thread[] threads = new Thread[config.players];
+        for (int i = 0; i < threads.length; i++) {
+            int player = i;
+            threads[i] = new Thread(() -> {
+                for (int round = 0; round < 10_000; round++) {
+                    int slot = round % config.tableSize;
+                    queue.placeToken(player, slot);
+                    if (round < 10_000 - config.tableSize) queue.removeToken(player, slot);
+                    queue.setScore(player, round);
+                }
+            });
+            threads[i].start();
+        }
+        while (threads[0].isAlive() || threads[threads.length - 1].isAlive()) queue.drain(screen); // as the frames would
+        for (Thread thread : threads) thread.join();
+        queue.drain(screen);
+
+        long[] allPlayers = {(1L << config.players) - 1};
+        for (int slot = 0; slot < config.tableSize; slot++) assertArrayEquals(allPlayers, screen.tokens[slot]);
+        for (int player = 0; player < config.players; player++) assertEquals(9_999, screen.scores[player]);
+    }
+
+    @Test
+    void keepsTheTokensOfMoreThan64Players() {
+        Properties properties = new Properties();
+        properties.setProperty("HumanPlayers", "0");
+        properties.setProperty("ComputerPlayers", "130");
+        Config many = new Config(Logger.getAnonymousLogger(), properties);
+        RenderQueue queue = new RenderQueue(many);
+        Screen screen = new Screen(many);
+
+        queue.placeToken(1, 3);
+        queue.placeToken(64, 3);
+        queue.placeToken(129, 3);
+        queue.placeToken(65, 4);
+        queue.drain(screen);
+        assertArrayEquals(new long[]{0b10, 1, 0b10}, screen.tokens[3]);
+        assertArrayEquals(new long[]{0, 0b10, 0}, screen.tokens[4]);
+
+        queue.removeToken(64, 3);
+        queue.removeTokens(4);
+        queue.drain(screen);
+        assertArrayEquals(new long[]{0b10, 0, 0b10}, screen.tokens[3]);
+        assertArrayEquals(new long[3], screen.tokens[4]);
+    }
+}
@@ -0,0 +1,26 @@
+package bguspl.set;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Properties;
+import java.util.logging.Logger;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SimulationTest {
+
+    @Test
+    void playsTheGamesAndReports() throws Exception {
+        Properties properties = new Properties();
+        properties.setProperty("FeatureCount", "3"); // a deck of 27 cards keeps the games short
+        properties.setProperty("HumanPlayers", "1");
+        properties.setProperty("ComputerPlayers", "1");
+        properties.setProperty("Seed", "11");
+        Simulation simulation = new Simulation(properties, Logger.getAnonymousLogger(), true);
+
+        String report = simulation.run(2, 2);
+        assertTrue(report.startsWith("2 games (2 at a time, virtual time)"), report);
+        assertTrue(report.contains("average game:"), report);
+        assertTrue(report.contains("allocated by the game threads:"), report);
+    }
+}
@@ -0,0 +1,115 @@
+package bguspl.set;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.util.Properties;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SpectatorFeedTest {
+
+    private Config config;
+    private SpectatorFeed feed;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        Properties properties = new Properties();
+        properties.setProperty("LogLevel", Level.OFF.getName());
+        config = new Config(Logger.getAnonymousLogger(), properties);
+        feed = new SpectatorFeed(config, new InetSocketAddress("localhost", 0));
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        feed.close();
+    }
+
+    private static ByteBuffer read(DataInputStream in) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(5).put(in.readByte());
+        if (header.get(0) == Protocol.WINNERS) header.put(in.readByte());
+        if (header.get(0) == Protocol.KEYFRAME) header.putInt(in.readInt());
+        header.flip();
+        ByteBuffer message = ByteBuffer.allocate(Protocol.messageSize(header)).put(header);
+        in.readFully(message.array(), message.position(), message.remaining());
+        return ByteBuffer.wrap(message.array());
+    }
+
+    @Test
+    void lateSpectatorGetsKeyframeAndDeltas() throws IOException {
+        feed.placeCard(7, 0);
+        feed.setScore(1, 3);
+        for (int i = 0; i < 30_000; i++) feed.setCountdown(60_000 - i, false); // enough to take a new keyframe
+        feed.placeToken(1, 0);
+
+        try (Socket socket = new Socket("localhost", feed.port())) {
+            socket.setSoTimeout(5000);
+            DataInputStream in = new DataInputStream(socket.getInputStream());
+            ByteBuffer keyframe = read(in);
+            assertEquals(Protocol.KEYFRAME, keyframe.get(0));
+            assertEquals(config.rows, keyframe.get(5));
+            assertEquals(config.columns, keyframe.get(6));
+            assertTrue(keyframe.getInt(8) < 60_000); // taken after the countdown started
+            assertEquals(7, keyframe.getShort(13)); // the card of slot 0
+            int scoresAt = 13 + config.tableSize * 10;
+            assertEquals(3, keyframe.getInt(scoresAt + 8)); // the score of player 1
+
+            long tokensOfSlot0 = keyframe.getLong(15);
+            ByteBuffer delta;
+            do {
+                delta = read(in);
+                if (delta.get(0) == Protocol.PLACE_TOKEN && delta.getShort(2) == 0) tokensOfSlot0 |= 1L << delta.get(1);
+            } while (delta.get(0) != Protocol.PLACE_TOKEN);
+            assertEquals(1L << 1, tokensOfSlot0);
+
+            feed.removeCard(0); // a live update
+            assertEquals(Protocol.REMOVE_CARD, read(in).get(0));
+        }
+        assertEquals(0, feed.keyframeSkips());
+    }
+
+    @Test
+    void slowSpectatorSkipsToAKeyframeBetweenMessages() throws IOException, InterruptedException {
+        try (Socket socket = new Socket()) {
+            socket.setReceiveBufferSize(4096); // so the spectator falls behind
+            socket.connect(new InetSocketAddress("localhost", feed.port()));
+            socket.setSoTimeout(5000);
+            DataInputStream in = new DataInputStream(socket.getInputStream());
+
+            // deltas of several sizes, so the socket fills up in the middle of messages; while the spectator does not
+            // read, the log moves on by far more than half its size
+            for (int i = 0; i < 4 * SpectatorFeed.LOG_CAPACITY / 14; i++) {
+                feed.placeCard(i % 81, i % config.tableSize);
+                feed.setScore(i % config.players, i);
+                feed.removeCard(i % config.tableSize);
+            }
+            Thread.sleep(200);
+            feed.setElapsed(12345); // the last update
+
+            int keyframes = 0;
+            ByteBuffer message;
+            do {
+                message = read(in);
+                byte type = message.get(0);
+                assertTrue(type >= Protocol.PLACE_CARD && type <= Protocol.KEYFRAME, "out of sync: type " + type);
+                if (type == Protocol.KEYFRAME) {
+                    keyframes++;
+                    assertEquals(config.rows, message.get(5));
+                    assertEquals(config.columns, message.get(6));
+                }
+            } while (message.get(0) != Protocol.ELAPSED);
+            assertEquals(12345, message.getInt(1));
+            assertTrue(keyframes >= 2);
+        }
+        assertTrue(feed.keyframeSkips() >= 1);
+    }
+}
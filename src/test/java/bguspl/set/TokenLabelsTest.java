@@ -0,0 +1,38 @@
+package bguspl.set;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+class TokenLabelsTest {
+
+    @Test
+    void namesThePlayersInOrderAndReusesTheText() {
+        String[] names = new String[40];
+        for (int i = 0; i < names.length; i++) names[i] = "P" + i;
+        TokenLabels labels = new TokenLabels(names);
+
+        assertEquals("", labels.text(new long[]{0}));
+        assertEquals("P0, P2", labels.text(new long[]{0b101}));
+        assertEquals("P39", labels.text(new long[]{1L << 39}));
+        String text = labels.text(new long[]{0b101});
+        assertSame(text, labels.text(new long[]{0b101}));
+
+        for (long mask = 1; mask < 2000; mask++) labels.text(new long[]{mask}); // evicts
+        assertEquals("P0, P2", labels.text(new long[]{0b101}));
+    }
+
+    @Test
+    void namesThePlayersBeyondTheFirstLong() {
+        String[] names = new String[130];
+        for (int i = 0; i < names.length; i++) names[i] = "P" + i;
+        TokenLabels labels = new TokenLabels(names);
+        assertEquals(3, TokenLabels.words(names.length));
+
+        assertEquals("", labels.text(new long[3]));
+        assertEquals("P1, P64, P129", labels.text(new long[]{0b10, 1, 0b10}));
+        assertEquals("P63", labels.text(new long[]{1L << 63, 0, 0}));
+        assertEquals("P127", labels.text(new long[]{0, 1L << 63, 0}));
+    }
+}
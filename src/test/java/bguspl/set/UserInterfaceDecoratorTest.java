@@ -0,0 +1,84 @@
+package bguspl.set;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.logging.Handler;
+import java.util.logging.Level;
+import java.util.logging.LogRecord;
+import java.util.logging.Logger;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.verify;
+
+@ExtendWith(MockitoExtension.class)
+class UserInterfaceDecoratorTest {
+
+    @Mock
+    private Util util;
+    @Mock
+    private UserInterface ui;
+
+    private Logger logger;
+    private final List<LogRecord> records = new ArrayList<>();
+
+    @BeforeEach
+    void setUp() {
+        logger = Logger.getAnonymousLogger();
+        logger.setUseParentHandlers(false);
+        logger.addHandler(new Handler() {
+            @Override
+            public void publish(LogRecord record) {
+                records.add(record);
+            }
+
+            @Override
+            public void flush() {}
+
+            @Override
+            public void close() {}
+        });
+    }
+
+    @Test
+    void tracesTheCallsInBatches() {
+        logger.setLevel(Level.ALL);
+        UserInterfaceDecorator decorator = new UserInterfaceDecorator(logger, util, ui, 2);
+        decorator.placeCard(5, 3);
+        assertTrue(records.isEmpty()); // buffered
+        decorator.placeToken(1, 3);
+        assertEquals(1, records.size());
+        decorator.announceWinner(new int[]{0, 2});
+        assertEquals(2, records.size());
+        decorator.dispose();
+        assertEquals(3, records.size());
+
+        String first = records.get(0).getMessage();
+        assertTrue(first.contains("placing card 5 in slot 3"), first);
+        assertTrue(first.contains("player 2 placing token on slot 3"), first);
+        assertEquals(UserInterfaceDecorator.TRACE_LEVEL, records.get(0).getLevel());
+        String second = records.get(1).getMessage();
+        assertTrue(second.contains("announcing winner player 1 (of 2)"), second);
+        assertTrue(second.contains("announcing winner player 3 (of 2)"), second);
+        assertTrue(records.get(2).getMessage().contains("disposing"), records.get(2).getMessage());
+
+        verify(ui).placeCard(5, 3);
+        verify(ui).placeToken(1, 3);
+        verify(ui).dispose();
+    }
+
+    @Test
+    void tracesNothingBelowTheTraceLevel() {
+        logger.setLevel(Level.INFO);
+        UserInterfaceDecorator decorator = new UserInterfaceDecorator(logger, util, ui, 2);
+        for (int slot = 0; slot < 10; slot++) decorator.placeCard(slot, slot);
+        decorator.dispose();
+        assertTrue(records.isEmpty());
+        verify(ui).placeCard(9, 9);
+    }
+}
@@ -0,0 +1,115 @@
+package bguspl.set;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class VirtualClockTest {
+
+    private static final long START = 1_000_000;
+
+    private VirtualClock clock;
+
+    @BeforeEach
+    void setUp() {
+        clock = new VirtualClock(START);
+    }
+
+    @AfterEach
+    void tearDown() {
+        clock.close();
+    }
+
+    @Test
+    void sleepSkipsAhead() throws InterruptedException {
+        AtomicLong woke = new AtomicLong();
+        Thread sleeper = new Thread(clock.participant(() -> {
+            try {
+                clock.sleep(60_000);
+                woke.set(clock.currentTimeMillis());
+            } catch (InterruptedException ignored) {}
+        }));
+        long realStart = System.nanoTime();
+        sleeper.start();
+        sleeper.join(10_000);
+
+        assertEquals(START + 60_000, woke.get());
+        assertTrue(System.nanoTime() - realStart < 10_000_000_000L);
+    }
+
+    @Test
+    void notifiedWaiterDoesNotWaitForTheTimeout() throws InterruptedException {
+        Object monitor = new Object();
+        AtomicLong woke = new AtomicLong();
+        Thread waiter = new Thread(clock.participant(() -> {
+            synchronized (monitor) {
+                try {
+                    clock.waitOn(monitor, 0);
+                    woke.set(clock.currentTimeMillis());
+                } catch (InterruptedException ignored) {}
+            }
+        }));
+        Thread notifier = new Thread(clock.participant(() -> {
+            try {
+                clock.sleep(1000);
+            } catch (InterruptedException ignored) {}
+            synchronized (monitor) {
+                clock.notifyAll(monitor);
+            }
+        }));
+        waiter.start();
+        notifier.start();
+        waiter.join(10_000);
+        notifier.join(10_000);
+
+        assertEquals(START + 1000, woke.get());
+    }
+
+    @Test
+    void unparkBeforeParkIsNotLost() throws InterruptedException {
+        Thread parker = new Thread(clock.participant(() -> {
+            clock.unpark(Thread.currentThread());
+            clock.park();
+        }));
+        parker.start();
+        parker.join(10_000);
+
+        assertEquals(Thread.State.TERMINATED, parker.getState());
+        assertEquals(START, clock.currentTimeMillis());
+    }
+
+    @Test
+    void timekeeperParksWhileNobodyWaitsForATime() throws InterruptedException {
+        Object monitor = new Object();
+        AtomicLong woke = new AtomicLong();
+        Thread waiter = new Thread(clock.participant(() -> {
+            try {
+                synchronized (monitor) {
+                    clock.waitOn(monitor, 0); // idle, with no deadline
+                }
+                clock.sleep(1000);
+                woke.set(clock.currentTimeMillis());
+            } catch (InterruptedException ignored) {}
+        }));
+        waiter.start();
+
+        long deadline = System.nanoTime() + 5_000_000_000L;
+        while (clock.timekeeper().getState() != Thread.State.WAITING && System.nanoTime() < deadline)
+            Thread.sleep(1);
+        for (int i = 0; i < 20; i++) { // parked, not polling or yielding
+            assertEquals(Thread.State.WAITING, clock.timekeeper().getState());
+            Thread.sleep(1);
+        }
+
+        synchronized (monitor) {
+            clock.notifyAll(monitor);
+        }
+        waiter.join(10_000);
+        assertEquals(START + 1000, woke.get());
+    }
+}
@@ -11,6 +11,7 @@ import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
 
+import java.util.Properties;
 import java.util.logging.Logger;
 
 import static org.junit.jupiter.api.Assertions.*;
@@ -87,4 +88,19 @@ class DealerTest {
         assertNull(table.slotToCard[0]);
         assertNull(table.slotToCard[1]);
     }
+
+    @Test
+    void sameSeedDealsSameCards(){
+        Properties properties = new Properties();
+        properties.put("Seed", "7");
+        properties.put("TableDelaySeconds", "0");
+        Integer[][] dealt = new Integer[2][];
+        for (int game = 0; game < dealt.length; game++) {
+            Env env = new Env(logger, new Config(logger, properties), ui, util);
+            Table seededTable = new Table(env);
+            new Dealer(env, seededTable, players).placeCardsOnTable();
+            dealt[game] = seededTable.slotToCard;
+        }
+        assertArrayEquals(dealt[0], dealt[1]);
+    }
 }
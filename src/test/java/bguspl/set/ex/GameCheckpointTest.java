@@ -0,0 +1,100 @@
+package bguspl.set.ex;
+
+import bguspl.set.Config;
+import bguspl.set.Env;
+import bguspl.set.UserInterface;
+import bguspl.set.Util;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Properties;
+import java.util.logging.Logger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@ExtendWith(MockitoExtension.class)
+class GameCheckpointTest {
+
+    @TempDir
+    Path directory;
+    @Mock
+    Util util;
+    @Mock
+    private UserInterface ui;
+    @Mock
+    private Logger logger;
+
+    private Env env;
+
+    @BeforeEach
+    void setUp() {
+        Properties properties = new Properties();
+        properties.setProperty("TableDelaySeconds", "0");
+        env = new Env(logger, new Config(logger, properties), ui, util);
+    }
+
+    private Dealer newDealer(Table table) {
+        Player[] players = new Player[env.config.players];
+        Dealer dealer = new Dealer(env, table, players);
+        for (int i = 0; i < players.length; i++)
+            players[i] = new Player(env, dealer, table, i, true);
+        return dealer;
+    }
+
+    private static void placeToken(Table table, Player player, int slot) {
+        table.tokensArray[slot][player.id] = true;
+        player.stats().takeToken();
+    }
+
+    @Test
+    void resumesWhereTheCheckpointWasTaken() throws IOException {
+        Table before = new Table(env);
+        Dealer dealer = newDealer(before);
+        Player[] players = dealer.players();
+        dealer.placeCardsOnTable();
+        placeToken(before, players[0], 0);
+        placeToken(before, players[0], 1);
+        for (int slot = 0; slot < env.config.featureSize; slot++) placeToken(before, players[1], slot); // waiting for the dealer
+        players[0].point();
+
+        Path file = directory.resolve("game.checkpoint");
+        GameCheckpoint checkpoint = dealer.capture();
+        checkpoint.write(file, ByteBuffer.allocate(checkpoint.size()));
+        GameCheckpoint read = GameCheckpoint.read(file);
+        assertTrue(read.matches(env.config));
+        assertEquals(env.config.deckSize - env.config.tableSize, read.deck.length);
+
+        Table after = new Table(env);
+        Dealer resumed = newDealer(after);
+        resumed.restore(read);
+        assertArrayEquals(before.slotToCard, after.slotToCard);
+        assertEquals(dealer.cardsInDeck(), resumed.cardsInDeck());
+        assertTrue(after.tokensArray[0][0] && after.tokensArray[1][0]);
+        assertFalse(after.tokensArray[0][1]); // the pending claim was dropped
+        assertEquals(1, resumed.players()[0].score());
+        assertEquals(env.config.featureSize - 2, resumed.players()[0].getNumTokensHolding());
+        assertEquals(env.config.featureSize, resumed.players()[1].getNumTokensHolding());
+    }
+
+    @Test
+    void rejectsACorruptCheckpoint() throws IOException {
+        Dealer dealer = newDealer(new Table(env));
+        dealer.placeCardsOnTable();
+        Path file = directory.resolve("game.checkpoint");
+        GameCheckpoint checkpoint = dealer.capture();
+        checkpoint.write(file, ByteBuffer.allocate(checkpoint.size()));
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+            channel.write(ByteBuffer.wrap(new byte[]{42}), 40);
+        }
+        assertThrows(IOException.class, () -> GameCheckpoint.read(file));
+    }
+}
@@ -0,0 +1,95 @@
+package bguspl.set.ex;
+
+import bguspl.set.Config;
+import bguspl.set.Env;
+import bguspl.set.HeadlessUserInterface;
+import bguspl.set.UserInterface;
+import bguspl.set.UtilImpl;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.Properties;
+import java.util.logging.Logger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.anyBoolean;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.verify;
+
+class GameMonitorsTest {
+
+    private final MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+    private Env env;
+    private Table table;
+    private Dealer dealer;
+    private GameMonitors monitors;
+    private ObjectName game;
+
+    @BeforeEach
+    void setUp() throws JMException {
+        Logger logger = Logger.getAnonymousLogger();
+        Config config = new Config(logger, new Properties());
+        env = new Env(logger, config, new HeadlessUserInterface(), new UtilImpl(config));
+        table = new Table(env);
+        Player[] players = new Player[config.players];
+        dealer = spy(new Dealer(env, table, players));
+        for (int id = 0; id < players.length; id++) players[id] = new Player(env, dealer, table, id, true);
+        monitors = new GameMonitors(env);
+        monitors.register(dealer, table, players);
+        game = new ObjectName("bguspl.set:game=" + monitors.game + ",*");
+    }
+
+    @AfterEach
+    void tearDown() {
+        monitors.unregister();
+    }
+
+    private ObjectName name(String properties) throws JMException {
+        return new ObjectName("bguspl.set:game=" + monitors.game + "," + properties);
+    }
+
+    @Test
+    void registersQueryableMBeansAndUnregistersThem() throws JMException {
+        assertEquals(2 + env.config.players, server.queryNames(game, null).size());
+        table.placeCard(5, 0);
+        table.placeCard(9, 1);
+        assertEquals(2, server.getAttribute(name("type=Table"), "CardsOnTable"));
+        assertEquals(env.config.playerNames[1], server.getAttribute(name("type=Player,id=2"), "Name"));
+        assertEquals(0L, server.getAttribute(name("type=Dealer"), "Claims"));
+        assertEquals(0, server.getAttribute(name("type=Dealer"), "ReshuffleCount"));
+
+        monitors.unregister();
+        assertTrue(server.queryNames(game, null).isEmpty());
+    }
+
+    @Test
+    void operationsReachTheDealer() throws JMException {
+        server.invoke(name("type=Dealer"), "forceReshuffle", null, null);
+        verify(dealer).forceReshuffle();
+        server.invoke(name("type=Dealer"), "checkpoint", null, null);
+        verify(dealer).requestCheckpoint();
+    }
+
+    @Test
+    void aFailedGameUnregistersItsMBeans() throws JMException {
+        UserInterface ui = mock(UserInterface.class);
+        doThrow(new IllegalStateException("broken")).when(ui).setCountdown(anyLong(), anyBoolean());
+        Env failing = new Env(env.logger, env.config, ui, env.util);
+        Dealer dealer = new Dealer(failing, new Table(failing), new Player[env.config.players]); // no player threads
+        ObjectName dealers = new ObjectName("bguspl.set:type=Dealer,*");
+        int registered = server.queryNames(dealers, null).size();
+
+        assertThrows(IllegalStateException.class, dealer::run);
+        assertEquals(registered, server.queryNames(dealers, null).size());
+    }
+}
@@ -0,0 +1,170 @@
+package bguspl.set.ex;
+
+import bguspl.set.Config;
+import bguspl.set.Env;
+import bguspl.set.Game;
+import bguspl.set.GameJournal;
+import bguspl.set.HeadlessUserInterface;
+import bguspl.set.UtilImpl;
+import bguspl.set.VirtualClock;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Properties;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class GameReplayTest {
+
+    @TempDir
+    static Path recordings;
+
+    @TempDir
+    Path directory;
+
+    static Config config;
+    static Path recorded;
+    Path journalPath;
+
+    /**
+     * Records a small game (a deck of 27 cards) once; each test replays its own copy.
+     */
+    @BeforeAll
+    static void record() throws IOException, InterruptedException {
+        Properties properties = new Properties();
+        properties.setProperty("FeatureCount", "3");
+        properties.setProperty("HumanPlayers", "0");
+        properties.setProperty("ComputerPlayers", "2");
+        properties.setProperty("TableDelaySeconds", "0");
+        properties.setProperty("EndGamePauseSeconds", "0");
+        properties.setProperty("LogLevel", Level.OFF.getName());
+        properties.setProperty("Seed", "7");
+        Logger logger = Logger.getAnonymousLogger();
+        config = new Config(logger, properties);
+
+        recorded = recordings.resolve("game.journal");
+        VirtualClock clock = new VirtualClock();
+        try (GameJournal journal = new GameJournal(recorded, config, config.seed)) {
+            Game game = new Game(new Env(logger, config, new HeadlessUserInterface(), new UtilImpl(config), journal, clock));
+            game.start("dealer");
+            game.join();
+        } finally {
+            clock.close();
+        }
+    }
+
+    @BeforeEach
+    void setUp() throws IOException {
+        journalPath = Files.copy(recorded, directory.resolve("game.journal"));
+    }
+
+    private GameReplay.Result replay() throws IOException, InterruptedException {
+        HeadlessUserInterface ui = new HeadlessUserInterface(config);
+        try (GameJournal.Reader reader = GameJournal.open(journalPath)) {
+            return new GameReplay(new Env(Logger.getAnonymousLogger(), config, ui, new UtilImpl(config))).replay(reader, false);
+        }
+    }
+
+    /**
+     * @return - the index of the first record of the type (-1 if there is none).
+     */
+    private int find(byte type) throws IOException {
+        try (GameJournal.Reader reader = GameJournal.open(journalPath)) {
+            for (int record = 0; reader.next(); record++)
+                if (reader.type() == type) return record;
+        }
+        return -1;
+    }
+
+    private void overwrite(int record, int field, ByteBuffer value) throws IOException {
+        try (FileChannel channel = FileChannel.open(journalPath, StandardOpenOption.WRITE)) {
+            channel.write(value, GameJournal.HEADER_SIZE + (long) record * GameJournal.RECORD_SIZE + field);
+        }
+    }
+
+    @Test
+    void replaysTheRecordedGame() throws IOException, InterruptedException {
+        GameReplay.Result result = replay();
+        assertTrue(result.matches(), result.toString());
+        assertArrayEquals(result.recordedScores, result.replayedScores);
+        assertTrue(find(GameJournal.END) >= 0);
+    }
+
+    @Test
+    void reportsATamperedScore() throws IOException, InterruptedException {
+        int score = find(GameJournal.SCORE);
+        assertTrue(score >= 0);
+        overwrite(score, 16, (ByteBuffer) ByteBuffer.allocate(8).putLong(0, 1000));
+        GameReplay.Result result = replay();
+        assertFalse(result.matches());
+        assertTrue(result.divergence.contains("score 1000"), result.divergence);
+    }
+
+    @Test
+    void reportsATamperedVerdict() throws IOException, InterruptedException {
+        int verdict = find(GameJournal.VERDICT);
+        assertTrue(verdict >= 0);
+        boolean legal;
+        try (GameJournal.Reader reader = GameJournal.open(journalPath)) {
+            for (int record = 0; record <= verdict; record++) reader.next();
+            legal = reader.flag();
+        }
+        overwrite(verdict, 30, ByteBuffer.wrap(new byte[]{(byte) (legal ? 0 : 1)}));
+        GameReplay.Result result = replay();
+        assertFalse(result.matches());
+        assertTrue(result.divergence.contains("verdict was " + !legal), result.divergence);
+    }
+
+    @Test
+    void reportsATamperedFinalState() throws IOException, InterruptedException {
+        int end = find(GameJournal.END);
+        overwrite(end, 24, (ByteBuffer) ByteBuffer.allocate(4).putInt(0, 12345));
+        GameReplay.Result result = replay();
+        assertFalse(result.matches());
+        assertEquals("event " + (end + 1) + ": the cards left in the deck differ", result.divergence);
+    }
+
+    @Test
+    void replaysAResumedGame() throws IOException, InterruptedException {
+        // cards 0-2 were taken as a set by player 1 before the checkpoint, the table was not dealt yet
+        int[] deck = IntStream.range(3, config.deckSize).toArray();
+        int[] slots = new int[config.tableSize];
+        Arrays.fill(slots, -1);
+        PlayerStats.Snapshot[] players = {
+                new PlayerStats.Snapshot(1, 1, 0, config.featureSize, 0),
+                new PlayerStats.Snapshot(0, 0, 0, config.featureSize, 0)};
+        GameCheckpoint checkpoint = new GameCheckpoint(config.seed, 0, config.turnTimeoutMillis, config.deckSize, deck,
+                slots, new long[config.tableSize], players);
+
+        Logger logger = Logger.getAnonymousLogger();
+        VirtualClock clock = new VirtualClock();
+        try (GameJournal journal = new GameJournal(journalPath, config, config.seed)) {
+            Game game = new Game(new Env(logger, config, new HeadlessUserInterface(), new UtilImpl(config), journal, clock));
+            game.restore(checkpoint);
+            game.start("dealer");
+            game.join();
+        } finally {
+            clock.close();
+        }
+
+        GameReplay.Result result = replay();
+        assertTrue(result.matches(), result.toString());
+        assertTrue(result.recordedScores[0] >= 1);
+        assertTrue(find(GameJournal.END) >= 0);
+    }
+}
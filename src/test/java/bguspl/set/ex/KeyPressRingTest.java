@@ -0,0 +1,80 @@
+package bguspl.set.ex;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class KeyPressRingTest {
+
+    KeyPressRing ring;
+
+    @BeforeEach
+    void setUp() {
+        ring = new KeyPressRing(3);
+    }
+
+    @Test
+    void pollsInOrderWithPressTimes() {
+        ring.offer(4, 100L);
+        ring.offer(7, 200L);
+
+        assertEquals(4, ring.poll());
+        assertEquals(100L, ring.polledNanos());
+        assertEquals(7, ring.poll());
+        assertEquals(200L, ring.polledNanos());
+        assertEquals(KeyPressRing.EMPTY, ring.poll());
+    }
+
+    @Test
+    void dropsWhenFull() {
+        assertTrue(ring.offer(0, 1L));
+        assertTrue(ring.offer(1, 2L));
+        assertTrue(ring.offer(2, 3L));
+        assertFalse(ring.offer(3, 4L));
+
+        assertEquals(0, ring.remainingCapacity());
+        assertEquals(4, ring.offered());
+        assertEquals(1, ring.dropped());
+        assertEquals(3, ring.highWaterMark());
+
+        // wraps around after the consumer made room
+        assertEquals(0, ring.poll());
+        assertTrue(ring.offer(5, 6L));
+        ring.clear();
+        assertTrue(ring.isEmpty());
+    }
+
+    @Test
+    void concurrentProducersLoseNoPress() throws InterruptedException {
+        KeyPressRing ring = new KeyPressRing(4);
+        int producers = 3;
+        int presses = 20_000;
+        Thread[] threads = new Thread[producers];
+        for (int p = 0; p < producers; p++) {
+            int producer = p;
+            threads[p] = new Thread(() -> {
+                for (int i = 0; i < presses; i++)
+                    while (!ring.offer(producer * presses + i, i)) Thread.yield();
+            });
+            threads[p].start();
+        }
+        int[] next = new int[producers];
+        for (int polled = 0; polled < producers * presses; ) {
+            int slot = ring.poll();
+            if (slot == KeyPressRing.EMPTY) {
+                Thread.yield();
+                continue;
+            }
+            int producer = slot / presses;
+            assertEquals(next[producer]++, slot % presses); // each producer's presses, once and in order
+            assertEquals(slot % presses, ring.polledNanos());
+            polled++;
+        }
+        for (Thread thread : threads) thread.join();
+        assertTrue(ring.isEmpty());
+        assertEquals(producers * presses, ring.offered() - ring.dropped());
+    }
+}
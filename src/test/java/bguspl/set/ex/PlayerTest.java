@@ -84,6 +84,21 @@ class PlayerTest {
         assertEquals(expectedNumOfSets, player.numSetForCheck());
     }
 
+    @Test
+    void statsSnapshot(){
+        // claims one legal set and one illegal set
+        player.setClaimed();
+        player.setClaimed();
+        player.falseClaim();
+
+        // the snapshot should reflect all the updates, without taking the player's monitor
+        PlayerStats.Snapshot snapshot = player.stats().snapshot();
+        assertEquals(2, snapshot.claims);
+        assertEquals(1, snapshot.falseClaims);
+        assertEquals(player.score(), snapshot.score);
+        assertEquals(player.getNumTokensHolding(), snapshot.tokens);
+    }
+
     @Test
     void keyPressed(){
         // empties the queue of player-presses 